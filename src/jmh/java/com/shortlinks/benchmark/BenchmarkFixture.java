@@ -0,0 +1,149 @@
+package com.shortlinks.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.notification.NotificationService;
+import com.shortlinks.repository.FileShortLinkRepository;
+import com.shortlinks.repository.LogShortLinkRepository;
+import com.shortlinks.repository.MappedShortLinkRepository;
+import com.shortlinks.repository.PackedShortLinkRepository;
+import com.shortlinks.repository.ShardedShortLinkRepository;
+import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.repository.StorageEngine;
+import com.shortlinks.util.ShortCode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Общая подготовка данных для бенчмарков. Ссылки раскладываются по номеру: {@code i % 100 == 0} —
+ * истёкшие, {@code i % 100 == 1} — с исчерпанным лимитом, остальные живые без лимита.
+ * Владельцев {@value #OWNERS}, ссылки распределены между ними по кругу.
+ */
+final class BenchmarkFixture {
+    static final int OWNERS = 1_000;
+    private static final String STORE_FILE = "store.json";
+
+    private BenchmarkFixture() {
+    }
+
+    static String code(int index) {
+        return ShortCode.unpack(index + 1L);
+    }
+
+    static UUID owner(int index) {
+        return new UUID(0x5348_4F52_544CL, index % OWNERS);
+    }
+
+    static int liveIndex(SplittableRandom random, int size) {
+        return random.nextInt(size / 100) * 100 + 2 + random.nextInt(98);
+    }
+
+    static int expiredIndex(SplittableRandom random, int size) {
+        return random.nextInt(size / 100) * 100;
+    }
+
+    static int limitReachedIndex(SplittableRandom random, int size) {
+        return random.nextInt(size / 100) * 100 + 1;
+    }
+
+    /**
+     * Пишет {@code store.json} на {@code size} ссылок в новый временный каталог.
+     */
+    static Path createStore(int size) throws IOException {
+        Path directory = Files.createTempDirectory("shortlinks-bench");
+        Instant now = Instant.now();
+        DataStore dataStore = new DataStore();
+        Map<String, ShortLink> links = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String code = code(i);
+            ShortLink link = switch (i % 100) {
+                case 0 -> new ShortLink(code, owner(i), url(i), 10, 0, now.minusSeconds(7200), now.minusSeconds(3600));
+                case 1 -> new ShortLink(code, owner(i), url(i), 1, 1, now, now.plusSeconds(86_400));
+                default -> new ShortLink(code, owner(i), url(i), Integer.MAX_VALUE, 0, now, now.plusSeconds(86_400));
+            };
+            links.put(code, link);
+        }
+        dataStore.setShortLinks(links);
+        Map<UUID, UserAccount> users = new HashMap<>();
+        for (int i = 0; i < OWNERS; i++) {
+            users.put(owner(i), new UserAccount(owner(i), now));
+        }
+        dataStore.setUsers(users);
+        new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writeValue(directory.resolve(STORE_FILE).toFile(), dataStore);
+        return directory;
+    }
+
+    /**
+     * Копия только {@code store.json}: движки журнала заново импортируют его при открытии.
+     */
+    static Path copyStore(Path template) throws IOException {
+        Path directory = Files.createTempDirectory("shortlinks-bench");
+        Files.copy(template.resolve(STORE_FILE), directory.resolve(STORE_FILE), StandardCopyOption.REPLACE_EXISTING);
+        return directory;
+    }
+
+    /**
+     * Направляет все пути хранилища в {@code directory} и открывает движок {@code engine}.
+     */
+    static ShortLinkRepository open(String engine, Path directory) {
+        System.setProperty("app.storage-file", directory.resolve(STORE_FILE).toString());
+        System.setProperty("app.storage.log-dir", directory.resolve("log").toString());
+        System.setProperty("app.storage.mapped-dir", directory.resolve("mapped").toString());
+        System.setProperty("app.storage.packed-dir", directory.resolve("packed").toString());
+        System.setProperty("app.storage.sharded-dir", directory.resolve("sharded").toString());
+        System.setProperty("app.storage.fsync", "os");
+        System.setProperty("app.open-browser", "false");
+        AppConfig config = new AppConfig();
+        return switch (StorageEngine.parse(engine)) {
+            case FILE -> new FileShortLinkRepository(config.getStorageFile());
+            case LOG -> new LogShortLinkRepository(config);
+            case MAPPED -> new MappedShortLinkRepository(config);
+            case PACKED -> new PackedShortLinkRepository(config);
+            case SHARDED -> new ShardedShortLinkRepository(config);
+        };
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String url(int index) {
+        return "https://example.com/articles/" + index + "?utm_source=benchmark";
+    }
+
+    static final class SilentNotification implements NotificationService {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    }
+}
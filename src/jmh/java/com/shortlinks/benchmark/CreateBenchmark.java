@@ -0,0 +1,73 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.util.ShortLinkGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание ссылки: выдача кода плюс сохранение. Для движка {@code file} сюда входит
+ * перезапись всего JSON-файла, поэтому на миллионе ссылок итерации заметно длиннее.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CreateBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    @Param({"random", "sequential"})
+    public String codeStrategy;
+
+    private Path directory;
+    private ShortLinkRepository repository;
+    private ShortLinkService service;
+    private UUID owner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.createStore(size);
+        repository = BenchmarkFixture.open(engine, directory);
+        System.setProperty("app.codes.strategy", codeStrategy);
+        System.setProperty("app.codes.state-file", directory.resolve("codes.state").toString());
+        service = new ShortLinkService(new AppConfig(), repository, new ShortLinkGenerator(),
+                new BenchmarkFixture.SilentNotification());
+        owner = BenchmarkFixture.owner(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public ShortLink createShortLink() {
+        return service.createShortLink(owner, "https://example.com/new", 10);
+    }
+}
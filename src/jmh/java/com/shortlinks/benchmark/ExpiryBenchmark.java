@@ -0,0 +1,75 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.repository.ShortLinkRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Очистка истёкших ссылок: одна порция {@code batch} из 1% истёкших. Каждая итерация
+ * начинает со свежей копии хранилища, поэтому замер — одиночный вызов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExpiryBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    @Param({"1000"})
+    public int batch;
+
+    private Path template;
+    private Path directory;
+    private ShortLinkRepository repository;
+
+    @Setup(Level.Trial)
+    public void createTemplate() throws IOException {
+        template = BenchmarkFixture.createStore(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTemplate() throws IOException {
+        BenchmarkFixture.delete(template);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.copyStore(template);
+        repository = BenchmarkFixture.open(engine, directory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public List<ShortLink> deleteExpiredBatch() {
+        return repository.deleteExpired(Instant.now(), batch);
+    }
+}
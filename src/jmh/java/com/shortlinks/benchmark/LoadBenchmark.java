@@ -0,0 +1,61 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.repository.ShortLinkRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Старт хранилища: чтение JSON для {@code file}, снимка и хвоста журнала для остальных движков.
+ * Файлы движка готовятся один раз до замеров, поэтому миграция из {@code store.json} не учитывается;
+ * повторная запись пользователя переводит {@code store.json} движка {@code file} в текущий формат.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.createStore(size);
+        try (ShortLinkRepository repository = BenchmarkFixture.open(engine, directory)) {
+            repository.findUser(BenchmarkFixture.owner(0)).ifPresent(repository::saveUser);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public int load() {
+        try (ShortLinkRepository repository = BenchmarkFixture.open(engine, directory)) {
+            return repository.countByOwner(BenchmarkFixture.owner(0));
+        }
+    }
+}
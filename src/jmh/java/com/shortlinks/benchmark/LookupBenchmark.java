@@ -0,0 +1,107 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.repository.ShortLinkRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Точечные чтения {@code findByCode}/{@code findUser} в один и восемь потоков, а также чтения
+ * на фоне писателя, который сохраняет ссылки. Сравнение блокировки чтения и оптимистичного
+ * чтения имеет смысл только на многоядерной машине.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LookupBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    private Path directory;
+    private ShortLinkRepository repository;
+    private String[] codes;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.createStore(size);
+        repository = BenchmarkFixture.open(engine, directory);
+        codes = new String[size];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = BenchmarkFixture.code(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public Optional<ShortLink> findByCode(Cursor cursor) {
+        return repository.findByCode(codes[BenchmarkFixture.liveIndex(cursor.random, size)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<ShortLink> findByCodeParallel(Cursor cursor) {
+        return repository.findByCode(codes[BenchmarkFixture.liveIndex(cursor.random, size)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<UserAccount> findUserParallel(Cursor cursor) {
+        return repository.findUser(BenchmarkFixture.owner(cursor.random.nextInt(BenchmarkFixture.OWNERS)));
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(7)
+    public Optional<ShortLink> reader(Cursor cursor) {
+        return repository.findByCode(codes[BenchmarkFixture.liveIndex(cursor.random, size)]);
+    }
+
+    /**
+     * Пересохраняет существующую ссылку: блокировка записи и хук персистентности движка.
+     */
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public ShortLink writer(Cursor cursor) {
+        ShortLink link = repository.findByCode(codes[BenchmarkFixture.liveIndex(cursor.random, size)]).orElseThrow();
+        link.setMaxVisits(link.getMaxVisits() - 1);
+        return repository.save(link);
+    }
+}
@@ -0,0 +1,79 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.repository.ShortLinkRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выборка ссылок владельца: полный список и первая страница. У каждого владельца
+ * {@code size / 1000} ссылок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OwnerBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    private Path directory;
+    private ShortLinkRepository repository;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.createStore(size);
+        repository = BenchmarkFixture.open(engine, directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public List<ShortLink> findByOwner(Cursor cursor) {
+        return repository.findByOwner(BenchmarkFixture.owner(cursor.random.nextInt(BenchmarkFixture.OWNERS)));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<ShortLink> findByOwnerParallel(Cursor cursor) {
+        return repository.findByOwner(BenchmarkFixture.owner(cursor.random.nextInt(BenchmarkFixture.OWNERS)));
+    }
+
+    @Benchmark
+    public List<ShortLink> findByOwnerFirstPage(Cursor cursor) {
+        return repository.findByOwnerAfter(
+                BenchmarkFixture.owner(cursor.random.nextInt(BenchmarkFixture.OWNERS)), null, 20);
+    }
+}
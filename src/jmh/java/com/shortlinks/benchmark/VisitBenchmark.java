@@ -0,0 +1,102 @@
+package com.shortlinks.benchmark;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.repository.VisitAttempt;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.util.ShortLinkGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переход по короткой ссылке: попадание, промах, истёкшая ссылка и исчерпанный лимит.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VisitBenchmark {
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"file", "log", "mapped", "packed", "sharded"})
+    public String engine;
+
+    private Path directory;
+    private ShortLinkRepository repository;
+    private ShortLinkService service;
+    private String[] codes;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFixture.createStore(size);
+        repository = BenchmarkFixture.open(engine, directory);
+        service = new ShortLinkService(new AppConfig(), repository, new ShortLinkGenerator(),
+                new BenchmarkFixture.SilentNotification());
+        codes = new String[size * 2];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = BenchmarkFixture.code(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkFixture.delete(directory);
+    }
+
+    @Benchmark
+    public ShortLinkService.VisitResult visitHit(Cursor cursor) {
+        return service.visit(codes[BenchmarkFixture.liveIndex(cursor.random, size)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ShortLinkService.VisitResult visitHitParallel(Cursor cursor) {
+        return service.visit(codes[BenchmarkFixture.liveIndex(cursor.random, size)]);
+    }
+
+    @Benchmark
+    public ShortLinkService.VisitResult visitMiss(Cursor cursor) {
+        return service.visit(codes[size + cursor.random.nextInt(size)]);
+    }
+
+    @Benchmark
+    public ShortLinkService.VisitResult visitLimitReached(Cursor cursor) {
+        return service.visit(codes[BenchmarkFixture.limitReachedIndex(cursor.random, size)]);
+    }
+
+    /**
+     * Сервис удаляет истёкшую ссылку при первом же переходе, поэтому устойчиво измерима
+     * только проверка срока в хранилище — её и меряем.
+     */
+    @Benchmark
+    public VisitAttempt consumeExpired(Cursor cursor) {
+        return repository.tryConsumeVisit(codes[BenchmarkFixture.expiredIndex(cursor.random, size)], Instant.now());
+    }
+}
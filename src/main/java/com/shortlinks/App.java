@@ -1,36 +1,220 @@
 package com.shortlinks;
 
+import com.shortlinks.analytics.VisitAnalytics;
 import com.shortlinks.config.AppConfig;
 import com.shortlinks.console.ConsoleRunner;
+import com.shortlinks.http.NioRedirectServer;
+import com.shortlinks.http.RedirectHttpServer;
+import com.shortlinks.metrics.MetricsFileWriter;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.notification.AsyncNotificationService;
 import com.shortlinks.notification.ConsoleNotificationService;
 import com.shortlinks.notification.NotificationService;
+import com.shortlinks.repository.CachingShortLinkRepository;
 import com.shortlinks.repository.FileShortLinkRepository;
+import com.shortlinks.repository.FilteredShortLinkRepository;
+import com.shortlinks.repository.LogShortLinkRepository;
+import com.shortlinks.repository.MappedShortLinkRepository;
+import com.shortlinks.repository.MeteredShortLinkRepository;
+import com.shortlinks.repository.PackedShortLinkRepository;
+import com.shortlinks.repository.ShardedShortLinkRepository;
 import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.repository.StoreTransfer;
+import com.shortlinks.repository.WriteBehindShortLinkRepository;
 import com.shortlinks.service.ShortLinkCleaner;
 import com.shortlinks.service.ShortLinkService;
 import com.shortlinks.service.UserService;
 import com.shortlinks.util.ShortLinkGenerator;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
 public class App {
     public static void main(String[] args) {
         AppConfig config = new AppConfig();
-        NotificationService notificationService = new ConsoleNotificationService();
-        ShortLinkRepository repository = new FileShortLinkRepository(config.getStorageFile());
-        ShortLinkService shortLinkService = new ShortLinkService(
-                config,
-                repository,
-                new ShortLinkGenerator(),
-                notificationService
-        );
-        UserService userService = new UserService(repository);
-
-        try (ShortLinkCleaner ignored = new ShortLinkCleaner(
-                shortLinkService,
-                notificationService,
-                config.getCleanupInterval())) {
-
-            ConsoleRunner runner = new ConsoleRunner(userService, shortLinkService, notificationService);
-            runner.run();
+        if (args.length > 0) {
+            System.exit(runTransfer(config, args));
+        }
+        AsyncNotificationService asyncNotifications = config.isAsyncNotificationsEnabled()
+                ? new AsyncNotificationService(config.getNotificationQueueSize(),
+                        config.getNotificationOverflowPolicy(),
+                        config.getNotificationSampleRate())
+                : null;
+        NotificationService notificationService = asyncNotifications != null
+                ? asyncNotifications
+                : new ConsoleNotificationService();
+        MetricsFileWriter metricsWriter = startMetricsWriter(config);
+        try (metricsWriter; asyncNotifications; ShortLinkRepository repository = createRepository(config);
+             VisitAnalytics analytics = createAnalytics(config, repository)) {
+            ShortLinkService shortLinkService = new ShortLinkService(
+                    config,
+                    repository,
+                    new ShortLinkGenerator(),
+                    notificationService
+            );
+            if (analytics != null) {
+                shortLinkService.addVisitListener(analytics);
+            }
+            UserService userService = new UserService(repository);
+
+            try (ShortLinkCleaner ignored = new ShortLinkCleaner(
+                    shortLinkService,
+                    notificationService,
+                    config.getCleanupInterval(),
+                    config.getCleanupBatchSize(),
+                    config.getCleanupMaxRun());
+                 RedirectHttpServer httpServer = startHttpServer(config, shortLinkService, notificationService);
+                 NioRedirectServer redirectServer = startRedirectServer(config, shortLinkService, notificationService)) {
+
+                if ((httpServer != null || redirectServer != null) && config.isHttpHeadless()) {
+                    awaitShutdown();
+                    return;
+                }
+                ConsoleRunner runner = new ConsoleRunner(userService, shortLinkService, notificationService, analytics);
+                runner.run();
+            }
+        }
+    }
+
+    /**
+     * {@code export <файл> [код]} и {@code import <файл> [код]}: потоковая выгрузка и загрузка
+     * настроенного хранилища в NDJSON, с продолжением после указанного кода.
+     */
+    private static int runTransfer(AppConfig config, String[] args) {
+        if (args.length < 2 || args.length > 3 || !("export".equals(args[0]) || "import".equals(args[0]))) {
+            System.err.println("Использование: App export|import <файл.ndjson> [код, после которого продолжить]");
+            return 1;
+        }
+        Path file = Paths.get(args[1]);
+        String afterCode = args.length == 3 ? args[2] : null;
+        StoreTransfer.Progress progress = new StoreTransfer.Progress();
+        try (ShortLinkRepository repository = createRepository(config)) {
+            if ("export".equals(args[0])) {
+                new StoreTransfer().export(repository, file, afterCode, progress);
+            } else {
+                new StoreTransfer().importFrom(repository, file, afterCode, progress);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Операция прервана: " + e.getMessage());
+            if (progress.getLastCode() != null) {
+                System.err.println("Продолжить можно с кода " + progress.getLastCode() + ": App "
+                        + args[0] + " " + file + " " + progress.getLastCode());
+            }
+            return 2;
+        }
+        System.out.println("Пользователей: " + progress.getUsers() + ", ссылок: " + progress.getLinks()
+                + (progress.getLastCode() != null ? ", последний код: " + progress.getLastCode() : ""));
+        if (progress.isTruncated()) {
+            System.out.println("Последняя строка файла оборвана и пропущена");
+        }
+        return 0;
+    }
+
+    private static MetricsFileWriter startMetricsWriter(AppConfig config) {
+        if (!config.isMetricsEnabled()) {
+            return null;
+        }
+        return new MetricsFileWriter(MetricsRegistry.global(), config.getMetricsFile(), config.getMetricsDumpInterval());
+    }
+
+    private static VisitAnalytics createAnalytics(AppConfig config, ShortLinkRepository repository) {
+        if (!config.isAnalyticsEnabled()) {
+            return null;
+        }
+        return new VisitAnalytics(code -> repository.findByCode(code).map(ShortLink::getOwnerId),
+                config.getAnalyticsQueueSize(),
+                config.getAnalyticsRetentionHours());
+    }
+
+    private static RedirectHttpServer startHttpServer(AppConfig config,
+                                                      ShortLinkService shortLinkService,
+                                                      NotificationService notificationService) {
+        if (!config.isHttpEnabled()) {
+            return null;
+        }
+        try {
+            RedirectHttpServer server = new RedirectHttpServer(shortLinkService,
+                    config.getHttpHost(),
+                    config.getHttpPort(),
+                    config.getHttpBacklog(),
+                    config.isHttpVirtualThreadsEnabled(),
+                    config.getHttpWorkerThreads());
+            server.start();
+            notificationService.info("HTTP-сервер редиректов слушает порт " + server.getPort()
+                    + (server.isVirtualThreads() ? " (виртуальные потоки)" : " (пул потоков)"));
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось запустить HTTP-сервер на порту " + config.getHttpPort(), e);
+        }
+    }
+
+    private static NioRedirectServer startRedirectServer(AppConfig config,
+                                                         ShortLinkService shortLinkService,
+                                                         NotificationService notificationService) {
+        if (!config.isRedirectEngineEnabled()) {
+            return null;
+        }
+        try {
+            NioRedirectServer server = new NioRedirectServer(shortLinkService,
+                    config.getRedirectHost(),
+                    config.getRedirectPort(),
+                    config.getRedirectBacklog(),
+                    config.getRedirectBufferSize(),
+                    config.getRedirectCacheSize());
+            server.start();
+            notificationService.info("NIO-движок редиректов слушает порт " + server.getPort());
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось запустить движок редиректов на порту "
+                    + config.getRedirectPort(), e);
+        }
+    }
+
+    private static void awaitShutdown() {
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Движок хранения и декораторы над ним в порядке, заданном конфигурацией.
+     */
+    public static ShortLinkRepository createRepository(AppConfig config) {
+        ShortLinkRepository repository = switch (config.getStorageEngine()) {
+            case FILE -> new FileShortLinkRepository(config.getStorageFile(), config.isGroupCommitEnabled(),
+                    config.getKeepGenerations());
+            case LOG -> new LogShortLinkRepository(config);
+            case MAPPED -> new MappedShortLinkRepository(config);
+            case PACKED -> new PackedShortLinkRepository(config);
+            case SHARDED -> new ShardedShortLinkRepository(config);
+        };
+        if (config.isMetricsEnabled()) {
+            repository = new MeteredShortLinkRepository(repository, MetricsRegistry.global());
+        }
+        if (config.isCodeFilterEnabled()) {
+            repository = new FilteredShortLinkRepository(repository,
+                    config.getCodeFilterExpectedCodes(),
+                    config.getCodeFilterFalsePositiveRate(),
+                    config.getCodeFilterFile());
+        } else {
+            FilteredShortLinkRepository.deleteFilterFile(config.getCodeFilterFile());
+        }
+        if (config.isLinkCacheEnabled()) {
+            repository = new CachingShortLinkRepository(repository, config.getLinkCacheCapacity());
+        }
+        if (config.isVisitWriteBehindEnabled()) {
+            repository = new WriteBehindShortLinkRepository(repository,
+                    config.getVisitFlushInterval(),
+                    config.getVisitFlushThreshold(),
+                    config.getVisitMaxPending());
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(repository::flushVisits, "visit-flush-on-exit"));
+        return repository;
     }
 }
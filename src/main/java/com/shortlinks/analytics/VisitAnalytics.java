@@ -0,0 +1,308 @@
+package com.shortlinks.analytics;
+
+import com.shortlinks.service.VisitListener;
+import com.shortlinks.util.ShortCode;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Поминутная и почасовая статистика переходов по ссылкам и владельцам. Путь перехода только
+ * кладёт событие в ограниченную очередь без блокировок и без выделения памяти для упакованных
+ * кодов; счётчики обновляет единственный поток {@code visit-analytics}, поэтому они не нуждаются
+ * в распределении по полосам, а переход не ждёт ни счётчиков, ни хранилища.
+ *
+ * <p>Очередь — кольцо с порядковым номером в каждой ячейке: производитель занимает позицию CAS-ом
+ * по хвосту, заполняет ячейку и публикует её номером. Если очередь заполнена, событие отбрасывается
+ * и учитывается в {@link #getDroppedCount()} — статистика допускает потери ради скорости перехода.
+ *
+ * <p>Владельца кода поток агрегации узнаёт через {@code ownerResolver} один раз, при первом
+ * событии по коду. Ряды, в окне которых не осталось переходов, периодически удаляются.
+ */
+public class VisitAnalytics implements VisitListener, AutoCloseable {
+    private static final int MAX_BATCH = 4_096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final Function<String, Optional<UUID>> ownerResolver;
+    private final int retentionHours;
+    private final AtomicLongArray sequences;
+    private final long[] packedCodes;
+    private final String[] rawCodes;
+    private final long[] timestamps;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Map<String, LinkSeries> links = new ConcurrentHashMap<>();
+    private final Map<UUID, VisitSeries> owners = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> sweptOwnerTotals = new ConcurrentHashMap<>();
+    private final Thread aggregator;
+    private long head;
+    private long lastSweepMillis = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    public VisitAnalytics(Function<String, Optional<UUID>> ownerResolver, int queueSize, int retentionHours) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Analytics queue size must be positive");
+        }
+        if (retentionHours < 1) {
+            throw new IllegalArgumentException("Analytics retention must be at least one hour");
+        }
+        int size = Integer.highestOneBit(Math.max(2, queueSize) - 1) << 1;
+        this.ownerResolver = ownerResolver;
+        this.retentionHours = retentionHours;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.packedCodes = new long[size];
+        this.rawCodes = new String[size];
+        this.timestamps = new long[size];
+        this.mask = size - 1;
+        this.aggregator = new Thread(this::aggregateLoop, "visit-analytics");
+        aggregator.setDaemon(true);
+        aggregator.start();
+    }
+
+    @Override
+    public void onVisit(String code, long visitedAtMillis) {
+        long packed = ShortCode.pack(code);
+        publish(packed, packed == ShortCode.INVALID ? code : null, visitedAtMillis);
+    }
+
+    @Override
+    public void onVisit(long packedCode, long visitedAtMillis) {
+        publish(packedCode, null, visitedAtMillis);
+    }
+
+    /**
+     * Переходы по ссылке за последние {@code minutes} минут (не больше {@value VisitSeries#MINUTES}),
+     * от старой минуты к текущей.
+     */
+    public long[] linkMinutes(String code, Instant now, int minutes) {
+        long[] result = new long[checkMinutes(minutes)];
+        LinkSeries series = links.get(code);
+        if (series != null) {
+            series.addMinutes(result, minuteOf(now.toEpochMilli()));
+        }
+        return result;
+    }
+
+    public long[] linkHours(String code, Instant now, int hours) {
+        long[] result = new long[checkHours(hours)];
+        LinkSeries series = links.get(code);
+        if (series != null) {
+            series.addHours(result, hourOf(now));
+        }
+        return result;
+    }
+
+    public long[] ownerMinutes(UUID ownerId, Instant now, int minutes) {
+        long[] result = new long[checkMinutes(minutes)];
+        VisitSeries series = owners.get(ownerId);
+        if (series != null) {
+            series.addMinutes(result, minuteOf(now.toEpochMilli()));
+        }
+        return result;
+    }
+
+    public long[] ownerHours(UUID ownerId, Instant now, int hours) {
+        long[] result = new long[checkHours(hours)];
+        VisitSeries series = owners.get(ownerId);
+        if (series != null) {
+            series.addHours(result, hourOf(now));
+        }
+        return result;
+    }
+
+    /**
+     * Все учтённые переходы владельца, включая свёрнутые за пределы окна и ряды, удалённые
+     * за простой: их итог переносится в отдельный счётчик владельца.
+     */
+    public long ownerTotal(UUID ownerId) {
+        VisitSeries series = owners.get(ownerId);
+        return (series == null ? 0 : series.total()) + sweptOwnerTotals.getOrDefault(ownerId, 0L);
+    }
+
+    public int getRetentionHours() {
+        return retentionHours;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    /**
+     * Ждёт, пока поток агрегации учтёт всё, что было принято до вызова.
+     */
+    public void flush() {
+        long target = tail.get();
+        while (processed.get() < target && aggregator.isAlive()) {
+            LockSupport.unpark(aggregator);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(aggregator);
+        try {
+            aggregator.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(long packedCode, String rawCode, long visitedAtMillis) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    packedCodes[slot] = packedCode;
+                    rawCodes[slot] = rawCode;
+                    timestamps[slot] = visitedAtMillis;
+                    sequences.lazySet(slot, position + 1);
+                    return;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void aggregateLoop() {
+        while (true) {
+            int drained = drain();
+            maybeSweep();
+            if (drained > 0) {
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Учитывает до {@value #MAX_BATCH} опубликованных событий подряд; занятая, но ещё
+     * не опубликованная ячейка прерывает пачку.
+     */
+    private int drain() {
+        int count = 0;
+        while (count < MAX_BATCH) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            long packed = packedCodes[slot];
+            String raw = rawCodes[slot];
+            long timestamp = timestamps[slot];
+            rawCodes[slot] = null;
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            count++;
+            record(raw != null ? raw : ShortCode.unpack(packed), timestamp);
+        }
+        if (count > 0) {
+            processed.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void record(String code, long timestamp) {
+        LinkSeries series = links.computeIfAbsent(code,
+                key -> new LinkSeries(retentionHours, resolveOwner(key)));
+        long minute = minuteOf(timestamp);
+        series.add(minute, 1);
+        if (series.ownerId != null) {
+            owners.computeIfAbsent(series.ownerId, key -> new VisitSeries(retentionHours)).add(minute, 1);
+        }
+    }
+
+    private UUID resolveOwner(String code) {
+        try {
+            return ownerResolver.apply(code).orElse(null);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Раз в минуту удаляет ряды, последний переход которых старше почасового окна;
+     * итог удаляемого ряда владельца сохраняется для {@link #ownerTotal(UUID)}.
+     */
+    private void maybeSweep() {
+        long now = System.currentTimeMillis();
+        if (now - lastSweepMillis < SWEEP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastSweepMillis = now;
+        sweep(minuteOf(now) - (long) retentionHours * VisitSeries.MINUTES);
+    }
+
+    void sweep(long horizonMinute) {
+        links.values().removeIf(series -> series.lastMinute() < horizonMinute);
+        owners.entrySet().removeIf(entry -> {
+            VisitSeries series = entry.getValue();
+            if (series.lastMinute() >= horizonMinute) {
+                return false;
+            }
+            sweptOwnerTotals.merge(entry.getKey(), series.total(), Long::sum);
+            return true;
+        });
+    }
+
+    private int checkMinutes(int minutes) {
+        if (minutes < 1 || minutes > VisitSeries.MINUTES) {
+            throw new IllegalArgumentException("Minute window must be within 1.." + VisitSeries.MINUTES);
+        }
+        return minutes;
+    }
+
+    private int checkHours(int hours) {
+        if (hours < 1 || hours > retentionHours) {
+            throw new IllegalArgumentException("Hour window must be within 1.." + retentionHours);
+        }
+        return hours;
+    }
+
+    private static long minuteOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, MILLIS_PER_MINUTE);
+    }
+
+    private static long hourOf(Instant now) {
+        return Math.floorDiv(minuteOf(now.toEpochMilli()), VisitSeries.MINUTES);
+    }
+
+    private static final class LinkSeries extends VisitSeries {
+        private final UUID ownerId;
+
+        private LinkSeries(int retentionHours, UUID ownerId) {
+            super(retentionHours);
+            this.ownerId = ownerId;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.shortlinks.analytics;
+
+/**
+ * Ряд счётчиков переходов одной ссылки или одного владельца. Последние {@value #MINUTES} минут
+ * хранятся поминутно в кольце; минута, вышедшая из окна, сворачивается в почасовое кольцо
+ * на {@code retentionHours} часов, а вышедший из него час — в общий счётчик {@link #older}.
+ * Поэтому память ряда постоянна, а час в почасовой выборке — сумма свёрнутого и ещё поминутного.
+ *
+ * <p>Пишет только поток агрегации {@link VisitAnalytics}; методы синхронизированы ради
+ * редких чтений из запросов.
+ */
+class VisitSeries {
+    static final int MINUTES = 60;
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final long[] minutes = new long[MINUTES];
+    private final long[] hours;
+    private long lastMinute = NONE;
+    private long lastHour = NONE;
+    private long older;
+    private long total;
+
+    VisitSeries(int retentionHours) {
+        this.hours = new long[retentionHours];
+    }
+
+    synchronized void add(long minute, long count) {
+        total += count;
+        if (lastMinute == NONE) {
+            lastMinute = minute;
+        } else if (minute > lastMinute) {
+            advanceMinutes(minute);
+            advanceHours(Math.floorDiv(minute, MINUTES));
+        }
+        if (minute > lastMinute - MINUTES) {
+            minutes[minuteSlot(minute)] += count;
+        } else {
+            addToHour(Math.floorDiv(minute, MINUTES), count);
+        }
+    }
+
+    /**
+     * Поминутные значения за {@code into.length} минут, последняя из которых — {@code nowMinute};
+     * прибавляются к {@code into}, так что ряды можно суммировать в один массив.
+     */
+    synchronized void addMinutes(long[] into, long nowMinute) {
+        long first = nowMinute - into.length + 1;
+        for (int i = 0; i < into.length; i++) {
+            into[i] += minuteValue(first + i);
+        }
+    }
+
+    synchronized void addHours(long[] into, long nowHour) {
+        long first = nowHour - into.length + 1;
+        for (int i = 0; i < into.length; i++) {
+            long hour = first + i;
+            long value = hourValue(hour);
+            for (long minute = hour * MINUTES; minute < (hour + 1) * MINUTES; minute++) {
+                value += minuteValue(minute);
+            }
+            into[i] += value;
+        }
+    }
+
+    synchronized long total() {
+        return total;
+    }
+
+    /**
+     * Переходы, свёрнутые за пределы почасового окна.
+     */
+    synchronized long older() {
+        return older;
+    }
+
+    synchronized long lastMinute() {
+        return lastMinute;
+    }
+
+    private void advanceMinutes(long minute) {
+        long from = lastMinute - MINUTES + 1;
+        long to = Math.min(lastMinute, minute - MINUTES);
+        for (long expired = from; expired <= to; expired++) {
+            int slot = minuteSlot(expired);
+            if (minutes[slot] != 0) {
+                addToHour(Math.floorDiv(expired, MINUTES), minutes[slot]);
+                minutes[slot] = 0;
+            }
+        }
+        lastMinute = minute;
+    }
+
+    /**
+     * Почасовое кольцо сдвигается вместе с поминутным, так что вышедшие из окна часы
+     * сворачиваются в {@link #older} сразу, а не при следующем сворачивании минуты.
+     */
+    private void advanceHours(long hour) {
+        if (lastHour == NONE) {
+            lastHour = hour;
+        } else if (hour > lastHour) {
+            long from = lastHour - hours.length + 1;
+            long to = Math.min(lastHour, hour - hours.length);
+            for (long expired = from; expired <= to; expired++) {
+                int slot = hourSlot(expired);
+                older += hours[slot];
+                hours[slot] = 0;
+            }
+            lastHour = hour;
+        }
+    }
+
+    private void addToHour(long hour, long count) {
+        advanceHours(hour);
+        if (hour > lastHour - hours.length) {
+            hours[hourSlot(hour)] += count;
+        } else {
+            older += count;
+        }
+    }
+
+    private long minuteValue(long minute) {
+        return lastMinute != NONE && minute <= lastMinute && minute > lastMinute - MINUTES
+                ? minutes[minuteSlot(minute)]
+                : 0;
+    }
+
+    private long hourValue(long hour) {
+        return lastHour != NONE && hour <= lastHour && hour > lastHour - hours.length
+                ? hours[hourSlot(hour)]
+                : 0;
+    }
+
+    private static int minuteSlot(long minute) {
+        return Math.floorMod(minute, MINUTES);
+    }
+
+    private int hourSlot(long hour) {
+        return Math.floorMod(hour, hours.length);
+    }
+}
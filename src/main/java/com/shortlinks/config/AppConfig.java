@@ -1,5 +1,10 @@
 package com.shortlinks.config;
 
+import com.shortlinks.notification.OverflowPolicy;
+import com.shortlinks.repository.FsyncPolicy;
+import com.shortlinks.repository.StorageEngine;
+import com.shortlinks.util.CodeStrategy;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
@@ -13,7 +18,47 @@ public class AppConfig {
     private static final int DEFAULT_CODE_LENGTH = 7;
     private static final Duration DEFAULT_TTL = Duration.ofHours(24);
     private static final Duration DEFAULT_CLEANUP_INTERVAL = Duration.ofMinutes(1);
+    private static final int DEFAULT_CLEANUP_BATCH_SIZE = 1_000;
+    private static final Duration DEFAULT_CLEANUP_MAX_RUN = Duration.ofMillis(200);
     private static final String DEFAULT_STORAGE = "data/store.json";
+    private static final String DEFAULT_LOG_DIRECTORY = "data/log";
+    private static final String DEFAULT_MAPPED_DIRECTORY = "data/mapped";
+    private static final String DEFAULT_PACKED_DIRECTORY = "data/packed";
+    private static final String DEFAULT_SHARDED_DIRECTORY = "data/sharded";
+    private static final int DEFAULT_SHARD_COUNT = 16;
+    private static final int DEFAULT_KEEP_GENERATIONS = 2;
+    private static final String DEFAULT_CODE_STATE_FILE = "data/codes.state";
+    private static final int DEFAULT_CODE_BLOCK_SIZE = 1_000;
+    private static final String DEFAULT_HTTP_HOST = "0.0.0.0";
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final int DEFAULT_HTTP_BACKLOG = 1_024;
+    private static final int DEFAULT_HTTP_WORKER_THREADS = 64;
+    private static final int DEFAULT_REDIRECT_PORT = 8081;
+    private static final int DEFAULT_REDIRECT_BUFFER_SIZE = 8_192;
+    private static final int DEFAULT_REDIRECT_CACHE_SIZE = 65_536;
+    private static final Duration DEFAULT_FSYNC_INTERVAL = Duration.ofSeconds(1);
+    private static final long DEFAULT_SEGMENT_SIZE_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_COMPACTION_THRESHOLD_BYTES = 64L * 1024 * 1024;
+    private static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+    private static final double DEFAULT_ARENA_GARBAGE_RATIO = 0.5;
+    private static final Duration DEFAULT_VISIT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+    private static final long DEFAULT_VISIT_FLUSH_THRESHOLD = 1_000;
+    private static final long DEFAULT_VISIT_MAX_PENDING = 10_000;
+    private static final int DEFAULT_LINK_CACHE_CAPACITY = 100_000;
+    private static final long DEFAULT_FILTER_EXPECTED_CODES = 1_000_000;
+    private static final double DEFAULT_FILTER_FALSE_POSITIVE_RATE = 0.001;
+    private static final String DEFAULT_FILTER_FILE = "data/codes.filter";
+    private static final int DEFAULT_NOTIFICATION_QUEUE_SIZE = 8_192;
+    private static final int DEFAULT_NOTIFICATION_SAMPLE_RATE = 100;
+    private static final int DEFAULT_ANALYTICS_QUEUE_SIZE = 65_536;
+    private static final int DEFAULT_ANALYTICS_RETENTION_HOURS = 48;
+    private static final String DEFAULT_METRICS_FILE = "data/metrics.prom";
+    private static final int DEFAULT_CREATE_RATE_PER_MINUTE = 60;
+    private static final int DEFAULT_CREATE_BURST = 20;
+    private static final int DEFAULT_VISIT_RATE_PER_SECOND = 50;
+    private static final int DEFAULT_VISIT_BURST = 100;
+    private static final int DEFAULT_RATE_LIMIT_MAX_KEYS = 100_000;
+    private static final Duration DEFAULT_METRICS_DUMP_INTERVAL = Duration.ofSeconds(15);
 
     private final Properties properties = new Properties();
 
@@ -35,6 +80,19 @@ public class AppConfig {
                 String.valueOf(DEFAULT_CODE_LENGTH)));
     }
 
+    public CodeStrategy getCodeStrategy() {
+        return CodeStrategy.parse(read("app.codes.strategy", "random"));
+    }
+
+    public Path getCodeStateFile() {
+        return resolvePath(read("app.codes.state-file", DEFAULT_CODE_STATE_FILE));
+    }
+
+    public int getCodeBlockSize() {
+        return Integer.parseInt(read("app.codes.block-size",
+                String.valueOf(DEFAULT_CODE_BLOCK_SIZE)));
+    }
+
     public Duration getDefaultTtl() {
         long hours = Long.parseLong(read("app.default-ttl-hours",
                 String.valueOf(DEFAULT_TTL.toHours())));
@@ -47,8 +105,256 @@ public class AppConfig {
         return Duration.ofSeconds(seconds);
     }
 
+    public int getCleanupBatchSize() {
+        return Integer.parseInt(read("app.cleanup-batch-size",
+                String.valueOf(DEFAULT_CLEANUP_BATCH_SIZE)));
+    }
+
+    public Duration getCleanupMaxRun() {
+        long millis = Long.parseLong(read("app.cleanup-max-run-ms",
+                String.valueOf(DEFAULT_CLEANUP_MAX_RUN.toMillis())));
+        return Duration.ofMillis(millis);
+    }
+
     public Path getStorageFile() {
-        String configured = read("app.storage-file", DEFAULT_STORAGE);
+        return resolvePath(read("app.storage-file", DEFAULT_STORAGE));
+    }
+
+    public StorageEngine getStorageEngine() {
+        return StorageEngine.parse(read("app.storage.engine", "file"));
+    }
+
+    public Path getLogDirectory() {
+        return resolvePath(read("app.storage.log-dir", DEFAULT_LOG_DIRECTORY));
+    }
+
+    public Path getMappedDirectory() {
+        return resolvePath(read("app.storage.mapped-dir", DEFAULT_MAPPED_DIRECTORY));
+    }
+
+    public Path getPackedDirectory() {
+        return resolvePath(read("app.storage.packed-dir", DEFAULT_PACKED_DIRECTORY));
+    }
+
+    public Path getShardedDirectory() {
+        return resolvePath(read("app.storage.sharded-dir", DEFAULT_SHARDED_DIRECTORY));
+    }
+
+    public int getShardCount() {
+        return Integer.parseInt(read("app.storage.shards", String.valueOf(DEFAULT_SHARD_COUNT)));
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return FsyncPolicy.parse(read("app.storage.fsync", "interval"));
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return Boolean.parseBoolean(read("app.storage.group-commit", "false"));
+    }
+
+    public int getKeepGenerations() {
+        return Integer.parseInt(read("app.storage.keep-generations",
+                String.valueOf(DEFAULT_KEEP_GENERATIONS)));
+    }
+
+    public Duration getFsyncInterval() {
+        long millis = Long.parseLong(read("app.storage.fsync-interval-ms",
+                String.valueOf(DEFAULT_FSYNC_INTERVAL.toMillis())));
+        return Duration.ofMillis(millis);
+    }
+
+    public long getLogSegmentSizeBytes() {
+        return Long.parseLong(read("app.storage.segment-size-bytes",
+                String.valueOf(DEFAULT_SEGMENT_SIZE_BYTES)));
+    }
+
+    public long getCompactionThresholdBytes() {
+        return Long.parseLong(read("app.storage.compaction-threshold-bytes",
+                String.valueOf(DEFAULT_COMPACTION_THRESHOLD_BYTES)));
+    }
+
+    public Duration getCompactionInterval() {
+        long seconds = Long.parseLong(read("app.storage.compaction-interval-seconds",
+                String.valueOf(DEFAULT_COMPACTION_INTERVAL.toSeconds())));
+        return Duration.ofSeconds(seconds);
+    }
+
+    public double getArenaGarbageRatio() {
+        return Double.parseDouble(read("app.storage.packed-arena-garbage-ratio",
+                String.valueOf(DEFAULT_ARENA_GARBAGE_RATIO)));
+    }
+
+    public boolean isVisitWriteBehindEnabled() {
+        return Boolean.parseBoolean(read("app.visits.write-behind", "true"));
+    }
+
+    public Duration getVisitFlushInterval() {
+        long millis = Long.parseLong(read("app.visits.flush-interval-ms",
+                String.valueOf(DEFAULT_VISIT_FLUSH_INTERVAL.toMillis())));
+        return Duration.ofMillis(millis);
+    }
+
+    public long getVisitFlushThreshold() {
+        return Long.parseLong(read("app.visits.flush-threshold",
+                String.valueOf(DEFAULT_VISIT_FLUSH_THRESHOLD)));
+    }
+
+    public long getVisitMaxPending() {
+        return Long.parseLong(read("app.visits.max-pending",
+                String.valueOf(DEFAULT_VISIT_MAX_PENDING)));
+    }
+
+    public boolean isLinkCacheEnabled() {
+        return Boolean.parseBoolean(read("app.cache.enabled", "false"));
+    }
+
+    public int getLinkCacheCapacity() {
+        return Integer.parseInt(read("app.cache.capacity", String.valueOf(DEFAULT_LINK_CACHE_CAPACITY)));
+    }
+
+    public boolean isCodeFilterEnabled() {
+        return Boolean.parseBoolean(read("app.filter.enabled", "false"));
+    }
+
+    public long getCodeFilterExpectedCodes() {
+        return Long.parseLong(read("app.filter.expected-codes", String.valueOf(DEFAULT_FILTER_EXPECTED_CODES)));
+    }
+
+    public double getCodeFilterFalsePositiveRate() {
+        return Double.parseDouble(read("app.filter.false-positive-rate",
+                String.valueOf(DEFAULT_FILTER_FALSE_POSITIVE_RATE)));
+    }
+
+    public Path getCodeFilterFile() {
+        return resolvePath(read("app.filter.file", DEFAULT_FILTER_FILE));
+    }
+
+    public boolean isAsyncNotificationsEnabled() {
+        return Boolean.parseBoolean(read("app.notifications.async", "false"));
+    }
+
+    public int getNotificationQueueSize() {
+        return Integer.parseInt(read("app.notifications.queue-size",
+                String.valueOf(DEFAULT_NOTIFICATION_QUEUE_SIZE)));
+    }
+
+    public OverflowPolicy getNotificationOverflowPolicy() {
+        return OverflowPolicy.parse(read("app.notifications.overflow", "drop"));
+    }
+
+    public int getNotificationSampleRate() {
+        return Integer.parseInt(read("app.notifications.sample-rate",
+                String.valueOf(DEFAULT_NOTIFICATION_SAMPLE_RATE)));
+    }
+
+    public boolean isAnalyticsEnabled() {
+        return Boolean.parseBoolean(read("app.analytics.enabled", "false"));
+    }
+
+    public int getAnalyticsQueueSize() {
+        return Integer.parseInt(read("app.analytics.queue-size", String.valueOf(DEFAULT_ANALYTICS_QUEUE_SIZE)));
+    }
+
+    public int getAnalyticsRetentionHours() {
+        return Integer.parseInt(read("app.analytics.retention-hours",
+                String.valueOf(DEFAULT_ANALYTICS_RETENTION_HOURS)));
+    }
+
+    public boolean isMetricsEnabled() {
+        return Boolean.parseBoolean(read("app.metrics.enabled", "false"));
+    }
+
+    public Path getMetricsFile() {
+        return resolvePath(read("app.metrics.file", DEFAULT_METRICS_FILE));
+    }
+
+    public Duration getMetricsDumpInterval() {
+        long seconds = Long.parseLong(read("app.metrics.dump-interval-seconds",
+                String.valueOf(DEFAULT_METRICS_DUMP_INTERVAL.toSeconds())));
+        return Duration.ofSeconds(seconds);
+    }
+
+    public boolean isRateLimitEnabled() {
+        return Boolean.parseBoolean(read("app.ratelimit.enabled", "false"));
+    }
+
+    public int getCreateRatePerMinute() {
+        return Integer.parseInt(read("app.ratelimit.create-per-minute", String.valueOf(DEFAULT_CREATE_RATE_PER_MINUTE)));
+    }
+
+    public int getCreateBurst() {
+        return Integer.parseInt(read("app.ratelimit.create-burst", String.valueOf(DEFAULT_CREATE_BURST)));
+    }
+
+    public int getVisitRatePerSecond() {
+        return Integer.parseInt(read("app.ratelimit.visit-per-second", String.valueOf(DEFAULT_VISIT_RATE_PER_SECOND)));
+    }
+
+    public int getVisitBurst() {
+        return Integer.parseInt(read("app.ratelimit.visit-burst", String.valueOf(DEFAULT_VISIT_BURST)));
+    }
+
+    public int getRateLimitMaxKeys() {
+        return Integer.parseInt(read("app.ratelimit.max-keys", String.valueOf(DEFAULT_RATE_LIMIT_MAX_KEYS)));
+    }
+
+    public boolean isHttpEnabled() {
+        return Boolean.parseBoolean(read("app.http.enabled", "false"));
+    }
+
+    public String getHttpHost() {
+        return read("app.http.host", DEFAULT_HTTP_HOST);
+    }
+
+    public int getHttpPort() {
+        return Integer.parseInt(read("app.http.port", String.valueOf(DEFAULT_HTTP_PORT)));
+    }
+
+    public int getHttpBacklog() {
+        return Integer.parseInt(read("app.http.backlog", String.valueOf(DEFAULT_HTTP_BACKLOG)));
+    }
+
+    public boolean isHttpVirtualThreadsEnabled() {
+        return Boolean.parseBoolean(read("app.http.virtual-threads", "true"));
+    }
+
+    public int getHttpWorkerThreads() {
+        return Integer.parseInt(read("app.http.worker-threads", String.valueOf(DEFAULT_HTTP_WORKER_THREADS)));
+    }
+
+    public boolean isHttpHeadless() {
+        return Boolean.parseBoolean(read("app.http.headless", "false"));
+    }
+
+    public boolean isRedirectEngineEnabled() {
+        return Boolean.parseBoolean(read("app.redirect.enabled", "false"));
+    }
+
+    public String getRedirectHost() {
+        return read("app.redirect.host", DEFAULT_HTTP_HOST);
+    }
+
+    public int getRedirectPort() {
+        return Integer.parseInt(read("app.redirect.port", String.valueOf(DEFAULT_REDIRECT_PORT)));
+    }
+
+    public int getRedirectBacklog() {
+        return Integer.parseInt(read("app.redirect.backlog", String.valueOf(DEFAULT_HTTP_BACKLOG)));
+    }
+
+    public int getRedirectBufferSize() {
+        return Integer.parseInt(read("app.redirect.buffer-size", String.valueOf(DEFAULT_REDIRECT_BUFFER_SIZE)));
+    }
+
+    public int getRedirectCacheSize() {
+        return Integer.parseInt(read("app.redirect.cache-size", String.valueOf(DEFAULT_REDIRECT_CACHE_SIZE)));
+    }
+
+    public boolean isOpenBrowserEnabled() {
+        return Boolean.parseBoolean(read("app.open-browser", "true"));
+    }
+
+    private Path resolvePath(String configured) {
         Path path = Paths.get(configured);
         if (!path.isAbsolute()) {
             return Paths.get(System.getProperty("user.dir")).resolve(path).normalize();
@@ -56,10 +362,6 @@ public class AppConfig {
         return path;
     }
 
-    public boolean isOpenBrowserEnabled() {
-        return Boolean.parseBoolean(read("app.open-browser", "true"));
-    }
-
     private String read(String key, String defaultValue) {
         return System.getProperty(key, properties.getProperty(key, defaultValue));
     }
@@ -1,30 +1,56 @@
 package com.shortlinks.console;
 
+import com.shortlinks.analytics.VisitAnalytics;
+import com.shortlinks.metrics.MetricsRegistry;
 import com.shortlinks.model.ShortLink;
 import com.shortlinks.model.UserAccount;
 import com.shortlinks.notification.NotificationService;
 import com.shortlinks.service.ShortLinkService;
 import com.shortlinks.service.UserService;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.UUID;
 
 public class ConsoleRunner {
+    private static final int PAGE_SIZE = 20;
+    private static final int STATS_HOURS = 24;
+    private static final DateTimeFormatter STATS_TIME = DateTimeFormatter.ofPattern("dd.MM HH:mm")
+            .withZone(ZoneId.systemDefault());
+
     private final UserService userService;
     private final ShortLinkService shortLinkService;
     private final NotificationService notificationService;
+    private final VisitAnalytics analytics;
     private final Scanner scanner = new Scanner(System.in);
 
     public ConsoleRunner(UserService userService,
                          ShortLinkService shortLinkService,
                          NotificationService notificationService) {
+        this(userService, shortLinkService, notificationService, null);
+    }
+
+    public ConsoleRunner(UserService userService,
+                         ShortLinkService shortLinkService,
+                         NotificationService notificationService,
+                         VisitAnalytics analytics) {
         this.userService = userService;
         this.shortLinkService = shortLinkService;
         this.notificationService = notificationService;
+        this.analytics = analytics;
     }
 
     public void run() {
@@ -37,6 +63,7 @@ public class ConsoleRunner {
                 case "1" -> registerUser();
                 case "2" -> login();
                 case "3" -> openShortLinkFlow();
+                case "4" -> System.out.print(MetricsRegistry.global().toSummaryText());
                 case "0" -> exit = true;
                 default -> notificationService.warning("Неизвестная команда.");
             }
@@ -45,11 +72,13 @@ public class ConsoleRunner {
     }
 
     private void printMainMenu() {
+        notificationService.flush();
         System.out.println();
         System.out.println("==== Сервис коротких ссылок ====");
         System.out.println("1. Зарегистрировать нового пользователя");
         System.out.println("2. Войти по UUID");
         System.out.println("3. Открыть короткую ссылку");
+        System.out.println("4. Показать метрики");
         System.out.println("0. Выход");
         System.out.print("Выберите пункт: ");
     }
@@ -87,6 +116,8 @@ public class ConsoleRunner {
                 case "3" -> deleteMyLink(user);
                 case "4" -> openShortLinkFlow();
                 case "5" -> updateLink(user);
+                case "6" -> importLinks(user);
+                case "7" -> showVisitStats(user);
                 case "0" -> exit = true;
                 default -> notificationService.warning("Неизвестная команда.");
             }
@@ -94,6 +125,7 @@ public class ConsoleRunner {
     }
 
     private void printUserMenu(UserAccount user) {
+        notificationService.flush();
         System.out.println();
         System.out.println("==== Пользователь " + user.getId() + " ====");
         System.out.println("1. Создать короткую ссылку");
@@ -101,6 +133,8 @@ public class ConsoleRunner {
         System.out.println("3. Удалить ссылку");
         System.out.println("4. Открыть короткую ссылку");
         System.out.println("5. Обновить лимит/TTL ссылки");
+        System.out.println("6. Импортировать ссылки из файла");
+        System.out.println("7. Статистика переходов");
         System.out.println("0. Выйти из аккаунта");
         System.out.print("Выберите пункт: ");
     }
@@ -119,22 +153,126 @@ public class ConsoleRunner {
         }
     }
 
+    private void importLinks(UserAccount user) {
+        System.out.print("Файл со ссылками (в строке URL или URL;лимит): ");
+        Path source;
+        try {
+            source = Path.of(scanner.nextLine().trim());
+        } catch (InvalidPathException e) {
+            notificationService.error("Некорректный путь к файлу.");
+            return;
+        }
+        System.out.print("Лимит переходов для строк без лимита: ");
+        int defaultLimit;
+        try {
+            defaultLimit = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            notificationService.error("Некорректное число.");
+            return;
+        }
+        Path reportFile = source.resolveSibling(source.getFileName() + ".report.csv");
+        LinkImporter importer = new LinkImporter(shortLinkService, LinkImporter.DEFAULT_CHUNK_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             Writer report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            LinkImporter.Summary summary = importer.importLinks(user.getId(), reader, report, defaultLimit);
+            notificationService.info("Импорт завершён: создано " + summary.getCreated()
+                    + ", с ошибками " + summary.getFailed() + ". Отчёт: " + reportFile);
+        } catch (IOException e) {
+            notificationService.error("Не удалось прочитать файл: " + e.getMessage());
+        } catch (Exception e) {
+            notificationService.error("Импорт прерван: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Переходы по ссылке или по всем ссылкам пользователя: поминутно за последний час
+     * и почасово за последние сутки, только ненулевые интервалы.
+     */
+    private void showVisitStats(UserAccount user) {
+        if (analytics == null) {
+            notificationService.warning("Статистика выключена (app.analytics.enabled=false).");
+            return;
+        }
+        System.out.print("Код или короткая ссылка (Enter — все мои ссылки): ");
+        String input = scanner.nextLine().trim();
+        Instant now = Instant.now();
+        long[] minutes;
+        long[] hours;
+        if (input.isEmpty()) {
+            minutes = analytics.ownerMinutes(user.getId(), now, 60);
+            hours = analytics.ownerHours(user.getId(), now, Math.min(STATS_HOURS, analytics.getRetentionHours()));
+            System.out.println("Всего учтено переходов: " + analytics.ownerTotal(user.getId()));
+        } else {
+            try {
+                Optional<ShortLink> link = shortLinkService.findOwnLink(user.getId(), input);
+                if (link.isEmpty()) {
+                    notificationService.warning("Ссылка не найдена.");
+                    return;
+                }
+                String code = link.get().getCode();
+                minutes = analytics.linkMinutes(code, now, 60);
+                hours = analytics.linkHours(code, now, Math.min(STATS_HOURS, analytics.getRetentionHours()));
+            } catch (Exception e) {
+                notificationService.error("Не удалось получить статистику: " + e.getMessage());
+                return;
+            }
+        }
+        Instant minuteStart = now.truncatedTo(ChronoUnit.MINUTES);
+        Instant hourStart = now.truncatedTo(ChronoUnit.HOURS);
+        System.out.println("За последний час по минутам:");
+        printBuckets(minutes, minuteStart, ChronoUnit.MINUTES);
+        System.out.println("За последние " + hours.length + " ч по часам:");
+        printBuckets(hours, hourStart, ChronoUnit.HOURS);
+    }
+
+    private void printBuckets(long[] buckets, Instant last, ChronoUnit unit) {
+        boolean any = false;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0) {
+                Instant start = last.minus(buckets.length - 1 - i, unit);
+                System.out.printf("  %s | %d%n", STATS_TIME.format(start), buckets[i]);
+                any = true;
+            }
+        }
+        if (!any) {
+            System.out.println("  переходов не было");
+        }
+    }
+
     private void listMyLinks(UserAccount user) {
-        List<ShortLink> links = shortLinkService.listLinks(user.getId());
-        if (links.isEmpty()) {
+        int total = shortLinkService.countLinks(user.getId());
+        if (total == 0) {
             System.out.println("Ссылок пока нет.");
             return;
         }
-        Instant now = Instant.now();
-        System.out.println("Код | URL | Переходы (исп./лимит) | TTL");
-        for (ShortLink link : links) {
-            String ttl = formatTtl(now, link);
-            System.out.printf("%s | %s | %d/%d | %s%n",
-                    shortLinkService.toFullShortUrl(link.getCode()),
-                    link.getOriginalUrl(),
-                    link.getVisitCount(),
-                    link.getMaxVisits(),
-                    ttl);
+        System.out.println("Всего ссылок: " + total);
+        String cursor = null;
+        int shown = 0;
+        while (true) {
+            List<ShortLink> links = shortLinkService.listLinks(user.getId(), cursor, PAGE_SIZE);
+            if (links.isEmpty()) {
+                return;
+            }
+            Instant now = Instant.now();
+            System.out.println("Код | URL | Переходы (исп./лимит) | TTL");
+            for (ShortLink link : links) {
+                String ttl = formatTtl(now, link);
+                System.out.printf("%s | %s | %d/%d | %s%n",
+                        shortLinkService.toFullShortUrl(link.getCode()),
+                        link.getOriginalUrl(),
+                        link.getVisitCount(),
+                        link.getMaxVisits(),
+                        ttl);
+            }
+            shown += links.size();
+            if (links.size() < PAGE_SIZE || shown >= total) {
+                return;
+            }
+            cursor = links.get(links.size() - 1).getCode();
+            System.out.print("Enter — следующая страница, 0 — назад: ");
+            if (scanner.nextLine().trim().equals("0")) {
+                return;
+            }
         }
     }
 
@@ -0,0 +1,173 @@
+package com.shortlinks.console;
+
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.service.ShortLinkService.BulkRequest;
+import com.shortlinks.service.ShortLinkService.BulkResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Потоковый импорт ссылок из текстового файла: строка — {@code URL} или {@code URL;лимит},
+ * пустые строки и строки с {@code #} пропускаются. Файл читается порциями по {@code chunkSize}
+ * строк, каждая порция создаётся одним {@link ShortLinkService#createShortLinks}, поэтому
+ * память не зависит от размера файла. По каждой строке в отчёт пишется
+ * {@code номер;ok;короткая ссылка} или {@code номер;error;причина}.
+ *
+ * <p>Порции объединяются в контрольные точки по {@code checkpointChars} символов файла, каждая
+ * создаётся внутри {@link ShortLinkService#deferPersistence}: движок {@code file}, переписывающий
+ * хранилище целиком, пишет его раз на точку, а не на каждую порцию. Отчёт сбрасывается после
+ * записи точки.
+ */
+public class LinkImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+    public static final long DEFAULT_CHECKPOINT_CHARS = 64L << 20;
+
+    private final ShortLinkService shortLinkService;
+    private final int chunkSize;
+    private final long checkpointChars;
+
+    public LinkImporter(ShortLinkService shortLinkService, int chunkSize) {
+        this(shortLinkService, chunkSize, DEFAULT_CHECKPOINT_CHARS);
+    }
+
+    public LinkImporter(ShortLinkService shortLinkService, int chunkSize, long checkpointChars) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер порции должен быть положительным");
+        }
+        if (checkpointChars <= 0) {
+            throw new IllegalArgumentException("Размер контрольной точки должен быть положительным");
+        }
+        this.shortLinkService = shortLinkService;
+        this.chunkSize = chunkSize;
+        this.checkpointChars = checkpointChars;
+    }
+
+    public Summary importLinks(UUID ownerId, BufferedReader source, Writer report, int defaultMaxVisits)
+            throws IOException {
+        Summary summary = new Summary();
+        Run run = new Run(ownerId, source, report, defaultMaxVisits, summary);
+        boolean[] more = {true};
+        try {
+            while (more[0]) {
+                shortLinkService.deferPersistence(() -> more[0] = run.nextCheckpoint());
+                report.flush();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return summary;
+    }
+
+    private void flush(UUID ownerId,
+                       List<BulkRequest> requests,
+                       List<Integer> lineNumbers,
+                       Writer report,
+                       Summary summary) throws IOException {
+        if (requests.isEmpty()) {
+            return;
+        }
+        List<BulkResult> results = shortLinkService.createShortLinks(ownerId, requests);
+        for (int i = 0; i < results.size(); i++) {
+            BulkResult result = results.get(i);
+            report.write(lineNumbers.get(i) + ";");
+            if (result.isSuccess()) {
+                summary.created++;
+                report.write("ok;" + shortLinkService.toFullShortUrl(result.getShortLink().orElseThrow().getCode()));
+            } else {
+                summary.failed++;
+                report.write("error;" + result.getError().orElse(""));
+            }
+            report.write(System.lineSeparator());
+        }
+        requests.clear();
+        lineNumbers.clear();
+    }
+
+    /**
+     * Состояние одного импорта между контрольными точками.
+     */
+    private final class Run {
+        private final UUID ownerId;
+        private final BufferedReader source;
+        private final Writer report;
+        private final int defaultMaxVisits;
+        private final Summary summary;
+        private final List<BulkRequest> requests = new ArrayList<>(chunkSize);
+        private final List<Integer> lineNumbers = new ArrayList<>(chunkSize);
+        private int lineNumber;
+
+        private Run(UUID ownerId, BufferedReader source, Writer report, int defaultMaxVisits, Summary summary) {
+            this.ownerId = ownerId;
+            this.source = source;
+            this.report = report;
+            this.defaultMaxVisits = defaultMaxVisits;
+            this.summary = summary;
+        }
+
+        /**
+         * Создаёт ссылки до следующей контрольной точки или конца файла.
+         *
+         * @return {@code false}, если файл прочитан до конца
+         */
+        boolean nextCheckpoint() {
+            long chars = 0;
+            try {
+                String line;
+                while ((line = source.readLine()) != null) {
+                    lineNumber++;
+                    chars += line.length() + 1;
+                    String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                        requests.add(parse(trimmed, defaultMaxVisits));
+                        lineNumbers.add(lineNumber);
+                        if (requests.size() == chunkSize) {
+                            flush(ownerId, requests, lineNumbers, report, summary);
+                        }
+                    }
+                    if (chars >= checkpointChars) {
+                        flush(ownerId, requests, lineNumbers, report, summary);
+                        return true;
+                    }
+                }
+                flush(ownerId, requests, lineNumbers, report, summary);
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Лимит берётся из суффикса после последней {@code ;}, если он целиком состоит из цифр,
+     * иначе вся строка считается URL.
+     */
+    private static BulkRequest parse(String line, int defaultMaxVisits) {
+        int separator = line.lastIndexOf(';');
+        if (separator > 0) {
+            String suffix = line.substring(separator + 1).trim();
+            if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) && suffix.length() <= 9) {
+                return new BulkRequest(line.substring(0, separator).trim(), Integer.parseInt(suffix));
+            }
+        }
+        return new BulkRequest(line, defaultMaxVisits);
+    }
+
+    public static class Summary {
+        private int created;
+        private int failed;
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.shortlinks.http;
+
+import com.shortlinks.service.LinkChangeListener;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.util.ShortCode;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Специализированный движок редиректов на одном селекторе. Из запроса разбирается только
+ * стартовая строка и заголовки {@code Connection}/{@code Content-Length}; код упаковывается
+ * прямо из буфера сокета ({@link ShortCode#pack(java.nio.ByteBuffer, int, int)}), переход
+ * засчитывается через {@link ShortLinkService#resolve(long)}, а ответ 302 копируется из
+ * готового массива байтов {@link RedirectResponseCache}. Кэш сбрасывается при изменении
+ * или удалении ссылки через сервис.
+ *
+ * <p>Поддерживаются keep-alive (по умолчанию для HTTP/1.1) и конвейер запросов: все полные
+ * запросы из буфера обрабатываются по порядку, ответы копятся в выходном буфере соединения.
+ * Буферы выделяются на соединение, поэтому при попадании в кэш запрос обрабатывается без
+ * выделения памяти. Запросы с телом не поддерживаются.
+ */
+public class NioRedirectServer implements AutoCloseable {
+    private static final byte[] KEEP_ALIVE_TAIL = ascii("\r\n");
+    private static final byte[] CLOSE_TAIL = ascii("Connection: close\r\n\r\n");
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] GET = ascii("GET");
+    private static final byte[] HEAD = ascii("HEAD");
+    private static final byte[] HTTP_1_0 = ascii("HTTP/1.0");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+
+    private static final Response NOT_FOUND = Response.text("404 Not Found", "", "Короткая ссылка не найдена\n");
+    private static final Response GONE = Response.text("410 Gone", "", "Ссылка больше недоступна\n");
+    private static final Response TOO_MANY_REQUESTS = Response.text("429 Too Many Requests",
+            "Retry-After: 1\r\n", "Слишком много запросов\n");
+    private static final Response BAD_REQUEST = Response.text("400 Bad Request", "", "Некорректный запрос\n");
+    private static final Response METHOD_NOT_ALLOWED = Response.text("405 Method Not Allowed",
+            "Allow: GET, HEAD\r\n", "Поддерживаются только GET и HEAD\n");
+    private static final Response INTERNAL_ERROR = Response.text("500 Internal Server Error", "",
+            "Внутренняя ошибка сервера\n");
+
+    private final ShortLinkService shortLinkService;
+    private final RedirectResponseCache cache;
+    private final LinkChangeListener invalidation;
+    private final int bufferSize;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Consumer<SelectionKey> keyHandler = this::handleKey;
+    private final Thread loop;
+    private volatile boolean running = true;
+
+    public NioRedirectServer(ShortLinkService shortLinkService,
+                             String host,
+                             int port,
+                             int backlog,
+                             int bufferSize,
+                             int cacheSize) throws IOException {
+        if (bufferSize < 256) {
+            throw new IllegalArgumentException("Redirect buffer size must be at least 256 bytes");
+        }
+        this.shortLinkService = shortLinkService;
+        this.cache = new RedirectResponseCache(cacheSize);
+        this.invalidation = cache::invalidate;
+        this.bufferSize = bufferSize;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(host, port), backlog);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.loop = new Thread(this::run, "redirect-nio");
+        loop.setDaemon(true);
+        shortLinkService.addLinkChangeListener(invalidation);
+    }
+
+    public void start() {
+        loop.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        shortLinkService.removeLinkChangeListener(invalidation);
+        selector.wakeup();
+        try {
+            loop.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key);
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // сервер останавливается, ошибка закрытия не влияет на результат
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select(keyHandler);
+            } catch (IOException e) {
+                if (running) {
+                    throw new IllegalStateException("Redirect selector failed", e);
+                }
+            }
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        if (connection == null) {
+            accept();
+            return;
+        }
+        try {
+            if (key.isReadable()) {
+                connection.onReadable();
+            } else if (key.isWritable()) {
+                connection.drive();
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(key);
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(key, channel, bufferSize));
+            }
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // клиент уже отключился
+                }
+            }
+        }
+    }
+
+    /**
+     * Адрес клиента вычисляется один раз на соединение и служит ключом ограничения частоты.
+     */
+    private static InetAddress remoteAddress(SocketChannel channel) {
+        try {
+            SocketAddress address = channel.getRemoteAddress();
+            return address instanceof InetSocketAddress inet ? inet.getAddress() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // соединение уже разорвано
+        }
+    }
+
+    private final class Connection {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final ByteBuffer in;
+        private final InetAddress client;
+        private ByteBuffer out;
+        private boolean closeAfterWrite;
+        private boolean stalled;
+
+        private Connection(SelectionKey key, SocketChannel channel, int bufferSize) {
+            this.key = key;
+            this.channel = channel;
+            this.client = remoteAddress(channel);
+            this.in = ByteBuffer.allocateDirect(bufferSize);
+            this.out = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        private void onReadable() throws IOException {
+            if (channel.read(in) < 0) {
+                closeQuietly(key);
+                return;
+            }
+            drive();
+        }
+
+        /**
+         * Обрабатывает накопленные запросы и отправляет ответы, пока есть что делать
+         * без ожидания сокета; выбирает, какого события ждать дальше.
+         */
+        private void drive() throws IOException {
+            while (true) {
+                process();
+                out.flip();
+                channel.write(out);
+                boolean drained = !out.hasRemaining();
+                out.compact();
+                if (!drained) {
+                    interest(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (closeAfterWrite) {
+                    closeQuietly(key);
+                    return;
+                }
+                if (!stalled) {
+                    interest(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        private void interest(int ops) {
+            if (key.interestOps() != ops) {
+                key.interestOps(ops);
+            }
+        }
+
+        private void process() {
+            stalled = false;
+            in.flip();
+            while (!closeAfterWrite && in.hasRemaining()) {
+                if (out.position() > out.capacity() / 2) {
+                    stalled = true;
+                    break;
+                }
+                int start = in.position();
+                int end = headersEnd(start, in.limit());
+                if (end < 0) {
+                    if (start == 0 && in.limit() == in.capacity()) {
+                        write(BAD_REQUEST.head, BAD_REQUEST.body, true, false);
+                        in.position(in.limit());
+                    }
+                    break;
+                }
+                handleRequest(start, end);
+                in.position(end);
+            }
+            if (closeAfterWrite) {
+                in.position(in.limit());
+            }
+            in.compact();
+        }
+
+        private void handleRequest(int start, int end) {
+            int methodEnd = indexOf(start, end, (byte) ' ');
+            int targetEnd = methodEnd < 0 ? -1 : indexOf(methodEnd + 1, end, (byte) ' ');
+            int lineEnd = targetEnd < 0 ? -1 : indexOf(targetEnd + 1, end, (byte) '\r');
+            if (lineEnd < 0) {
+                write(BAD_REQUEST.head, BAD_REQUEST.body, true, false);
+                return;
+            }
+            boolean head = equalsAscii(start, methodEnd, HEAD);
+            if (!head && !equalsAscii(start, methodEnd, GET)) {
+                write(METHOD_NOT_ALLOWED.head, METHOD_NOT_ALLOWED.body, true, false);
+                return;
+            }
+            boolean http10 = equalsAscii(targetEnd + 1, lineEnd, HTTP_1_0);
+            boolean close = http10;
+            for (int line = lineEnd + 2; line < end - 2; ) {
+                int next = indexOf(line, end, (byte) '\r');
+                int colon = indexOf(line, next, (byte) ':');
+                if (colon > 0) {
+                    if (equalsIgnoreCase(line, colon, CONNECTION)) {
+                        if (containsIgnoreCase(colon + 1, next, CLOSE)) {
+                            close = true;
+                        } else if (containsIgnoreCase(colon + 1, next, KEEP_ALIVE)) {
+                            close = false;
+                        }
+                    } else if (equalsIgnoreCase(line, colon, TRANSFER_ENCODING)
+                            || equalsIgnoreCase(line, colon, CONTENT_LENGTH) && !isZero(colon + 1, next)) {
+                        write(BAD_REQUEST.head, BAD_REQUEST.body, true, false);
+                        return;
+                    }
+                }
+                line = next + 2;
+            }
+
+            int codeStart = methodEnd + 2;
+            if (in.get(methodEnd + 1) != '/') {
+                write(NOT_FOUND.head, NOT_FOUND.body, close, head);
+                return;
+            }
+            int codeEnd = codeStart;
+            while (codeEnd < targetEnd && in.get(codeEnd) != '?' && in.get(codeEnd) != '#') {
+                codeEnd++;
+            }
+            if (codeEnd == codeStart || indexOf(codeStart, codeEnd, (byte) '/') >= 0) {
+                write(NOT_FOUND.head, NOT_FOUND.body, close, head);
+                return;
+            }
+            try {
+                long packed = ShortCode.pack(in, codeStart, codeEnd);
+                if (packed == ShortCode.INVALID) {
+                    redirectUncached(codeStart, codeEnd, close, head);
+                    return;
+                }
+                switch (shortLinkService.resolve(packed, client)) {
+                    case SUCCESS -> {
+                        byte[] redirect = cachedRedirect(packed);
+                        write(redirect != null ? redirect : NOT_FOUND.head,
+                                redirect != null ? EMPTY : NOT_FOUND.body, close, head);
+                    }
+                    case NOT_FOUND -> {
+                        cache.invalidate(packed);
+                        write(NOT_FOUND.head, NOT_FOUND.body, close, head);
+                    }
+                    case EXPIRED, LIMIT_REACHED -> write(GONE.head, GONE.body, close, head);
+                    case RATE_LIMITED -> write(TOO_MANY_REQUESTS.head, TOO_MANY_REQUESTS.body, close, head);
+                }
+            } catch (RuntimeException e) {
+                write(INTERNAL_ERROR.head, INTERNAL_ERROR.body, true, head);
+            }
+        }
+
+        private byte[] cachedRedirect(long packed) {
+            byte[] redirect = cache.get(packed);
+            if (redirect != null) {
+                return redirect;
+            }
+            long stamp = cache.stamp();
+            Optional<String> url = shortLinkService.findOriginalUrl(ShortCode.unpack(packed));
+            if (url.isEmpty()) {
+                return null;
+            }
+            redirect = redirectHead(url.get());
+            cache.put(packed, redirect, stamp);
+            return redirect;
+        }
+
+        /**
+         * Коды вне base62 или длиннее {@link ShortCode#MAX_LENGTH} не упаковываются и идут
+         * обычным путём сервиса, без кэша.
+         */
+        private void redirectUncached(int codeStart, int codeEnd, boolean close, boolean head) {
+            char[] chars = new char[codeEnd - codeStart];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) (in.get(codeStart + i) & 0xFF);
+            }
+            ShortLinkService.VisitResult result = shortLinkService.resolve(new String(chars), client);
+            switch (result.getStatus()) {
+                case SUCCESS -> write(redirectHead(result.getShortLink().orElseThrow().getOriginalUrl()),
+                        EMPTY, close, head);
+                case NOT_FOUND -> write(NOT_FOUND.head, NOT_FOUND.body, close, head);
+                case EXPIRED, LIMIT_REACHED -> write(GONE.head, GONE.body, close, head);
+                case RATE_LIMITED -> write(TOO_MANY_REQUESTS.head, TOO_MANY_REQUESTS.body, close, head);
+            }
+        }
+
+        private void write(byte[] responseHead, byte[] body, boolean close, boolean headOnly) {
+            byte[] tail = close ? CLOSE_TAIL : KEEP_ALIVE_TAIL;
+            int bodyLength = headOnly ? 0 : body.length;
+            int required = responseHead.length + tail.length + bodyLength;
+            if (out.remaining() < required) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(out.capacity() * 2, out.position() + required));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            out.put(responseHead).put(tail);
+            if (bodyLength > 0) {
+                out.put(body);
+            }
+            if (close) {
+                closeAfterWrite = true;
+            }
+        }
+
+        private int headersEnd(int from, int to) {
+            for (int i = from; i + 3 < to; i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    return i + 4;
+                }
+            }
+            return -1;
+        }
+
+        private int indexOf(int from, int to, byte value) {
+            for (int i = from; i < to; i++) {
+                if (in.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean equalsAscii(int from, int to, byte[] expected) {
+            if (to - from != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (in.get(from + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean equalsIgnoreCase(int from, int to, byte[] lowerCase) {
+            if (to - from != lowerCase.length) {
+                return false;
+            }
+            for (int i = 0; i < lowerCase.length; i++) {
+                if (lower(in.get(from + i)) != lowerCase[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsIgnoreCase(int from, int to, byte[] lowerCase) {
+            for (int i = from; i + lowerCase.length <= to; i++) {
+                if (equalsIgnoreCase(i, i + lowerCase.length, lowerCase)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isZero(int from, int to) {
+            boolean digits = false;
+            for (int i = from; i < to; i++) {
+                byte b = in.get(i);
+                if (b == '0') {
+                    digits = true;
+                } else if (b != ' ' && b != '\t') {
+                    return false;
+                }
+            }
+            return digits;
+        }
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte[] redirectHead(String url) {
+        String location = URI.create(url).toASCIIString();
+        return ascii("HTTP/1.1 302 Found\r\nLocation: " + location
+                + "\r\nCache-Control: no-store\r\nContent-Length: 0\r\n");
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Ответ без заголовка {@code Connection}: его и пустую строку дописывает {@link Connection#write}.
+     */
+    private static final class Response {
+        private final byte[] head;
+        private final byte[] body;
+
+        private Response(byte[] head, byte[] body) {
+            this.head = head;
+            this.body = body;
+        }
+
+        private static Response text(String status, String extraHeaders, String text) {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            byte[] head = ascii("HTTP/1.1 " + status + "\r\n" + extraHeaders
+                    + "Content-Type: text/plain; charset=utf-8\r\nContent-Length: " + body.length + "\r\n");
+            return new Response(head, body);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.shortlinks.http;
+
+import com.shortlinks.service.ShortLinkService;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP-фронт для редиректов на {@code com.sun.net.httpserver}: {@code GET /{code}} отвечает
+ * 302 с {@code Location}, 404 для неизвестного кода и 410 для истёкшей ссылки или исчерпанного лимита.
+ * Каждый запрос обрабатывается в отдельном виртуальном потоке, если JVM их поддерживает (Java 21+),
+ * иначе — в пуле из {@code workerThreads} потоков.
+ */
+public class RedirectHttpServer implements AutoCloseable {
+    private static final byte[] NOT_FOUND_BODY = "Короткая ссылка не найдена\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GONE_BODY = "Ссылка больше недоступна\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOO_MANY_REQUESTS_BODY = "Слишком много запросов\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] METHOD_NOT_ALLOWED_BODY = "Поддерживается только GET\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ShortLinkService shortLinkService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public RedirectHttpServer(ShortLinkService shortLinkService,
+                              String host,
+                              int port,
+                              int backlog,
+                              boolean preferVirtualThreads,
+                              int workerThreads) throws IOException {
+        this.shortLinkService = shortLinkService;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), backlog);
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null
+                ? virtual
+                : Executors.newFixedThreadPool(Math.max(1, workerThreads), new WorkerThreadFactory());
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respond(exchange, 405, METHOD_NOT_ALLOWED_BODY);
+                return;
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            if (path.length() <= 1 || path.indexOf('/', 1) >= 0) {
+                respond(exchange, 404, NOT_FOUND_BODY);
+                return;
+            }
+            ShortLinkService.VisitResult result;
+            try {
+                result = shortLinkService.resolve(path.substring(1), exchange.getRemoteAddress().getAddress());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 404, NOT_FOUND_BODY);
+                return;
+            }
+            switch (result.getStatus()) {
+                case SUCCESS -> {
+                    Headers headers = exchange.getResponseHeaders();
+                    headers.set("Location", result.getShortLink().orElseThrow().getOriginalUrl());
+                    headers.set("Cache-Control", "no-store");
+                    exchange.sendResponseHeaders(302, -1);
+                }
+                case NOT_FOUND -> respond(exchange, 404, NOT_FOUND_BODY);
+                case EXPIRED, LIMIT_REACHED -> respond(exchange, 410, GONE_BODY);
+                case RATE_LIMITED -> {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 429, TOO_MANY_REQUESTS_BODY);
+                }
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} через рефлексию: проект собирается
+     * под Java 17, а виртуальные потоки появляются только в рантайме Java 21+.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "http-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.shortlinks.http;
+
+import com.shortlinks.util.ShortCode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кэш готовых ответов-редиректов с прямым отображением: упакованный код попадает ровно
+ * в один слот, новая запись вытесняет старую. Чтение не выделяет памяти; запись создаёт
+ * один объект на ссылку при промахе.
+ *
+ * <p>Инвалидация потокобезопасна: счётчик инвалидаций не даёт сохранить ответ,
+ * собранный до изменения ссылки, если изменение произошло во время его сборки.
+ */
+final class RedirectResponseCache {
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    RedirectResponseCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    byte[] get(long packedCode) {
+        Entry entry = entries.get(slot(packedCode));
+        return entry != null && entry.packedCode == packedCode ? entry.response : null;
+    }
+
+    /**
+     * Отметка, которую нужно взять до чтения ссылки из хранилища и передать в {@link #put}.
+     */
+    long stamp() {
+        return invalidations.get();
+    }
+
+    void put(long packedCode, byte[] response, long stamp) {
+        int slot = slot(packedCode);
+        Entry entry = new Entry(packedCode, response);
+        entries.set(slot, entry);
+        if (invalidations.get() != stamp) {
+            entries.compareAndSet(slot, entry, null);
+        }
+    }
+
+    void invalidate(String code) {
+        long packed = ShortCode.pack(code);
+        if (packed != ShortCode.INVALID) {
+            invalidate(packed);
+        }
+    }
+
+    void invalidate(long packedCode) {
+        invalidations.incrementAndGet();
+        int slot = slot(packedCode);
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.packedCode == packedCode) {
+            entries.compareAndSet(slot, entry, null);
+        }
+    }
+
+    private int slot(long packedCode) {
+        return (int) ((packedCode * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private static final class Entry {
+        private final long packedCode;
+        private final byte[] response;
+
+        private Entry(long packedCode, byte[] response) {
+            this.packedCode = packedCode;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.shortlinks.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически выгружает реестр в файл в текстовом формате Prometheus (для node_exporter
+ * textfile collector или ручного просмотра). Файл заменяется атомарно, так что читатель
+ * никогда не видит половину выгрузки; последняя выгрузка делается при закрытии.
+ */
+public class MetricsFileWriter implements AutoCloseable {
+    private final MetricsRegistry registry;
+    private final Path file;
+    private final ScheduledExecutorService executorService;
+
+    public MetricsFileWriter(MetricsRegistry registry, Path file, Duration interval) {
+        this.registry = registry;
+        this.file = file;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1_000, interval.toMillis());
+        executorService.scheduleWithFixedDelay(this::writeQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void write() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, registry.toPrometheusText(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+        writeQuietly();
+    }
+
+    /**
+     * Ошибка выгрузки не должна останавливать ни приложение, ни следующие выгрузки.
+     */
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Не удалось выгрузить метрики в " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.shortlinks.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Встроенные метрики без внешнего сервиса: счётчики ({@link LongAdder}), значения
+ * ({@link AtomicLong}) и гистограммы задержек ({@link LatencyHistogram}). Ряд задаётся именем
+ * и необязательными парами «метка — значение»; компоненты берут свои ряды один раз при создании
+ * и на горячем пути обращаются к ним напрямую, без поиска по имени.
+ *
+ * <p>Процессу достаточно одного реестра {@link #global()}; отдельные экземпляры нужны тестам.
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, AtomicLong> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public LongAdder counter(String name, String... labels) {
+        return counters.computeIfAbsent(series(name, labels), key -> new LongAdder());
+    }
+
+    public AtomicLong gauge(String name, String... labels) {
+        return gauges.computeIfAbsent(series(name, labels), key -> new AtomicLong());
+    }
+
+    /**
+     * Гистограмма задержек; в выгрузке значения переводятся из наносекунд в секунды.
+     */
+    public LatencyHistogram histogram(String name, String... labels) {
+        return histograms.computeIfAbsent(series(name, labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * Текстовый формат Prometheus: счётчики и значения как есть, гистограммы — как summary
+     * с квантилями 0.5, 0.9, 0.99 и 0.999, {@code _sum}, {@code _count} и отдельным {@code _max}.
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        String[] lastType = {null};
+        counters.forEach((series, value) -> {
+            typeLine(out, lastType, baseName(series), "counter");
+            out.append(series).append(' ').append(value.sum()).append('\n');
+        });
+        gauges.forEach((series, value) -> {
+            typeLine(out, lastType, baseName(series), "gauge");
+            out.append(series).append(' ').append(value.get()).append('\n');
+        });
+        Map<String, Map<String, LatencyHistogram.Snapshot>> summaries = new TreeMap<>();
+        histograms.forEach((series, histogram) -> summaries
+                .computeIfAbsent(baseName(series), name -> new TreeMap<>())
+                .put(labels(series), histogram.snapshot()));
+        summaries.forEach((name, byLabels) -> {
+            out.append("# TYPE ").append(name).append(" summary\n");
+            byLabels.forEach((labels, snapshot) -> {
+                for (double quantile : QUANTILES) {
+                    out.append(name).append('{').append(labels).append(labels.isEmpty() ? "" : ",")
+                            .append("quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(snapshot.getValueAtQuantile(quantile))).append('\n');
+                }
+                String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+                out.append(name).append("_sum").append(suffix).append(' ')
+                        .append(seconds(snapshot.getSum())).append('\n');
+                out.append(name).append("_count").append(suffix).append(' ')
+                        .append(snapshot.getCount()).append('\n');
+            });
+            out.append("# TYPE ").append(name).append("_max gauge\n");
+            byLabels.forEach((labels, snapshot) -> out.append(name).append("_max")
+                    .append(labels.isEmpty() ? "" : "{" + labels + "}").append(' ')
+                    .append(seconds(snapshot.getMax())).append('\n'));
+        });
+        return out.toString();
+    }
+
+    /**
+     * Сводка для консоли: гистограммы — число замеров и квантили в миллисекундах.
+     */
+    public String toSummaryText() {
+        StringBuilder out = new StringBuilder();
+        counters.forEach((series, value) -> out.append(series).append(" = ").append(value.sum()).append('\n'));
+        gauges.forEach((series, value) -> out.append(series).append(" = ").append(value.get()).append('\n'));
+        histograms.forEach((series, histogram) -> {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            out.append(series).append(": n=").append(snapshot.getCount());
+            if (snapshot.getCount() > 0) {
+                out.append(String.format(Locale.ROOT, ", p50=%.3f мс, p99=%.3f мс, p99.9=%.3f мс, max=%.3f мс",
+                        millis(snapshot.getValueAtQuantile(0.5)),
+                        millis(snapshot.getValueAtQuantile(0.99)),
+                        millis(snapshot.getValueAtQuantile(0.999)),
+                        millis(snapshot.getMax())));
+            }
+            out.append('\n');
+        });
+        return out.toString();
+    }
+
+    private static String series(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs: " + name);
+        }
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder series = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                series.append(',');
+            }
+            String value = labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"");
+            series.append(labels[i]).append("=\"").append(value).append('"');
+        }
+        return series.append('}').toString();
+    }
+
+    private static String baseName(String series) {
+        int brace = series.indexOf('{');
+        return brace < 0 ? series : series.substring(0, brace);
+    }
+
+    private static String labels(String series) {
+        int brace = series.indexOf('{');
+        return brace < 0 ? "" : series.substring(brace + 1, series.length() - 1);
+    }
+
+    private static void typeLine(StringBuilder out, String[] lastType, String name, String type) {
+        if (!name.equals(lastType[0])) {
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            lastType[0] = name;
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.valueOf(nanos / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
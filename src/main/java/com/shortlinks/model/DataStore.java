@@ -1,19 +1,30 @@
 package com.shortlinks.model;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataStore {
-    private Map<UUID, UserAccount> users = new HashMap<>();
-    private Map<String, ShortLink> shortLinks = new HashMap<>();
+    private Map<UUID, UserAccount> users = new ConcurrentHashMap<>();
+    private Map<String, ShortLink> shortLinks;
+
+    public DataStore() {
+        this(16);
+    }
+
+    /**
+     * Хранилище с таблицей ссылок, заранее рассчитанной на {@code expectedLinks} записей.
+     */
+    public DataStore(int expectedLinks) {
+        this.shortLinks = new ConcurrentHashMap<>(Math.max(16, expectedLinks));
+    }
 
     public Map<UUID, UserAccount> getUsers() {
         return users;
     }
 
     public void setUsers(Map<UUID, UserAccount> users) {
-        this.users = users;
+        this.users = new ConcurrentHashMap<>(users);
     }
 
     public Map<String, ShortLink> getShortLinks() {
@@ -21,6 +32,6 @@ public class DataStore {
     }
 
     public void setShortLinks(Map<String, ShortLink> shortLinks) {
-        this.shortLinks = shortLinks;
+        this.shortLinks = new ConcurrentHashMap<>(shortLinks);
     }
 }
@@ -1,19 +1,32 @@
 package com.shortlinks.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.util.UUID;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ShortLink {
+    private static final VarHandle VISIT_COUNT;
+
+    static {
+        try {
+            VISIT_COUNT = MethodHandles.lookup().findVarHandle(ShortLink.class, "visitCount", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private String code;
-    private UUID ownerId;
-    private String originalUrl;
-    private int maxVisits;
-    private int visitCount;
+    private volatile UUID ownerId;
+    private volatile String originalUrl;
+    private volatile int maxVisits;
+    private volatile int visitCount;
     private Instant createdAt;
-    private Instant expiresAt;
+    private volatile Instant expiresAt;
 
     public ShortLink() {
     }
@@ -94,7 +107,37 @@ public class ShortLink {
         return now.isAfter(expiresAt) || now.equals(expiresAt);
     }
 
+    @JsonIgnore
     public boolean isVisitLimitReached() {
         return visitCount >= maxVisits;
     }
+
+    /**
+     * Атомарно увеличивает счётчик переходов, если лимит ещё не исчерпан.
+     *
+     * @return {@code false}, если лимит уже достигнут
+     */
+    public boolean tryIncrementVisitCount() {
+        int current;
+        do {
+            current = visitCount;
+            if (current >= maxVisits) {
+                return false;
+            }
+        } while (!VISIT_COUNT.compareAndSet(this, current, current + 1));
+        return true;
+    }
+
+    /**
+     * Поднимает счётчик до {@code value}, не затирая параллельные инкременты.
+     */
+    public void raiseVisitCount(int value) {
+        int current;
+        do {
+            current = visitCount;
+            if (current >= value) {
+                return;
+            }
+        } while (!VISIT_COUNT.compareAndSet(this, current, value));
+    }
 }
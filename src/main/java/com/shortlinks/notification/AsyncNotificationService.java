@@ -0,0 +1,231 @@
+package com.shortlinks.notification;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Уведомления через ограниченный кольцевой буфер с несколькими производителями и одним
+ * потоком-писателем {@code notification-writer}. Производитель только занимает ячейку CAS-ом
+ * по хвосту и кладёт в неё строку, поэтому горячий путь (переход по ссылке) не ждёт блокировку
+ * {@link PrintStream}. Писатель забирает всё накопленное и выводит пачкой — одной записью
+ * в {@code out} и одной в {@code err}.
+ *
+ * <p>При заполненной очереди действует {@link OverflowPolicy}; отброшенные уведомления считаются
+ * в {@link #getDroppedCount()}, и писатель сообщает об их числе отдельной строкой.
+ */
+public class AsyncNotificationService implements NotificationService, AutoCloseable {
+    private static final int MAX_BATCH = 1_024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final AtomicReferenceArray<Entry> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final Thread writer;
+    private volatile long head;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private long reportedDrops;
+
+    public AsyncNotificationService(int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+        this(System.out, System.err, capacity, overflowPolicy, sampleRate);
+    }
+
+    public AsyncNotificationService(PrintStream out,
+                                    PrintStream err,
+                                    int capacity,
+                                    OverflowPolicy overflowPolicy,
+                                    int sampleRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Notification queue capacity must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.out = out;
+        this.err = err;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.writer = new Thread(this::drainLoop, "notification-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void info(String message) {
+        publish(new Entry(false, "[INFO] " + message));
+    }
+
+    @Override
+    public void warning(String message) {
+        publish(new Entry(false, "[WARN] " + message));
+    }
+
+    @Override
+    public void error(String message) {
+        publish(new Entry(true, "[ERROR] " + message));
+    }
+
+    /**
+     * Ждёт, пока писатель выведет всё, что было принято до вызова.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written.get() < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Выводит остаток очереди и останавливает писателя.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Уведомления, отброшенные политикой переполнения или после закрытия.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public int getQueuedCount() {
+        return (int) (tail.get() - head);
+    }
+
+    private void publish(Entry entry) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        while (true) {
+            long sequence = tail.get();
+            long queued = sequence - head;
+            if (queued > mask) {
+                if (overflowPolicy != OverflowPolicy.BLOCK) {
+                    dropped.increment();
+                    return;
+                }
+                wakeWriter();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                if (closed) {
+                    dropped.increment();
+                    return;
+                }
+                continue;
+            }
+            if (overflowPolicy == OverflowPolicy.SAMPLE && queued >= (mask + 1) * 3L / 4
+                    && sampleCounter.getAndIncrement() % sampleRate != 0) {
+                dropped.increment();
+                return;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                ring.lazySet((int) sequence & mask, entry);
+                if (writerParked) {
+                    wakeWriter();
+                }
+                return;
+            }
+        }
+    }
+
+    private void wakeWriter() {
+        LockSupport.unpark(writer);
+    }
+
+    private void drainLoop() {
+        StringBuilder outBatch = new StringBuilder();
+        StringBuilder errBatch = new StringBuilder();
+        while (true) {
+            int drained = drain(outBatch, errBatch);
+            if (drained > 0) {
+                continue;
+            }
+            if (closed && head == tail.get()) {
+                return;
+            }
+            writerParked = true;
+            if (head == tail.get() && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+    }
+
+    /**
+     * Забирает до {@value #MAX_BATCH} опубликованных записей подряд и выводит их. Занятая,
+     * но ещё не заполненная производителем ячейка прерывает пачку.
+     */
+    private int drain(StringBuilder outBatch, StringBuilder errBatch) {
+        long position = head;
+        int count = 0;
+        while (count < MAX_BATCH) {
+            int slot = (int) position & mask;
+            Entry entry = ring.get(slot);
+            if (entry == null) {
+                break;
+            }
+            ring.lazySet(slot, null);
+            (entry.error ? errBatch : outBatch).append(entry.text).append(System.lineSeparator());
+            position++;
+            count++;
+        }
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            errBatch.append("[WARN] Пропущено уведомлений из-за переполнения очереди: ")
+                    .append(drops - reportedDrops).append(System.lineSeparator());
+            reportedDrops = drops;
+        }
+        if (count > 0) {
+            head = position;
+        }
+        write(out, outBatch);
+        write(err, errBatch);
+        if (count > 0) {
+            written.addAndGet(count);
+        }
+        return count;
+    }
+
+    private static void write(PrintStream stream, StringBuilder batch) {
+        if (batch.length() > 0) {
+            stream.print(batch);
+            stream.flush();
+            batch.setLength(0);
+        }
+    }
+
+    private static final class Entry {
+        private final boolean error;
+        private final String text;
+
+        private Entry(boolean error, String text) {
+            this.error = error;
+            this.text = text;
+        }
+    }
+}
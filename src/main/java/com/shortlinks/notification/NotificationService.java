@@ -6,4 +6,11 @@ public interface NotificationService {
     void warning(String message);
 
     void error(String message);
+
+    /**
+     * Дожидается вывода уже принятых уведомлений. Нужен асинхронным реализациям перед тем,
+     * как консоль напечатает своё, чтобы строки не перемешались.
+     */
+    default void flush() {
+    }
 }
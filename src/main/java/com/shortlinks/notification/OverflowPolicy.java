@@ -0,0 +1,30 @@
+package com.shortlinks.notification;
+
+import java.util.Locale;
+
+/**
+ * Что делать с уведомлением, когда очередь {@link AsyncNotificationService} заполнена.
+ */
+public enum OverflowPolicy {
+    /**
+     * Отбросить новое уведомление.
+     */
+    DROP,
+    /**
+     * С заполнения очереди на три четверти пропускать только каждое N-е уведомление,
+     * при полной очереди — отбрасывать.
+     */
+    SAMPLE,
+    /**
+     * Ждать, пока писатель освободит место.
+     */
+    BLOCK;
+
+    public static OverflowPolicy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown notification overflow policy: " + value, e);
+        }
+    }
+}
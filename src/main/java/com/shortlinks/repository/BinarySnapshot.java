@@ -0,0 +1,338 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Бинарный снимок хранилища, читаемый через {@link FileChannel#map}: открытие стоит O(1),
+ * а ссылка декодируется из отображения только при обращении к ней.
+ *
+ * <pre>
+ * заголовок (64 байта)
+ * записи ссылок   linkCount  * 48 байт: codeOffset, codeLength, urlOffset, urlLength,
+ *                                      ownerIndex, maxVisits, visitCount, reserved (int),
+ *                                      createdAt, expiresAt (long, epoch-секунды)
+ * хеш-таблица     tableSize  * 4 байта: номер записи + 1, 0 — пусто; линейное пробирование
+ * строки          UTF-8 коды и URL подряд
+ * пользователи    userCount  * 24 байта: msb, lsb, createdAt
+ * владельцы       ownerCount * 16 байт: интернированные UUID, на них ссылается ownerIndex
+ * порядок кодов   linkCount  * 4 байта: номера записей по возрастанию кода
+ * по владельцам   linkCount  * 4 байта: номера записей по (ownerIndex, код)
+ * начала групп    (ownerCount + 1) * 4 байта: позиция первой записи владельца в предыдущей секции
+ * поиск владельца ownerCount * 4 байта: ownerIndex по возрастанию UUID
+ * порядок сроков  linkCount  * 4 байта: номера записей по возрастанию expiresAt
+ * </pre>
+ *
+ * Упорядоченные секции (версия 2) заменяют индексы в куче: курсор по коду, страница владельца
+ * и очередь истечения — двоичный поиск и последовательное чтение отображения. Порядок кодов
+ * совпадает с {@link String#compareTo}. Снимки версии 1 читаются, но без этих секций.
+ *
+ * Время хранится с точностью до секунды. Размер файла ограничен 2 ГиБ — пределом одного отображения.
+ */
+public final class BinarySnapshot {
+    static final int MAGIC = 0x534C4E4B;
+    static final int VERSION = 2;
+    static final int UNSORTED_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 48;
+    static final int USER_SIZE = 24;
+    static final int OWNER_SIZE = 16;
+
+    private static final BinarySnapshot EMPTY = new BinarySnapshot(ByteBuffer.allocate(HEADER_SIZE));
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int linkCount;
+    private final int tableSize;
+    private final int userCount;
+    private final int ownerCount;
+    private final int recordsOffset;
+    private final int tableOffset;
+    private final int usersOffset;
+    private final int ownersOffset;
+    private final int codeOrderOffset;
+    private final int ownerOrderOffset;
+    private final int ownerStartsOffset;
+    private final int ownerLookupOffset;
+    private final int expiryOrderOffset;
+
+    private BinarySnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.version = buffer.getInt(4);
+        this.linkCount = buffer.getInt(8);
+        this.tableSize = buffer.getInt(12);
+        this.userCount = buffer.getInt(16);
+        this.ownerCount = buffer.getInt(20);
+        this.recordsOffset = buffer.getInt(24);
+        this.tableOffset = buffer.getInt(28);
+        this.usersOffset = buffer.getInt(36);
+        this.ownersOffset = buffer.getInt(40);
+        boolean sorted = version >= VERSION;
+        this.codeOrderOffset = sorted ? buffer.getInt(44) : 0;
+        this.ownerOrderOffset = sorted ? buffer.getInt(48) : 0;
+        this.ownerStartsOffset = sorted ? buffer.getInt(52) : 0;
+        this.ownerLookupOffset = sorted ? buffer.getInt(56) : 0;
+        this.expiryOrderOffset = sorted ? buffer.getInt(60) : 0;
+    }
+
+    public static BinarySnapshot empty() {
+        return EMPTY;
+    }
+
+    public static BinarySnapshot open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Unsupported snapshot size: " + size);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int version = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || (version != VERSION && version != UNSORTED_VERSION)) {
+                throw new IllegalStateException("Not a binary snapshot: " + path);
+            }
+            return new BinarySnapshot(buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to map snapshot " + path, e);
+        }
+    }
+
+    public int linkCount() {
+        return linkCount;
+    }
+
+    public int userCount() {
+        return userCount;
+    }
+
+    /**
+     * Есть ли в снимке упорядоченные секции; снимок версии 1 их не содержит и должен быть переписан.
+     */
+    public boolean isSorted() {
+        return version >= VERSION || linkCount == 0;
+    }
+
+    /**
+     * @return номер записи или {@code -1}, если кода в снимке нет
+     */
+    public int indexOf(String code) {
+        if (tableSize == 0) {
+            return -1;
+        }
+        byte[] key = code.getBytes(StandardCharsets.UTF_8);
+        int mask = tableSize - 1;
+        for (int slot = hash(code) & mask; ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(tableOffset + slot * 4);
+            if (entry == 0) {
+                return -1;
+            }
+            if (codeEquals(entry - 1, key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public boolean contains(String code) {
+        return indexOf(code) >= 0;
+    }
+
+    public ShortLink linkAt(int index) {
+        int record = recordsOffset + index * RECORD_SIZE;
+        return new ShortLink(
+                readString(buffer.getInt(record), buffer.getInt(record + 4)),
+                ownerAt(buffer.getInt(record + 16)),
+                readString(buffer.getInt(record + 8), buffer.getInt(record + 12)),
+                buffer.getInt(record + 20),
+                buffer.getInt(record + 24),
+                Instant.ofEpochSecond(buffer.getLong(record + 32)),
+                Instant.ofEpochSecond(buffer.getLong(record + 40)));
+    }
+
+    public String codeAt(int index) {
+        int record = recordsOffset + index * RECORD_SIZE;
+        return readString(buffer.getInt(record), buffer.getInt(record + 4));
+    }
+
+    public UUID ownerOf(int index) {
+        return ownerAt(buffer.getInt(recordsOffset + index * RECORD_SIZE + 16));
+    }
+
+    public Instant expiresAt(int index) {
+        return Instant.ofEpochSecond(buffer.getLong(recordsOffset + index * RECORD_SIZE + 40));
+    }
+
+    /**
+     * Номер записи на позиции {@code position} порядка кодов.
+     */
+    public int codeOrderAt(int position) {
+        return buffer.getInt(codeOrderOffset + position * 4);
+    }
+
+    /**
+     * Первая позиция порядка кодов с кодом строго больше {@code afterCode}; {@code null} — начало.
+     */
+    public int codeRank(String afterCode) {
+        return afterCode == null ? 0 : rank(codeOrderOffset, 0, linkCount, afterCode);
+    }
+
+    /**
+     * Номер записи на позиции {@code position} секции по владельцам.
+     */
+    public int ownerOrderAt(int position) {
+        return buffer.getInt(ownerOrderOffset + position * 4);
+    }
+
+    /**
+     * @return интернированный номер владельца или {@code -1}, если ссылок владельца в снимке нет
+     */
+    public int ownerSlot(UUID ownerId) {
+        int low = 0;
+        int high = ownerCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int slot = buffer.getInt(ownerLookupOffset + middle * 4);
+            int order = ownerAt(slot).compareTo(ownerId);
+            if (order == 0) {
+                return slot;
+            }
+            if (order < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Позиция первой записи владельца в секции по владельцам.
+     */
+    public int ownerStart(int ownerSlot) {
+        return buffer.getInt(ownerStartsOffset + ownerSlot * 4);
+    }
+
+    /**
+     * Позиция за последней записью владельца в секции по владельцам.
+     */
+    public int ownerEnd(int ownerSlot) {
+        return buffer.getInt(ownerStartsOffset + (ownerSlot + 1) * 4);
+    }
+
+    /**
+     * Первая позиция в группе владельца с кодом строго больше {@code afterCode}; {@code null} — начало группы.
+     */
+    public int ownerRank(int ownerSlot, String afterCode) {
+        int start = ownerStart(ownerSlot);
+        return afterCode == null ? start : rank(ownerOrderOffset, start, ownerEnd(ownerSlot), afterCode);
+    }
+
+    /**
+     * Номер записи на позиции {@code position} порядка сроков.
+     */
+    public int expiryOrderAt(int position) {
+        return buffer.getInt(expiryOrderOffset + position * 4);
+    }
+
+    public List<UserAccount> users() {
+        List<UserAccount> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            int position = usersOffset + i * USER_SIZE;
+            users.add(new UserAccount(
+                    new UUID(buffer.getLong(position), buffer.getLong(position + 8)),
+                    Instant.ofEpochSecond(buffer.getLong(position + 16))));
+        }
+        return users;
+    }
+
+    static int hash(String code) {
+        int h = code.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private UUID ownerAt(int ownerIndex) {
+        if (ownerIndex < 0 || ownerIndex >= ownerCount) {
+            throw new IllegalStateException("Corrupted snapshot: owner index " + ownerIndex);
+        }
+        int position = ownersOffset + ownerIndex * OWNER_SIZE;
+        return new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+    }
+
+    /**
+     * Коды в снимке лежат в UTF-8, поэтому сравниваются байты, а не символы: иначе код
+     * не из ASCII не находился бы, а разные коды могли бы совпасть.
+     */
+    private boolean codeEquals(int index, byte[] key) {
+        int record = recordsOffset + index * RECORD_SIZE;
+        int offset = buffer.getInt(record);
+        int length = buffer.getInt(record + 4);
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Сравнивает две строки UTF-8 в порядке {@link String#compareTo}. Пока различие попадает
+     * на ASCII-байт, порядок байтов совпадает с порядком символов; если оба различающихся
+     * байта из многобайтовых последовательностей, строки декодируются и сравниваются целиком.
+     */
+    static int compareCodes(ByteBuffer left, int leftOffset, int leftLength,
+                            ByteBuffer right, int rightOffset, int rightLength) {
+        int length = Math.min(leftLength, rightLength);
+        for (int i = 0; i < length; i++) {
+            int a = left.get(leftOffset + i) & 0xFF;
+            int b = right.get(rightOffset + i) & 0xFF;
+            if (a == b) {
+                continue;
+            }
+            if (a < 0x80 || b < 0x80) {
+                return a - b;
+            }
+            return decode(left, leftOffset, leftLength).compareTo(decode(right, rightOffset, rightLength));
+        }
+        return leftLength - rightLength;
+    }
+
+    private int rank(int orderOffset, int from, int to, String afterCode) {
+        byte[] key = afterCode.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int record = recordsOffset + buffer.getInt(orderOffset + middle * 4) * RECORD_SIZE;
+            int order = compareCodes(buffer, buffer.getInt(record), buffer.getInt(record + 4), keyBuffer, 0, key.length);
+            if (order <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String decode(ByteBuffer source, int offset, int length) {
+        byte[] bytes = new byte[length];
+        source.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String readString(int offset, int length) {
+        return decode(buffer, offset, length);
+    }
+}
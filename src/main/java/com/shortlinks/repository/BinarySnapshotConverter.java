@@ -0,0 +1,55 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.model.DataStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Переводит {@code store.json} в {@link BinarySnapshot}. Если цель — каталог, снимок кладётся
+ * в него под именем, которое движок {@code mapped} подхватит при старте.
+ */
+public final class BinarySnapshotConverter {
+    static final String INITIAL_SNAPSHOT = "snapshot-0000000000000000.bin";
+
+    private BinarySnapshotConverter() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Использование: BinarySnapshotConverter <store.json> <snapshot.bin | каталог>");
+            System.exit(1);
+        }
+        Path target = convert(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Снимок записан: " + target);
+    }
+
+    public static Path convert(Path source, Path target) {
+        try {
+            if (Files.isDirectory(target)) {
+                target = target.resolve(INITIAL_SNAPSHOT);
+            }
+            DataStore dataStore = StoreFile.read(source, new ObjectMapper().registerModule(new JavaTimeModule()));
+            if (dataStore == null) {
+                throw new IllegalStateException("Storage file not found: " + source);
+            }
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (BinarySnapshotWriter writer = new BinarySnapshotWriter(temp, dataStore.getShortLinks().size())) {
+                for (var link : dataStore.getShortLinks().values()) {
+                    writer.addLink(link);
+                }
+                dataStore.getUsers().values().forEach(writer::addUser);
+                writer.finish();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return target;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to convert " + source, e);
+        }
+    }
+}
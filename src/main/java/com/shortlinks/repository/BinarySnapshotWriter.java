@@ -0,0 +1,262 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Потоковая запись {@link BinarySnapshot}: число ссылок известно заранее, поэтому записи
+ * и строки пишутся двумя последовательными курсорами без материализации всего хранилища.
+ * Для упорядоченных секций в памяти остаются только владелец и срок каждой записи; коды
+ * при сортировке читаются из уже записанной части файла через отображение.
+ */
+public final class BinarySnapshotWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final int linkCount;
+    private final int[] table;
+    private final int[] ownerIndexes;
+    private final long[] expiresAt;
+    private final int recordsOffset;
+    private final int tableOffset;
+    private final long stringsOffset;
+    private final Map<UUID, Integer> owners = new HashMap<>();
+    private final List<UUID> ownerOrder = new ArrayList<>();
+    private final List<UserAccount> users = new ArrayList<>();
+    private final ByteBuffer records = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer strings = ByteBuffer.allocate(BUFFER_SIZE);
+    private long recordsPosition;
+    private long stringsPosition;
+    private int written;
+
+    public BinarySnapshotWriter(Path target, int linkCount) throws IOException {
+        this.channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.linkCount = linkCount;
+        this.table = new int[tableSizeFor(linkCount)];
+        this.ownerIndexes = new int[linkCount];
+        this.expiresAt = new long[linkCount];
+        this.recordsOffset = BinarySnapshot.HEADER_SIZE;
+        this.tableOffset = checkedOffset((long) recordsOffset + (long) linkCount * BinarySnapshot.RECORD_SIZE);
+        this.stringsOffset = (long) tableOffset + (long) table.length * 4;
+        this.recordsPosition = recordsOffset;
+        this.stringsPosition = stringsOffset;
+    }
+
+    public void addLink(ShortLink link) throws IOException {
+        if (written == linkCount) {
+            throw new IllegalStateException("Snapshot already holds " + linkCount + " links");
+        }
+        byte[] code = link.getCode().getBytes(StandardCharsets.UTF_8);
+        byte[] url = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        if (records.remaining() < BinarySnapshot.RECORD_SIZE) {
+            recordsPosition = drain(records, recordsPosition);
+        }
+        int owner = internOwner(link.getOwnerId());
+        ownerIndexes[written] = owner;
+        expiresAt[written] = link.getExpiresAt().getEpochSecond();
+        records.putInt(appendString(code))
+                .putInt(code.length)
+                .putInt(appendString(url))
+                .putInt(url.length)
+                .putInt(owner)
+                .putInt(link.getMaxVisits())
+                .putInt(link.getVisitCount())
+                .putInt(0)
+                .putLong(link.getCreatedAt().getEpochSecond())
+                .putLong(link.getExpiresAt().getEpochSecond());
+        insert(link.getCode(), written);
+        written++;
+    }
+
+    public void addUser(UserAccount user) {
+        users.add(user);
+    }
+
+    /**
+     * Дописывает хеш-таблицу, пользователей, владельцев, упорядоченные секции и заголовок,
+     * затем выполняет fsync.
+     */
+    public void finish() throws IOException {
+        if (written != linkCount) {
+            throw new IllegalStateException("Expected " + linkCount + " links, got " + written);
+        }
+        recordsPosition = drain(records, recordsPosition);
+        stringsPosition = drain(strings, stringsPosition);
+
+        ByteBuffer tableBuffer = ByteBuffer.allocate(table.length * 4);
+        for (int entry : table) {
+            tableBuffer.putInt(entry);
+        }
+        tableBuffer.flip();
+        writeFully(tableBuffer, tableOffset);
+
+        int usersOffset = checkedOffset(stringsPosition);
+        ByteBuffer tail = ByteBuffer.allocate(users.size() * BinarySnapshot.USER_SIZE
+                + ownerOrder.size() * BinarySnapshot.OWNER_SIZE);
+        for (UserAccount user : users) {
+            tail.putLong(user.getId().getMostSignificantBits())
+                    .putLong(user.getId().getLeastSignificantBits())
+                    .putLong(user.getCreatedAt().getEpochSecond());
+        }
+        int ownersOffset = checkedOffset((long) usersOffset + (long) users.size() * BinarySnapshot.USER_SIZE);
+        for (UUID owner : ownerOrder) {
+            tail.putLong(owner.getMostSignificantBits()).putLong(owner.getLeastSignificantBits());
+        }
+        tail.flip();
+        writeFully(tail, usersOffset);
+        int codeOrderOffset = checkedOffset((long) ownersOffset + (long) ownerOrder.size() * BinarySnapshot.OWNER_SIZE);
+        int ownerOrderOffset = checkedOffset((long) codeOrderOffset + (long) linkCount * 4);
+        int ownerStartsOffset = checkedOffset((long) ownerOrderOffset + (long) linkCount * 4);
+        int ownerLookupOffset = checkedOffset((long) ownerStartsOffset + (long) (ownerOrder.size() + 1) * 4);
+        int expiryOrderOffset = checkedOffset((long) ownerLookupOffset + (long) ownerOrder.size() * 4);
+        checkedOffset((long) expiryOrderOffset + (long) linkCount * 4);
+
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, stringsPosition);
+        Comparator<Integer> byCode = (left, right) -> compareCodes(mapped, left, right);
+        int[] codeOrder = sortRecords(byCode);
+        writeInts(codeOrder, codeOrderOffset);
+        writeInts(sortRecords(Comparator.<Integer>comparingInt(record -> ownerIndexes[record]).thenComparing(byCode)),
+                ownerOrderOffset);
+        int[] ownerStarts = new int[ownerOrder.size() + 1];
+        for (int owner : ownerIndexes) {
+            ownerStarts[owner + 1]++;
+        }
+        for (int owner = 0; owner < ownerOrder.size(); owner++) {
+            ownerStarts[owner + 1] += ownerStarts[owner];
+        }
+        writeInts(ownerStarts, ownerStartsOffset);
+        writeInts(IntStream.range(0, ownerOrder.size())
+                .boxed()
+                .sorted(Comparator.comparing(ownerOrder::get))
+                .mapToInt(Integer::intValue)
+                .toArray(), ownerLookupOffset);
+        writeInts(sortRecords(Comparator.<Integer>comparingLong(record -> expiresAt[record]).thenComparing(byCode)),
+                expiryOrderOffset);
+
+        ByteBuffer header = ByteBuffer.allocate(BinarySnapshot.HEADER_SIZE);
+        header.putInt(BinarySnapshot.MAGIC)
+                .putInt(BinarySnapshot.VERSION)
+                .putInt(linkCount)
+                .putInt(table.length)
+                .putInt(users.size())
+                .putInt(ownerOrder.size())
+                .putInt(recordsOffset)
+                .putInt(tableOffset)
+                .putInt(checkedOffset(stringsOffset))
+                .putInt(usersOffset)
+                .putInt(ownersOffset)
+                .putInt(codeOrderOffset)
+                .putInt(ownerOrderOffset)
+                .putInt(ownerStartsOffset)
+                .putInt(ownerLookupOffset)
+                .putInt(expiryOrderOffset);
+        header.clear();
+        writeFully(header, 0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int appendString(byte[] bytes) throws IOException {
+        int offset = checkedOffset(stringsPosition + strings.position());
+        if (bytes.length > strings.remaining()) {
+            stringsPosition = drain(strings, stringsPosition);
+        }
+        if (bytes.length > strings.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes), stringsPosition);
+            stringsPosition += bytes.length;
+        } else {
+            strings.put(bytes);
+        }
+        return offset;
+    }
+
+    private int[] sortRecords(Comparator<Integer> comparator) {
+        return IntStream.range(0, linkCount)
+                .boxed()
+                .sorted(comparator)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private int compareCodes(ByteBuffer mapped, int left, int right) {
+        int leftRecord = recordsOffset + left * BinarySnapshot.RECORD_SIZE;
+        int rightRecord = recordsOffset + right * BinarySnapshot.RECORD_SIZE;
+        return BinarySnapshot.compareCodes(mapped, mapped.getInt(leftRecord), mapped.getInt(leftRecord + 4),
+                mapped, mapped.getInt(rightRecord), mapped.getInt(rightRecord + 4));
+    }
+
+    private void writeInts(int[] values, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (int value : values) {
+            if (!buffer.hasRemaining()) {
+                position = drain(buffer, position);
+            }
+            buffer.putInt(value);
+        }
+        drain(buffer, position);
+    }
+
+    private int internOwner(UUID owner) {
+        return owners.computeIfAbsent(owner, key -> {
+            ownerOrder.add(key);
+            return ownerOrder.size() - 1;
+        });
+    }
+
+    private void insert(String code, int index) {
+        int mask = table.length - 1;
+        int slot = BinarySnapshot.hash(code) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private long drain(ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        writeFully(buffer, position);
+        buffer.clear();
+        return position + length;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int tableSizeFor(int linkCount) {
+        int size = 16;
+        while (size < linkCount * 2L) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int checkedOffset(long offset) {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Binary snapshot exceeds 2 GiB");
+        }
+        return (int) offset;
+    }
+}
@@ -0,0 +1,351 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.util.ShortCode;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Кэш разрешения кодов перед хранилищем. Запись — последняя известная копия ссылки или отметка
+ * «код не найден», так что перебор несуществующих кодов ботами не доходит до хранилища.
+ * Истёкшие и исчерпанные ссылки тоже отвечаются из кэша; переход по живой ссылке всё равно идёт
+ * в хранилище, которое атомарно проверяет лимит, а вернувшаяся копия обновляет запись.
+ *
+ * <p>Вытеснение — сегментированный LRU: новая запись попадает в испытательный сегмент и переходит
+ * в защищённый (80% ёмкости) при повторном обращении. Отрицательные записи из испытательного
+ * сегмента не выходят, поэтому поток одноразовых кодов вытесняет только сам себя.
+ * Кэш разбит на {@value #STRIPES} полос со своими блокировками.
+ *
+ * <p>{@code save}, {@code saveAll}, {@code delete} и {@code deleteExpired} сбрасывают записи
+ * изменённых кодов; счётчик сбросов полосы не даёт положить в кэш ответ хранилища, прочитанный
+ * до параллельного изменения.
+ */
+public class CachingShortLinkRepository implements ShortLinkRepository {
+    private static final int STRIPES = 16;
+    private static final Entry NEGATIVE = new Entry(null);
+
+    private final ShortLinkRepository delegate;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingShortLinkRepository(ShortLinkRepository delegate, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.delegate = delegate;
+        int perStripe = Math.max(2, (capacity + STRIPES - 1) / STRIPES);
+        int protectedCapacity = Math.max(1, perStripe * 4 / 5);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe - protectedCapacity, protectedCapacity);
+        }
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        Stripe stripe = stripe(code);
+        Entry entry = stripe.get(code);
+        if (entry != null) {
+            hits.increment();
+            if (entry.link == null) {
+                negativeHits.increment();
+                return Optional.empty();
+            }
+            return Optional.of(InMemoryShortLinkRepository.cloneLink(entry.link));
+        }
+        misses.increment();
+        long stamp = stripe.stamp();
+        Optional<ShortLink> found = delegate.findByCode(code);
+        stripe.put(code, found.map(link -> new Entry(InMemoryShortLinkRepository.cloneLink(link))).orElse(NEGATIVE),
+                stamp);
+        return found;
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        Stripe stripe = stripe(code);
+        Entry entry = stripe.get(code);
+        if (entry != null) {
+            hits.increment();
+            ShortLink link = entry.link;
+            if (link == null) {
+                negativeHits.increment();
+                return VisitAttempt.notFound();
+            }
+            if (link.isExpired(now)) {
+                return VisitAttempt.of(VisitAttempt.Outcome.EXPIRED, InMemoryShortLinkRepository.cloneLink(link));
+            }
+            if (link.getVisitCount() >= link.getMaxVisits()) {
+                return VisitAttempt.of(VisitAttempt.Outcome.LIMIT_REACHED, InMemoryShortLinkRepository.cloneLink(link));
+            }
+        } else {
+            misses.increment();
+        }
+        long stamp = stripe.stamp();
+        VisitAttempt attempt = delegate.tryConsumeVisit(code, now);
+        stripe.put(code, attempt.getShortLink()
+                .map(link -> new Entry(InMemoryShortLinkRepository.cloneLink(link)))
+                .orElse(NEGATIVE), stamp);
+        return attempt;
+    }
+
+    /**
+     * Ключ кэша — строковый код, поэтому упакованный код распаковывается.
+     */
+    @Override
+    public VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        return tryConsumeVisit(ShortCode.unpack(packedCode), now);
+    }
+
+    @Override
+    public VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        return tryConsumeVisit(ShortCode.unpack(packedCode), Instant.ofEpochMilli(nowMillis)).getOutcome();
+    }
+
+    @Override
+    public void flushVisits() {
+        delegate.flushVisits();
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return delegate.findByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        return delegate.findByOwner(ownerId, offset, limit);
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        return delegate.findByOwnerAfter(ownerId, afterCode, limit);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return delegate.countByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        return delegate.findAfter(afterCode, limit);
+    }
+
+    @Override
+    public void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        delegate.forEachLink(afterCode, pageSize, action);
+    }
+
+    @Override
+    public void deferPersistence(Runnable work) {
+        delegate.deferPersistence(work);
+    }
+
+    @Override
+    public String storeIdentity() {
+        return delegate.storeIdentity();
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        try {
+            return delegate.save(shortLink);
+        } finally {
+            invalidate(shortLink.getCode());
+        }
+    }
+
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        try {
+            return delegate.saveAll(shortLinks);
+        } finally {
+            shortLinks.forEach(link -> invalidate(link.getCode()));
+        }
+    }
+
+    @Override
+    public boolean delete(String code) {
+        try {
+            return delegate.delete(code);
+        } finally {
+            invalidate(code);
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return invalidated(delegate.deleteExpired(now));
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        return invalidated(delegate.deleteExpired(now, limit));
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        return delegate.saveUser(userAccount);
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return delegate.findUser(userId);
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public void invalidate(String code) {
+        stripe(code).invalidate(code);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Попадания в отрицательные записи — запросы несуществующих кодов, не дошедшие до хранилища.
+     */
+    public long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private List<ShortLink> invalidated(List<ShortLink> removed) {
+        removed.forEach(link -> invalidate(link.getCode()));
+        return removed;
+    }
+
+    private Stripe stripe(String code) {
+        int hash = code.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Entry {
+        private final ShortLink link;
+
+        private Entry(ShortLink link) {
+            this.link = link;
+        }
+    }
+
+    private final class Stripe {
+        private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private final int probationCapacity;
+        private final int protectedCapacity;
+        private long invalidations;
+
+        private Stripe(int probationCapacity, int protectedCapacity) {
+            this.probationCapacity = probationCapacity;
+            this.protectedCapacity = protectedCapacity;
+        }
+
+        synchronized Entry get(String code) {
+            Entry entry = protectedSegment.get(code);
+            if (entry != null) {
+                return entry;
+            }
+            entry = probation.get(code);
+            if (entry != null && entry.link != null) {
+                probation.remove(code);
+                promote(code, entry);
+            }
+            return entry;
+        }
+
+        synchronized long stamp() {
+            return invalidations;
+        }
+
+        synchronized void put(String code, Entry entry, long stamp) {
+            if (stamp != invalidations) {
+                return;
+            }
+            if (protectedSegment.containsKey(code)) {
+                if (entry.link != null) {
+                    protectedSegment.put(code, entry);
+                    return;
+                }
+                protectedSegment.remove(code);
+            }
+            probation.put(code, entry);
+            trimProbation();
+        }
+
+        synchronized void invalidate(String code) {
+            invalidations++;
+            if (protectedSegment.remove(code) == null) {
+                probation.remove(code);
+            }
+        }
+
+        synchronized int size() {
+            return probation.size() + protectedSegment.size();
+        }
+
+        /**
+         * Самая давняя запись защищённого сегмента при переполнении возвращается в испытательный.
+         */
+        private void promote(String code, Entry entry) {
+            protectedSegment.put(code, entry);
+            if (protectedSegment.size() > protectedCapacity) {
+                Iterator<Map.Entry<String, Entry>> eldest = protectedSegment.entrySet().iterator();
+                Map.Entry<String, Entry> demoted = eldest.next();
+                eldest.remove();
+                probation.put(demoted.getKey(), demoted.getValue());
+                trimProbation();
+            }
+        }
+
+        private void trimProbation() {
+            Iterator<Map.Entry<String, Entry>> eldest = probation.entrySet().iterator();
+            while (probation.size() > probationCapacity && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+
+import java.time.Instant;
+
+/**
+ * Элемент индекса сроков: упорядочен по {@code expiresAt}, при равенстве — по коду.
+ */
+final class ExpiryEntry implements Comparable<ExpiryEntry> {
+    final Instant expiresAt;
+    final String code;
+
+    ExpiryEntry(ShortLink link) {
+        this(link.getExpiresAt(), link.getCode());
+    }
+
+    ExpiryEntry(Instant expiresAt, String code) {
+        this.expiresAt = expiresAt;
+        this.code = code;
+    }
+
+    @Override
+    public int compareTo(ExpiryEntry other) {
+        int byTime = expiresAt.compareTo(other.expiresAt);
+        return byTime != 0 ? byTime : code.compareTo(other.code);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ExpiryEntry other)) {
+            return false;
+        }
+        return expiresAt.equals(other.expiresAt) && code.equals(other.code);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * expiresAt.hashCode() + code.hashCode();
+    }
+}
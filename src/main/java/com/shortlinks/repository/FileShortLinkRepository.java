@@ -6,190 +6,350 @@ import com.shortlinks.model.UserAccount;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
-
-public class FileShortLinkRepository implements ShortLinkRepository {
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Хранит весь {@link DataStore} одним JSON-файлом, который переписывается после каждого изменения.
+ * Стоимость записи растёт с размером хранилища, поэтому пакетные операции (импорт, очистка)
+ * выполняются внутри {@link #deferPersistence} и переписывают файл один раз на пачку.
+ *
+ * <p>В режиме групповой фиксации ({@code groupCommit}) хук под блокировкой записи только выдаёт
+ * изменению порядковый номер, а писатель после снятия блокировки ждёт в {@link #awaitDurable()}.
+ * Единственный поток {@code store-committer} снимает копию хранилища под блокировкой чтения,
+ * пишет её одной записью с {@code fsync} вне блокировки и отпускает всех, чьи номера вошли
+ * в запись. Пока идёт запись, новые изменения копятся и попадают в следующую, поэтому число
+ * перезаписей файла растёт не с числом писателей, а с числом групп. Как и без групповой фиксации,
+ * {@code save} возвращается только после записи файла, а ошибка записи выбрасывается писателю.
+ *
+ * <p>Файл пишется через {@link StoreFile}: временный файл, {@code fsync}, атомарное переименование,
+ * заголовок с поколением и CRC32C. Предыдущие {@code keepGenerations} снимков остаются рядом
+ * и подхватываются при старте, если основной файл повреждён.
+ *
+ * <p>Метрики записи помечены меткой {@code file} с путём файла, так что шарды движка
+ * {@code sharded} видны по отдельности.
+ */
+public class FileShortLinkRepository extends InMemoryShortLinkRepository {
+    public static final int DEFAULT_KEEP_GENERATIONS = 2;
+    private static final long RETRY_DELAY_MILLIS = 100;
+
     private final Path storagePath;
+    private final StoreFile storeFile;
     private final ObjectMapper objectMapper;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private DataStore dataStore;
+    private final LatencyHistogram persistLatency;
+    private final LongAdder persistedBytes;
+    private final AtomicLong storeFileBytes;
+    private final LongAdder groupCommits;
+    private final boolean groupCommit;
+    private final Object commitMonitor = new Object();
+    private final ThreadLocal<Boolean> deferred = new ThreadLocal<>();
+    private final Thread committer;
+    private long requestedSequence;
+    private long durableSequence;
+    private long failedSequence;
+    private RuntimeException failure;
+    private boolean closed;
 
     public FileShortLinkRepository(Path storagePath) {
+        this(storagePath, false);
+    }
+
+    public FileShortLinkRepository(Path storagePath, boolean groupCommit) {
+        this(storagePath, groupCommit, DEFAULT_KEEP_GENERATIONS);
+    }
+
+    /**
+     * Удаляет файл хранилища вместе с временным файлом и всеми сохранёнными поколениями.
+     */
+    public static void deleteFiles(Path storagePath) throws IOException {
+        StoreFile.deleteAll(storagePath);
+    }
+
+    public FileShortLinkRepository(Path storagePath, boolean groupCommit, int keepGenerations) {
         this.storagePath = storagePath;
+        this.groupCommit = groupCommit;
         this.objectMapper = new ObjectMapper()
                 .registerModule(new JavaTimeModule())
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.storeFile = new StoreFile(storagePath, keepGenerations, objectMapper);
+        String file = storagePath.toString();
+        MetricsRegistry registry = MetricsRegistry.global();
+        this.persistLatency = registry.histogram("shortlinks_persist_seconds", "file", file);
+        this.persistedBytes = registry.counter("shortlinks_persist_bytes_total", "file", file);
+        this.storeFileBytes = registry.gauge("shortlinks_store_file_bytes", "file", file);
+        this.groupCommits = registry.counter("shortlinks_group_commits_total", "file", file);
         load();
+        if (groupCommit) {
+            committer = new Thread(this::commitLoop, "store-committer");
+            committer.setDaemon(true);
+            committer.start();
+        } else {
+            committer = null;
+        }
     }
 
     @Override
-    public Optional<ShortLink> findByCode(String code) {
-        lock.readLock().lock();
-        try {
-            return Optional.ofNullable(dataStore.getShortLinks().get(code));
-        } finally {
-            lock.readLock().unlock();
-        }
+    protected void onLinkSaved(ShortLink link) {
+        persistChange();
     }
 
     @Override
-    public List<ShortLink> findByOwner(UUID ownerId) {
-        lock.readLock().lock();
-        try {
-            return dataStore.getShortLinks()
-                    .values()
-                    .stream()
-                    .filter(link -> link.getOwnerId().equals(ownerId))
-                    .map(FileShortLinkRepository::cloneLink)
-                    .collect(Collectors.toList());
-        } finally {
-            lock.readLock().unlock();
-        }
+    protected void onLinksSaved(List<ShortLink> links) {
+        persistChange();
     }
 
     @Override
-    public List<ShortLink> findAll() {
-        lock.readLock().lock();
-        try {
-            return dataStore.getShortLinks()
-                    .values()
-                    .stream()
-                    .map(FileShortLinkRepository::cloneLink)
-                    .collect(Collectors.toList());
-        } finally {
-            lock.readLock().unlock();
-        }
+    protected void onLinkDeleted(ShortLink link) {
+        persistChange();
     }
 
     @Override
-    public ShortLink save(ShortLink shortLink) {
-        lock.writeLock().lock();
-        try {
-            dataStore.getShortLinks().put(shortLink.getCode(), shortLink);
-            persist();
-            return shortLink;
-        } finally {
-            lock.writeLock().unlock();
-        }
+    protected void onLinksDeleted(List<ShortLink> links) {
+        persistChange();
     }
 
     @Override
-    public boolean delete(String code) {
-        lock.writeLock().lock();
-        try {
-            ShortLink removed = dataStore.getShortLinks().remove(code);
-            if (removed != null) {
-                persist();
-                return true;
-            }
-            return false;
-        } finally {
-            lock.writeLock().unlock();
-        }
+    protected void onLinksExpired(List<ShortLink> removed) {
+        persistChange();
     }
 
     @Override
-    public List<ShortLink> deleteExpired(Instant now) {
-        lock.writeLock().lock();
-        try {
-            Map<String, ShortLink> links = dataStore.getShortLinks();
-            List<String> expiredCodes = new ArrayList<>();
-            for (Map.Entry<String, ShortLink> entry : links.entrySet()) {
-                if (entry.getValue().isExpired(now)) {
-                    expiredCodes.add(entry.getKey());
+    protected void onUserSaved(UserAccount userAccount) {
+        persistChange();
+    }
+
+    @Override
+    protected void onVisitsFlushed(List<ShortLink> visited) {
+        persistChange();
+    }
+
+    /**
+     * Ждёт записи, в которую вошли все изменения, принятые к моменту вызова.
+     */
+    @Override
+    protected void awaitDurable() {
+        if (!groupCommit) {
+            return;
+        }
+        synchronized (commitMonitor) {
+            long ticket = requestedSequence;
+            boolean interrupted = false;
+            try {
+                while (durableSequence < ticket) {
+                    if (failedSequence >= ticket) {
+                        throw new IllegalStateException("Unable to persist storage file", failure);
+                    }
+                    if (closed && !committer.isAlive()) {
+                        throw new IllegalStateException("Storage is closed before the change was persisted");
+                    }
+                    try {
+                        commitMonitor.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
                 }
             }
-            List<ShortLink> removed = expiredCodes.stream()
-                    .map(links::remove)
-                    .collect(Collectors.toList());
-            if (!removed.isEmpty()) {
-                persist();
-            }
-            return removed;
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Изменения потока, выполняющего {@code work}, не переписывают файл по отдельности: файл
+     * пишется один раз по окончании работы, в том числе прерванной ошибкой, чтобы память и диск
+     * не расходились. Изменения других потоков пишутся как обычно и заодно сохраняют накопленное.
+     */
     @Override
-    public UserAccount saveUser(UserAccount userAccount) {
-        lock.writeLock().lock();
+    public void deferPersistence(Runnable work) {
+        if (deferred.get() != null) {
+            work.run();
+            return;
+        }
+        deferred.set(Boolean.FALSE);
         try {
-            dataStore.getUsers().put(userAccount.getId(), userAccount);
-            persist();
-            return userAccount;
+            work.run();
         } finally {
-            lock.writeLock().unlock();
+            boolean changed = deferred.get();
+            deferred.remove();
+            if (changed) {
+                lock.writeLock().lock();
+                try {
+                    persistOrEnqueue();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                awaitDurable();
+            }
         }
     }
 
     @Override
-    public Optional<UserAccount> findUser(UUID userId) {
+    public String storeIdentity() {
         lock.readLock().lock();
         try {
-            return Optional.ofNullable(dataStore.getUsers().get(userId));
+            return "file " + storagePath.toAbsolutePath() + " generation=" + storeFile.getGeneration()
+                    + " links=" + dataStore.getShortLinks().size();
         } finally {
             lock.readLock().unlock();
         }
     }
 
     @Override
-    public Collection<UserAccount> findAllUsers() {
-        lock.readLock().lock();
+    public void close() {
         try {
-            return new ArrayList<>(dataStore.getUsers().values());
+            super.close();
         } finally {
-            lock.readLock().unlock();
+            if (groupCommit) {
+                synchronized (commitMonitor) {
+                    closed = true;
+                    commitMonitor.notifyAll();
+                }
+                try {
+                    committer.join(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void persistChange() {
+        if (deferred.get() != null) {
+            deferred.set(Boolean.TRUE);
+            return;
+        }
+        persistOrEnqueue();
+    }
+
+    private void persistOrEnqueue() {
+        if (!groupCommit) {
+            persist();
+            return;
+        }
+        synchronized (commitMonitor) {
+            requestedSequence++;
+            commitMonitor.notifyAll();
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (commitMonitor) {
+                while (requestedSequence == durableSequence && !closed) {
+                    try {
+                        commitMonitor.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (requestedSequence == durableSequence) {
+                    return;
+                }
+            }
+            long target;
+            byte[] snapshot = null;
+            RuntimeException error = null;
+            lock.readLock().lock();
+            try {
+                synchronized (commitMonitor) {
+                    target = requestedSequence;
+                }
+                dirtyVisitCodes.clear();
+                try {
+                    snapshot = serialize();
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            try {
+                if (error != null) {
+                    throw error;
+                }
+                write(snapshot);
+                groupCommits.increment();
+                synchronized (commitMonitor) {
+                    durableSequence = target;
+                    commitMonitor.notifyAll();
+                }
+            } catch (RuntimeException e) {
+                if (!fail(target, e)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Писатели с номерами до {@code target} получают ошибку; следующая попытка — после паузы,
+     * изменения остаются в памяти и войдут в неё. После закрытия ошибку получают все ждущие.
+     *
+     * @return {@code false}, если хранилище закрыто и поток фиксации должен завершиться
+     */
+    private boolean fail(long target, RuntimeException e) {
+        synchronized (commitMonitor) {
+            failure = e;
+            failedSequence = closed ? requestedSequence : target;
+            commitMonitor.notifyAll();
+            if (closed) {
+                return false;
+            }
+            try {
+                commitMonitor.wait(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException interrupted) {
+                closed = true;
+            }
+            return true;
         }
     }
 
     private void load() {
+        DataStore loaded = storeFile.load();
+        if (loaded != null) {
+            dataStore = loaded;
+            rebuildIndexes();
+            return;
+        }
         try {
-            if (Files.exists(storagePath)) {
-                dataStore = objectMapper.readValue(storagePath.toFile(), DataStore.class);
-            } else {
-                Path parent = storagePath.getParent();
-                if (parent != null) {
-                    Files.createDirectories(parent);
-                }
-                dataStore = new DataStore();
-                persist();
+            Path parent = storagePath.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
             }
         } catch (IOException e) {
             throw new IllegalStateException("Unable to load storage file", e);
         }
+        dataStore = new DataStore();
+        persist();
     }
 
     private void persist() {
-        try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(storagePath.toFile(), dataStore);
-        } catch (IOException e) {
-            throw new IllegalStateException("Unable to persist storage file", e);
-        }
+        dirtyVisitCodes.clear();
+        write(serialize());
     }
 
-    private static ShortLink cloneLink(ShortLink link) {
-        return new ShortLink(
-                link.getCode(),
-                link.getOwnerId(),
-                link.getOriginalUrl(),
-                link.getMaxVisits(),
-                link.getVisitCount(),
-                link.getCreatedAt(),
-                link.getExpiresAt()
-        );
+    private byte[] serialize() {
+        return storeFile.encode(dataStore);
+    }
+
+    private synchronized void write(byte[] bytes) {
+        long start = System.nanoTime();
+        try {
+            long written = storeFile.write(bytes);
+            persistedBytes.add(written);
+            storeFileBytes.set(written);
+        } finally {
+            persistLatency.recordSince(start);
+        }
     }
 }
@@ -0,0 +1,329 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.util.CuckooFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Отсекает запросы несуществующих кодов фильтром кукушки ({@link CuckooFilter}) до обращения
+ * к хранилищу. Фильтр точен в отрицательную сторону, поэтому отпечаток добавляется только для
+ * действительно нового кода и удаляется только после подтверждённого удаления; изменения
+ * сериализуются {@link #mutationLock}, чтобы проверка «код уже есть» и запись шли атомарно.
+ *
+ * <p>Фильтр сохраняется в {@code filterFile} при закрытии и читается при старте, после чего файл
+ * удаляется: после падения процесса файла нет, и фильтр строится заново обходом хранилища.
+ * В заголовке файла записана {@link ShortLinkRepository#storeIdentity() отметка хранилища};
+ * если при старте она другая (другой движок или путь, хранилище менялось без фильтра или
+ * восстановлено из копии), файл отбрасывается и фильтр тоже строится заново.
+ * Если вставка упирается в заполненный фильтр, он перестраивается с удвоенной ёмкостью.
+ */
+public class FilteredShortLinkRepository implements ShortLinkRepository {
+    private static final int REBUILD_PAGE_SIZE = 10_000;
+
+    private final ShortLinkRepository delegate;
+    private final double falsePositiveRate;
+    private final Path filterFile;
+    private final ReentrantLock mutationLock = new ReentrantLock();
+    private final LongAdder rejected = new LongAdder();
+    private volatile CuckooFilter filter;
+
+    public FilteredShortLinkRepository(ShortLinkRepository delegate,
+                                       long expectedCodes,
+                                       double falsePositiveRate,
+                                       Path filterFile) {
+        this.delegate = delegate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filterFile = filterFile;
+        CuckooFilter stored = readFilter();
+        this.filter = stored != null ? stored : build(expectedCodes);
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        if (!filter.mightContain(code)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        return delegate.findByCode(code);
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        if (!filter.mightContain(code)) {
+            rejected.increment();
+            return VisitAttempt.notFound();
+        }
+        return delegate.tryConsumeVisit(code, now);
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        if (!filter.mightContain(packedCode)) {
+            rejected.increment();
+            return VisitAttempt.notFound();
+        }
+        return delegate.tryConsumeVisit(packedCode, now);
+    }
+
+    @Override
+    public VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        if (!filter.mightContain(packedCode)) {
+            rejected.increment();
+            return VisitAttempt.Outcome.NOT_FOUND;
+        }
+        return delegate.consumeVisit(packedCode, nowMillis);
+    }
+
+    @Override
+    public void flushVisits() {
+        delegate.flushVisits();
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return delegate.findByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        return delegate.findByOwner(ownerId, offset, limit);
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        return delegate.findByOwnerAfter(ownerId, afterCode, limit);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return delegate.countByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        return delegate.findAfter(afterCode, limit);
+    }
+
+    @Override
+    public void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        delegate.forEachLink(afterCode, pageSize, action);
+    }
+
+    @Override
+    public void deferPersistence(Runnable work) {
+        delegate.deferPersistence(work);
+    }
+
+    @Override
+    public String storeIdentity() {
+        return delegate.storeIdentity();
+    }
+
+    /**
+     * Отпечаток добавляется до записи в хранилище: параллельный переход по новому коду увидит
+     * в худшем случае ложноположительный ответ фильтра, но не ложный 404. Если запись упала,
+     * отпечаток остаётся — лишний отпечаток безопасен.
+     */
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        mutationLock.lock();
+        try {
+            admit(List.of(shortLink));
+            return delegate.save(shortLink);
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        mutationLock.lock();
+        try {
+            admit(shortLinks);
+            return delegate.saveAll(shortLinks);
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String code) {
+        mutationLock.lock();
+        try {
+            boolean deleted = delegate.delete(code);
+            if (deleted) {
+                filter.remove(code);
+            }
+            return deleted;
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        mutationLock.lock();
+        try {
+            List<ShortLink> removed = delegate.deleteExpired(now, limit);
+            removed.forEach(link -> filter.remove(link.getCode()));
+            return removed;
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        return delegate.saveUser(userAccount);
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return delegate.findUser(userId);
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public void close() {
+        mutationLock.lock();
+        try {
+            delegate.close();
+            writeFilter();
+        } finally {
+            mutationLock.unlock();
+        }
+    }
+
+    /**
+     * Запросы, отсечённые фильтром без обращения к хранилищу.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getFilterSize() {
+        return filter.size();
+    }
+
+    /**
+     * Добавляет отпечатки кодов, которых ещё нет в хранилище. Перестроенный фильтр собирается
+     * из хранилища, где этих ссылок пока нет, поэтому уже добавленные коды пачки вносятся в него заново.
+     */
+    private void admit(List<ShortLink> links) {
+        List<String> admitted = new ArrayList<>();
+        for (ShortLink link : links) {
+            String code = link.getCode();
+            if (filter.mightContain(code) && delegate.findByCode(code).isPresent()) {
+                continue;
+            }
+            admitted.add(code);
+            if (!filter.add(code)) {
+                CuckooFilter rebuilt = build((long) filter.capacity() * 2);
+                admitted.forEach(rebuilt::add);
+                filter = rebuilt;
+            }
+        }
+    }
+
+    private CuckooFilter build(long expectedCodes) {
+        while (true) {
+            CuckooFilter candidate = new CuckooFilter(expectedCodes, falsePositiveRate);
+            boolean[] full = {false};
+            delegate.forEachLink(null, REBUILD_PAGE_SIZE, link -> {
+                if (!full[0] && !candidate.add(link.getCode())) {
+                    full[0] = true;
+                }
+            });
+            if (!full[0]) {
+                return candidate;
+            }
+            expectedCodes *= 2;
+        }
+    }
+
+    /**
+     * Удаляет сохранённый фильтр. Вызывается при старте с выключенным фильтром: хранилище будет
+     * меняться без него, и устаревший файл не должен дожить до следующего включения.
+     */
+    public static void deleteFilterFile(Path filterFile) {
+        try {
+            Files.deleteIfExists(filterFile);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to delete filter file " + filterFile, e);
+        }
+    }
+
+    private CuckooFilter readFilter() {
+        if (filterFile == null || !Files.exists(filterFile)) {
+            return null;
+        }
+        try {
+            String identity = delegate.storeIdentity();
+            CuckooFilter stored;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(filterFile)))) {
+                stored = identity != null && identity.equals(in.readUTF()) ? CuckooFilter.readFrom(in) : null;
+            } catch (IOException e) {
+                stored = null;
+            }
+            Files.delete(filterFile);
+            return stored != null && stored.getFingerprintBits() == CuckooFilter.fingerprintBits(falsePositiveRate)
+                    ? stored
+                    : null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to consume filter file " + filterFile, e);
+        }
+    }
+
+    private void writeFilter() {
+        String identity = delegate.storeIdentity();
+        if (filterFile == null || identity == null) {
+            return;
+        }
+        Path temp = filterFile.resolveSibling(filterFile.getFileName() + ".tmp");
+        try {
+            Path parent = filterFile.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeUTF(identity);
+                filter.writeTo(out);
+            }
+            Files.move(temp, filterFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to persist filter file " + filterFile, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.shortlinks.repository;
+
+import java.util.Locale;
+
+public enum FsyncPolicy {
+    ALWAYS,
+    INTERVAL,
+    OS;
+
+    public static FsyncPolicy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown fsync policy: " + value, e);
+        }
+    }
+}
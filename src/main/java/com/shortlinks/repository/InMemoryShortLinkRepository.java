@@ -0,0 +1,505 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+
+/**
+ * Общая часть хранилищ, которые держат весь {@link DataStore} в памяти.
+ * Наследники отвечают только за долговечность: каждый хук вызывается под блокировкой записи
+ * сразу после изменения состояния в памяти.
+ *
+ * <p>Блокировка — {@link StampedLock}: поиск по коду и пользователю идёт оптимистичным чтением
+ * без записи в разделяемую память и берёт блокировку чтения, только если параллельно прошла запись.
+ * Блокировка не реентерабельна, поэтому хуки не должны снова захватывать {@link #lock}.
+ */
+public abstract class InMemoryShortLinkRepository implements ShortLinkRepository {
+    private static final long INDEX_PARALLELISM_THRESHOLD = 10_000;
+
+    private final StampedLock stampedLock = new StampedLock();
+    protected final ReadWriteLock lock = stampedLock.asReadWriteLock();
+    protected final Set<String> dirtyVisitCodes = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, NavigableSet<String>> ownerIndex = new ConcurrentHashMap<>();
+    private final NavigableSet<String> codeIndex = new ConcurrentSkipListSet<>();
+    private final NavigableSet<ExpiryEntry> expiryIndex = new ConcurrentSkipListSet<>();
+    private final LatencyHistogram readLockWait =
+            MetricsRegistry.global().histogram("shortlinks_lock_wait_seconds", "mode", "read");
+    private final LatencyHistogram writeLockWait =
+            MetricsRegistry.global().histogram("shortlinks_lock_wait_seconds", "mode", "write");
+    protected DataStore dataStore;
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        long stamp = stampedLock.tryOptimisticRead();
+        if (stamp != 0) {
+            ShortLink link = dataStore.getShortLinks().get(code);
+            ShortLink copy = link == null ? null : cloneLink(link);
+            if (stampedLock.validate(stamp)) {
+                return Optional.ofNullable(copy);
+            }
+        }
+        lockRead();
+        try {
+            return Optional.ofNullable(dataStore.getShortLinks().get(code))
+                    .map(InMemoryShortLinkRepository::cloneLink);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Работает без блокировок: карта ссылок конкурентная, а {@link #save} обновляет
+     * существующий экземпляр на месте, поэтому инкремент не теряется при параллельном изменении.
+     */
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        ShortLink link = dataStore.getShortLinks().get(code);
+        if (link == null) {
+            return VisitAttempt.notFound();
+        }
+        if (link.isExpired(now)) {
+            return VisitAttempt.of(VisitAttempt.Outcome.EXPIRED, cloneLink(link));
+        }
+        if (!link.tryIncrementVisitCount()) {
+            return VisitAttempt.of(VisitAttempt.Outcome.LIMIT_REACHED, cloneLink(link));
+        }
+        dirtyVisitCodes.add(code);
+        return VisitAttempt.of(VisitAttempt.Outcome.CONSUMED, cloneLink(link));
+    }
+
+    @Override
+    public void flushVisits() {
+        if (dirtyVisitCodes.isEmpty()) {
+            return;
+        }
+        lockRead();
+        try {
+            Map<String, ShortLink> links = dataStore.getShortLinks();
+            List<ShortLink> visited = new ArrayList<>();
+            for (Iterator<String> iterator = dirtyVisitCodes.iterator(); iterator.hasNext(); ) {
+                String code = iterator.next();
+                iterator.remove();
+                ShortLink link = links.get(code);
+                if (link != null) {
+                    visited.add(link);
+                }
+            }
+            if (visited.isEmpty()) {
+                return;
+            }
+            try {
+                onVisitsFlushed(visited);
+            } catch (RuntimeException e) {
+                visited.forEach(link -> dirtyVisitCodes.add(link.getCode()));
+                throw e;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        awaitDurable();
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return findByOwner(ownerId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        lockRead();
+        try {
+            NavigableSet<String> codes = ownerIndex.get(ownerId);
+            if (codes == null) {
+                return List.of();
+            }
+            Iterator<String> iterator = codes.iterator();
+            for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            return collectLinks(iterator, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        lockRead();
+        try {
+            NavigableSet<String> codes = ownerIndex.get(ownerId);
+            if (codes == null) {
+                return List.of();
+            }
+            NavigableSet<String> page = afterCode == null ? codes : codes.tailSet(afterCode, false);
+            return collectLinks(page.iterator(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        NavigableSet<String> codes = ownerIndex.get(ownerId);
+        return codes == null ? 0 : codes.size();
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        lockRead();
+        try {
+            return dataStore.getShortLinks()
+                    .values()
+                    .stream()
+                    .map(InMemoryShortLinkRepository::cloneLink)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        lockRead();
+        try {
+            NavigableSet<String> page = afterCode == null ? codeIndex : codeIndex.tailSet(afterCode, false);
+            return collectLinks(page.iterator(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        lockWrite();
+        try {
+            onLinkSaved(store(shortLink));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return shortLink;
+    }
+
+    /**
+     * Вся пачка вставляется под одним захватом блокировки записи, а наследник получает её
+     * одним вызовом {@link #onLinksSaved(List)}.
+     */
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        if (shortLinks.isEmpty()) {
+            return shortLinks;
+        }
+        lockWrite();
+        try {
+            List<ShortLink> stored = new ArrayList<>(shortLinks.size());
+            for (ShortLink shortLink : shortLinks) {
+                stored.add(store(shortLink));
+            }
+            onLinksSaved(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return shortLinks;
+    }
+
+    private ShortLink store(ShortLink shortLink) {
+        ShortLink stored = dataStore.getShortLinks().get(shortLink.getCode());
+        if (stored == null) {
+            stored = cloneLink(shortLink);
+            dataStore.getShortLinks().put(stored.getCode(), stored);
+            codeIndex.add(stored.getCode());
+            indexOwner(stored);
+            expiryIndex.add(new ExpiryEntry(stored));
+        } else {
+            if (!stored.getOwnerId().equals(shortLink.getOwnerId())) {
+                unindexOwner(stored);
+                stored.setOwnerId(shortLink.getOwnerId());
+                indexOwner(stored);
+            }
+            stored.setOriginalUrl(shortLink.getOriginalUrl());
+            stored.setMaxVisits(shortLink.getMaxVisits());
+            if (!stored.getExpiresAt().equals(shortLink.getExpiresAt())) {
+                expiryIndex.remove(new ExpiryEntry(stored));
+                stored.setExpiresAt(shortLink.getExpiresAt());
+                expiryIndex.add(new ExpiryEntry(stored));
+            }
+            stored.raiseVisitCount(shortLink.getVisitCount());
+        }
+        return stored;
+    }
+
+    @Override
+    public boolean delete(String code) {
+        lockWrite();
+        try {
+            ShortLink removed = dataStore.getShortLinks().remove(code);
+            if (removed == null) {
+                return false;
+            }
+            codeIndex.remove(code);
+            unindexOwner(removed);
+            expiryIndex.remove(new ExpiryEntry(removed));
+            onLinkDeleted(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return true;
+    }
+
+    /**
+     * Удаляет пачку кодов под одним захватом блокировки записи, наследник получает удалённые
+     * ссылки одним вызовом {@link #onLinksDeleted(List)}. Несуществующие коды пропускаются.
+     *
+     * @return удалённые ссылки
+     */
+    public List<ShortLink> deleteAll(Collection<String> codes) {
+        List<ShortLink> removed = new ArrayList<>(codes.size());
+        lockWrite();
+        try {
+            for (String code : codes) {
+                ShortLink link = dataStore.getShortLinks().remove(code);
+                if (link != null) {
+                    codeIndex.remove(code);
+                    unindexOwner(link);
+                    expiryIndex.remove(new ExpiryEntry(link));
+                    removed.add(link);
+                }
+            }
+            if (removed.isEmpty()) {
+                return removed;
+            }
+            onLinksDeleted(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return removed;
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Снимает с головы индекса сроков не больше {@code limit} просроченных ссылок,
+     * поэтому время под блокировкой записи пропорционально размеру порции, а не всего хранилища.
+     */
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        if (!hasExpired(now)) {
+            return List.of();
+        }
+        List<ShortLink> removed = new ArrayList<>();
+        lockWrite();
+        try {
+            Map<String, ShortLink> links = dataStore.getShortLinks();
+            while (removed.size() < limit && !expiryIndex.isEmpty()) {
+                ExpiryEntry head = expiryIndex.first();
+                if (now.isBefore(head.expiresAt)) {
+                    break;
+                }
+                expiryIndex.remove(head);
+                ShortLink link = links.remove(head.code);
+                if (link != null) {
+                    codeIndex.remove(head.code);
+                    unindexOwner(link);
+                    removed.add(link);
+                }
+            }
+            if (removed.isEmpty()) {
+                return removed;
+            }
+            onLinksExpired(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return removed;
+    }
+
+    private boolean hasExpired(Instant now) {
+        try {
+            return !now.isBefore(expiryIndex.first().expiresAt);
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        lockWrite();
+        try {
+            dataStore.getUsers().put(userAccount.getId(), userAccount);
+            onUserSaved(userAccount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitDurable();
+        return userAccount;
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        long stamp = stampedLock.tryOptimisticRead();
+        if (stamp != 0) {
+            UserAccount user = dataStore.getUsers().get(userId);
+            if (stampedLock.validate(stamp)) {
+                return Optional.ofNullable(user);
+            }
+        }
+        lockRead();
+        try {
+            return Optional.ofNullable(dataStore.getUsers().get(userId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        lockRead();
+        try {
+            return new ArrayList<>(dataStore.getUsers().values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Перестраивает вторичные индексы по текущему {@link #dataStore}; наследники вызывают
+     * его после загрузки или проигрывания журнала. Индексы конкурентные, поэтому большая
+     * таблица обходится параллельно в общем {@link java.util.concurrent.ForkJoinPool}.
+     */
+    protected void rebuildIndexes() {
+        ownerIndex.clear();
+        codeIndex.clear();
+        expiryIndex.clear();
+        Map<String, ShortLink> links = dataStore.getShortLinks();
+        if (links instanceof ConcurrentHashMap<String, ShortLink> concurrent) {
+            concurrent.forEach(INDEX_PARALLELISM_THRESHOLD, (code, link) -> indexLink(link));
+        } else {
+            links.values().forEach(this::indexLink);
+        }
+    }
+
+    private void indexLink(ShortLink link) {
+        codeIndex.add(link.getCode());
+        indexOwner(link);
+        expiryIndex.add(new ExpiryEntry(link));
+    }
+
+    protected abstract void onLinkSaved(ShortLink link);
+
+    /**
+     * Пакетное сохранение; по умолчанию — {@link #onLinkSaved(ShortLink)} для каждой ссылки.
+     */
+    protected void onLinksSaved(List<ShortLink> links) {
+        links.forEach(this::onLinkSaved);
+    }
+
+    protected abstract void onLinkDeleted(ShortLink link);
+
+    /**
+     * Пакетное удаление; по умолчанию — {@link #onLinkDeleted(ShortLink)} для каждой ссылки.
+     */
+    protected void onLinksDeleted(List<ShortLink> links) {
+        links.forEach(this::onLinkDeleted);
+    }
+
+    protected abstract void onLinksExpired(List<ShortLink> removed);
+
+    protected abstract void onUserSaved(UserAccount userAccount);
+
+    /**
+     * Вызывается под блокировкой чтения: писатели ждут, но параллельные переходы продолжают
+     * увеличивать счётчики, так что сохраняется значение не меньше засчитанного.
+     */
+    protected abstract void onVisitsFlushed(List<ShortLink> visited);
+
+    /**
+     * Вызывается после снятия блокировки, если изменение дошло до хука: наследник с групповой
+     * фиксацией ждёт здесь, пока изменение не будет записано на диск. По умолчанию ничего не делает.
+     */
+    protected void awaitDurable() {
+    }
+
+    private void lockRead() {
+        acquire(lock.readLock(), readLockWait);
+    }
+
+    private void lockWrite() {
+        acquire(lock.writeLock(), writeLockWait);
+    }
+
+    /**
+     * Свободная блокировка берётся без замера и записывается как нулевое ожидание,
+     * так что {@link System#nanoTime()} вызывается только при конкуренции.
+     */
+    private static void acquire(Lock target, LatencyHistogram wait) {
+        if (target.tryLock()) {
+            wait.record(0);
+            return;
+        }
+        long start = System.nanoTime();
+        target.lock();
+        wait.recordSince(start);
+    }
+
+    private void indexOwner(ShortLink link) {
+        ownerIndex.computeIfAbsent(link.getOwnerId(), owner -> new ConcurrentSkipListSet<>()).add(link.getCode());
+    }
+
+    private void unindexOwner(ShortLink link) {
+        ownerIndex.computeIfPresent(link.getOwnerId(), (owner, codes) -> {
+            codes.remove(link.getCode());
+            return codes.isEmpty() ? null : codes;
+        });
+    }
+
+    private List<ShortLink> collectLinks(Iterator<String> codes, int limit) {
+        Map<String, ShortLink> links = dataStore.getShortLinks();
+        List<ShortLink> result = new ArrayList<>(Math.min(limit, 64));
+        while (codes.hasNext() && result.size() < limit) {
+            ShortLink link = links.get(codes.next());
+            if (link != null) {
+                result.add(cloneLink(link));
+            }
+        }
+        return result;
+    }
+
+    protected static ShortLink cloneLink(ShortLink link) {
+        return new ShortLink(
+                link.getCode(),
+                link.getOwnerId(),
+                link.getOriginalUrl(),
+                link.getMaxVisits(),
+                link.getVisitCount(),
+                link.getCreatedAt(),
+                link.getExpiresAt()
+        );
+    }
+}
@@ -0,0 +1,114 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.util.List;
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LogRecord {
+    public enum Op {
+        SAVE_LINK,
+        DELETE_LINK,
+        EXPIRE_LINKS,
+        SAVE_USER,
+        VISITS
+    }
+
+    private Op op;
+    private ShortLink link;
+    private UserAccount user;
+    private String code;
+    private List<String> codes;
+    private Map<String, Integer> visits;
+
+    public LogRecord() {
+    }
+
+    public static LogRecord saveLink(ShortLink link) {
+        LogRecord record = new LogRecord();
+        record.op = Op.SAVE_LINK;
+        record.link = link;
+        return record;
+    }
+
+    public static LogRecord deleteLink(String code) {
+        LogRecord record = new LogRecord();
+        record.op = Op.DELETE_LINK;
+        record.code = code;
+        return record;
+    }
+
+    public static LogRecord expireLinks(List<String> codes) {
+        LogRecord record = new LogRecord();
+        record.op = Op.EXPIRE_LINKS;
+        record.codes = codes;
+        return record;
+    }
+
+    public static LogRecord saveUser(UserAccount user) {
+        LogRecord record = new LogRecord();
+        record.op = Op.SAVE_USER;
+        record.user = user;
+        return record;
+    }
+
+    public static LogRecord visits(Map<String, Integer> visits) {
+        LogRecord record = new LogRecord();
+        record.op = Op.VISITS;
+        record.visits = visits;
+        return record;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public void setOp(Op op) {
+        this.op = op;
+    }
+
+    public ShortLink getLink() {
+        return link;
+    }
+
+    public void setLink(ShortLink link) {
+        this.link = link;
+    }
+
+    public UserAccount getUser() {
+        return user;
+    }
+
+    public void setUser(UserAccount user) {
+        this.user = user;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public List<String> getCodes() {
+        return codes;
+    }
+
+    public void setCodes(List<String> codes) {
+        this.codes = codes;
+    }
+
+    public Map<String, Integer> getVisits() {
+        return visits;
+    }
+
+    public void setVisits(Map<String, Integer> visits) {
+        this.visits = visits;
+    }
+}
@@ -0,0 +1,38 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+final class LogRecordCodec {
+    private final ObjectMapper objectMapper;
+
+    LogRecordCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    byte[] encode(LogRecord record) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize log record", e);
+        }
+    }
+
+    /**
+     * @return {@code null}, если строка не является целой записью
+     */
+    LogRecord decode(byte[] bytes, int offset, int length) {
+        try {
+            LogRecord record = objectMapper.readValue(bytes, offset, length, LogRecord.class);
+            return record != null && record.getOp() != null ? record : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
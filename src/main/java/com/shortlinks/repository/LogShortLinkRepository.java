@@ -0,0 +1,221 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище на основе журнала изменений: каждая мутация дописывается компактной JSON-строкой
+ * в сегмент журнала, а полный {@link DataStore} сериализуется только при периодическом
+ * уплотнении в снимок {@code snapshot-N.json}. При старте загружается последний снимок
+ * и поверх него проигрываются сегменты начиная с N.
+ */
+public class LogShortLinkRepository extends InMemoryShortLinkRepository {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json";
+    private static final String SNAPSHOT_TEMP = "snapshot.tmp";
+
+    private final Path directory;
+    private final Path legacyStorageFile;
+    private final long compactionThresholdBytes;
+    private final ObjectMapper objectMapper;
+    private final LogRecordCodec codec;
+    private final MutationLog log;
+    private final ScheduledExecutorService compactionExecutor;
+
+    public LogShortLinkRepository(AppConfig config) {
+        this.directory = config.getLogDirectory();
+        this.legacyStorageFile = config.getStorageFile();
+        this.compactionThresholdBytes = config.getCompactionThresholdBytes();
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.codec = new LogRecordCodec(objectMapper);
+        this.log = new MutationLog(directory,
+                config.getFsyncPolicy(),
+                config.getFsyncInterval(),
+                config.getLogSegmentSizeBytes());
+        load();
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mutation-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = config.getCompactionInterval();
+        long seconds = Math.max(1, interval.getSeconds());
+        compactionExecutor.scheduleWithFixedDelay(this::compactIfNeeded, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Сохраняет текущее состояние в новый снимок и удаляет покрытые им сегменты журнала.
+     * Писатели ждут только сериализацию, читатели не блокируются.
+     */
+    public synchronized void compact() {
+        try {
+            Path temp = directory.resolve(SNAPSHOT_TEMP);
+            long segment;
+            lock.readLock().lock();
+            try {
+                segment = log.roll();
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    objectMapper.writeValue(out, dataStore);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, snapshotPath(segment),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Long existing : listSnapshots()) {
+                if (existing < segment) {
+                    Files.deleteIfExists(snapshotPath(existing));
+                }
+            }
+            log.deleteSegmentsBefore(segment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compact mutation log", e);
+        }
+    }
+
+    @Override
+    public String storeIdentity() {
+        lock.readLock().lock();
+        try {
+            return "log " + directory.toAbsolutePath() + " lsn=" + log.position()
+                    + " links=" + dataStore.getShortLinks().size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushVisits();
+        compactionExecutor.shutdownNow();
+        log.close();
+    }
+
+    @Override
+    protected void onLinkSaved(ShortLink link) {
+        append(LogRecord.saveLink(link));
+    }
+
+    @Override
+    protected void onLinkDeleted(ShortLink link) {
+        append(LogRecord.deleteLink(link.getCode()));
+    }
+
+    @Override
+    protected void onLinksExpired(List<ShortLink> removed) {
+        append(LogRecord.expireLinks(removed.stream()
+                .map(ShortLink::getCode)
+                .collect(Collectors.toList())));
+    }
+
+    @Override
+    protected void onUserSaved(UserAccount userAccount) {
+        append(LogRecord.saveUser(userAccount));
+    }
+
+    @Override
+    protected void onVisitsFlushed(List<ShortLink> visited) {
+        Map<String, Integer> visits = new LinkedHashMap<>();
+        for (ShortLink link : visited) {
+            visits.put(link.getCode(), link.getVisitCount());
+        }
+        append(LogRecord.visits(visits));
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (log.bytesSinceSnapshot() >= compactionThresholdBytes) {
+                compact();
+            }
+        } catch (RuntimeException ignored) {
+            // следующая попытка будет на следующем тике планировщика
+        }
+    }
+
+    private void append(LogRecord record) {
+        log.append(codec.encode(record));
+    }
+
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+            List<Long> snapshots = listSnapshots();
+            long replayFrom = 0;
+            boolean migrated = false;
+            if (!snapshots.isEmpty()) {
+                replayFrom = snapshots.get(snapshots.size() - 1);
+                dataStore = objectMapper.readValue(snapshotPath(replayFrom).toFile(), DataStore.class);
+            } else if (Files.exists(legacyStorageFile)) {
+                dataStore = StoreFile.read(legacyStorageFile, objectMapper);
+                migrated = true;
+            } else {
+                dataStore = new DataStore();
+            }
+
+            MutationLog.Replay replay = log.replay(replayFrom, (bytes, offset, length) -> {
+                LogRecord record = codec.decode(bytes, offset, length);
+                if (record == null) {
+                    return false;
+                }
+                apply(record);
+                return true;
+            });
+            rebuildIndexes();
+            log.open(replay);
+            if (migrated) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load mutation log", e);
+        }
+    }
+
+    private void apply(LogRecord record) {
+        switch (record.getOp()) {
+            case SAVE_LINK -> dataStore.getShortLinks().put(record.getLink().getCode(), record.getLink());
+            case DELETE_LINK -> dataStore.getShortLinks().remove(record.getCode());
+            case EXPIRE_LINKS -> record.getCodes().forEach(dataStore.getShortLinks()::remove);
+            case SAVE_USER -> dataStore.getUsers().put(record.getUser().getId(), record.getUser());
+            case VISITS -> record.getVisits().forEach((code, count) -> {
+                ShortLink link = dataStore.getShortLinks().get(code);
+                if (link != null) {
+                    link.raiseVisitCount(count);
+                }
+            });
+        }
+    }
+
+    private List<Long> listSnapshots() throws IOException {
+        return MutationLog.listNumbered(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+}
@@ -0,0 +1,634 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Хранилище поверх отображённого в память {@link BinarySnapshot}. Старт стоит O(1) плюс
+ * проигрывание хвоста журнала: ссылки из снимка декодируются только при обращении.
+ * Изменённые и посещённые ссылки живут в оверлее, удалённые из снимка — в наборе надгробий,
+ * все мутации пишутся в {@link MutationLog}. Порядок по коду, по владельцу и по срокам берётся
+ * из упорядоченных секций снимка; в куче индексируются только ссылки оверлея, а записи снимка,
+ * перекрытые оверлеем или надгробием, при обходе пропускаются.
+ *
+ * <p>В отличие от {@link InMemoryShortLinkRepository} переход берёт блокировку чтения:
+ * уплотнение пересобирает оверлей под блокировкой записи и не должно терять инкременты.
+ */
+public class MappedShortLinkRepository implements ShortLinkRepository {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String SNAPSHOT_TEMP = "snapshot.tmp";
+
+    private final Path directory;
+    private final Path legacyStorageFile;
+    private final long compactionThresholdBytes;
+    private final ObjectMapper objectMapper;
+    private final LogRecordCodec codec;
+    private final MutationLog log;
+    private final ScheduledExecutorService compactionExecutor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, ShortLink> overlay = new ConcurrentSkipListMap<>();
+    private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+    private final Set<String> shadowed = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Integer> shadowedByOwner = new ConcurrentHashMap<>();
+    private final Map<UUID, NavigableSet<String>> overlayOwners = new ConcurrentHashMap<>();
+    private final NavigableSet<ExpiryEntry> overlayExpiry = new ConcurrentSkipListSet<>();
+    private final Map<UUID, UserAccount> users = new ConcurrentHashMap<>();
+    private final Set<String> dirtyVisitCodes = ConcurrentHashMap.newKeySet();
+    private volatile BinarySnapshot snapshot = BinarySnapshot.empty();
+    private int expiryCursor;
+
+    public MappedShortLinkRepository(AppConfig config) {
+        this.directory = config.getMappedDirectory();
+        this.legacyStorageFile = config.getStorageFile();
+        this.compactionThresholdBytes = config.getCompactionThresholdBytes();
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.codec = new LogRecordCodec(objectMapper);
+        this.log = new MutationLog(directory,
+                config.getFsyncPolicy(),
+                config.getFsyncInterval(),
+                config.getLogSegmentSizeBytes());
+        load();
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mapped-snapshot-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = config.getCompactionInterval();
+        long seconds = Math.max(1, interval.getSeconds());
+        compactionExecutor.scheduleWithFixedDelay(this::compactIfNeeded, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(copyOf(code));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        lock.readLock().lock();
+        try {
+            ShortLink link = live(code);
+            if (link == null) {
+                return VisitAttempt.notFound();
+            }
+            if (link.isExpired(now)) {
+                return VisitAttempt.of(VisitAttempt.Outcome.EXPIRED, InMemoryShortLinkRepository.cloneLink(link));
+            }
+            if (!link.tryIncrementVisitCount()) {
+                return VisitAttempt.of(VisitAttempt.Outcome.LIMIT_REACHED, InMemoryShortLinkRepository.cloneLink(link));
+            }
+            dirtyVisitCodes.add(code);
+            return VisitAttempt.of(VisitAttempt.Outcome.CONSUMED, InMemoryShortLinkRepository.cloneLink(link));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void flushVisits() {
+        if (dirtyVisitCodes.isEmpty()) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> visits = new LinkedHashMap<>();
+            for (Iterator<String> iterator = dirtyVisitCodes.iterator(); iterator.hasNext(); ) {
+                String code = iterator.next();
+                iterator.remove();
+                ShortLink link = overlay.get(code);
+                if (link != null) {
+                    visits.put(code, link.getVisitCount());
+                }
+            }
+            if (!visits.isEmpty()) {
+                try {
+                    append(LogRecord.visits(visits));
+                } catch (RuntimeException e) {
+                    dirtyVisitCodes.addAll(visits.keySet());
+                    throw e;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return findByOwner(ownerId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        return ownerPage(ownerId, null, offset, limit);
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        return ownerPage(ownerId, afterCode, 0, limit);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        BinarySnapshot base = snapshot;
+        int slot = base.ownerSlot(ownerId);
+        int inSnapshot = slot < 0 ? 0 : base.ownerEnd(slot) - base.ownerStart(slot);
+        NavigableSet<String> codes = overlayOwners.get(ownerId);
+        return inSnapshot - shadowedByOwner.getOrDefault(ownerId, 0) + (codes == null ? 0 : codes.size());
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        lock.readLock().lock();
+        try {
+            List<ShortLink> result = new ArrayList<>();
+            BinarySnapshot base = snapshot;
+            for (int i = 0; i < base.linkCount(); i++) {
+                String code = base.codeAt(i);
+                if (!overlay.containsKey(code) && !tombstones.contains(code)) {
+                    result.add(base.linkAt(i));
+                }
+            }
+            overlay.values().forEach(link -> result.add(InMemoryShortLinkRepository.cloneLink(link)));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        lock.readLock().lock();
+        try {
+            BinarySnapshot base = snapshot;
+            NavigableSet<String> codes = afterCode == null
+                    ? overlay.navigableKeySet()
+                    : overlay.navigableKeySet().tailSet(afterCode, false);
+            return merge(base, base::codeOrderAt, base.codeRank(afterCode), base.linkCount(),
+                    codes.iterator(), 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        lock.writeLock().lock();
+        try {
+            ShortLink stored = live(shortLink.getCode());
+            ShortLink before = stored == null ? null : InMemoryShortLinkRepository.cloneLink(stored);
+            if (stored == null) {
+                stored = InMemoryShortLinkRepository.cloneLink(shortLink);
+                putOverlay(stored);
+            } else {
+                stored.setOwnerId(shortLink.getOwnerId());
+                stored.setOriginalUrl(shortLink.getOriginalUrl());
+                stored.setMaxVisits(shortLink.getMaxVisits());
+                stored.setExpiresAt(shortLink.getExpiresAt());
+                stored.raiseVisitCount(shortLink.getVisitCount());
+                unindexOverlay(before);
+                indexOverlay(stored);
+            }
+            append(LogRecord.saveLink(stored));
+            return shortLink;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String code) {
+        lock.writeLock().lock();
+        try {
+            ShortLink removed = remove(code);
+            if (removed == null) {
+                return false;
+            }
+            append(LogRecord.deleteLink(code));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Сначала снимаются истёкшие ссылки оверлея, затем курсор идёт по порядку сроков снимка.
+     * Всё, что курсор прошёл, удалено или перекрыто оверлеем, поэтому к нему он не возвращается.
+     */
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        lock.writeLock().lock();
+        try {
+            List<ShortLink> removed = new ArrayList<>();
+            List<String> codes = new ArrayList<>();
+            while (removed.size() < limit && !overlayExpiry.isEmpty()) {
+                ExpiryEntry head = overlayExpiry.first();
+                if (now.isBefore(head.expiresAt)) {
+                    break;
+                }
+                overlayExpiry.remove(head);
+                ShortLink link = remove(head.code);
+                if (link != null) {
+                    removed.add(link);
+                    codes.add(head.code);
+                }
+            }
+            BinarySnapshot base = snapshot;
+            while (removed.size() < limit && expiryCursor < base.linkCount()) {
+                int index = base.expiryOrderAt(expiryCursor);
+                if (now.isBefore(base.expiresAt(index))) {
+                    break;
+                }
+                expiryCursor++;
+                String code = base.codeAt(index);
+                if (shadowed.contains(code)) {
+                    continue;
+                }
+                ShortLink link = remove(code);
+                if (link != null) {
+                    removed.add(link);
+                    codes.add(code);
+                }
+            }
+            if (!removed.isEmpty()) {
+                append(LogRecord.expireLinks(codes));
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        lock.writeLock().lock();
+        try {
+            users.put(userAccount.getId(), userAccount);
+            append(LogRecord.saveUser(userAccount));
+            return userAccount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return Optional.ofNullable(users.get(userId));
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Записывает объединение снимка и оверлея в новый бинарный снимок, затем под блокировкой записи
+     * переключается на него и проигрывает записи журнала, появившиеся за время уплотнения.
+     */
+    public synchronized void compact() {
+        try {
+            Path temp = directory.resolve(SNAPSHOT_TEMP);
+            long segment;
+            lock.readLock().lock();
+            try {
+                segment = log.roll();
+                writeSnapshot(temp);
+            } finally {
+                lock.readLock().unlock();
+            }
+            Path target = snapshotPath(segment);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            lock.writeLock().lock();
+            try {
+                flushVisits();
+                resetTo(BinarySnapshot.open(target));
+                log.replay(segment, this::applyEncoded);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Long existing : MutationLog.listNumbered(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (existing < segment) {
+                    Files.deleteIfExists(snapshotPath(existing));
+                }
+            }
+            log.deleteSegmentsBefore(segment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compact binary snapshot", e);
+        }
+    }
+
+    @Override
+    public String storeIdentity() {
+        lock.readLock().lock();
+        try {
+            return "mapped " + directory.toAbsolutePath() + " lsn=" + log.position()
+                    + " links=" + (snapshot.linkCount() - shadowed.size() + overlay.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushVisits();
+        compactionExecutor.shutdownNow();
+        log.close();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (log.bytesSinceSnapshot() >= compactionThresholdBytes) {
+                compact();
+            }
+        } catch (RuntimeException ignored) {
+            // следующая попытка будет на следующем тике планировщика
+        }
+    }
+
+    private void writeSnapshot(Path temp) throws IOException {
+        BinarySnapshot base = snapshot;
+        Map<String, ShortLink> frozen = new HashMap<>(overlay);
+        int count = base.linkCount() - tombstones.size() + frozen.size();
+        for (String code : frozen.keySet()) {
+            if (base.contains(code)) {
+                count--;
+            }
+        }
+        try (BinarySnapshotWriter writer = new BinarySnapshotWriter(temp, count)) {
+            for (int i = 0; i < base.linkCount(); i++) {
+                String code = base.codeAt(i);
+                if (!frozen.containsKey(code) && !tombstones.contains(code)) {
+                    writer.addLink(base.linkAt(i));
+                }
+            }
+            for (ShortLink link : frozen.values()) {
+                writer.addLink(link);
+            }
+            users.values().forEach(writer::addUser);
+            writer.finish();
+        }
+    }
+
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+            List<Long> snapshots = MutationLog.listNumbered(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            long replayFrom = 0;
+            boolean migrated = false;
+            if (!snapshots.isEmpty()) {
+                replayFrom = snapshots.get(snapshots.size() - 1);
+                resetTo(BinarySnapshot.open(snapshotPath(replayFrom)));
+                migrated = !snapshot.isSorted();
+            } else if (Files.exists(legacyStorageFile)) {
+                DataStore legacy = StoreFile.read(legacyStorageFile, objectMapper);
+                overlay.putAll(legacy.getShortLinks());
+                users.putAll(legacy.getUsers());
+                migrated = true;
+            }
+            MutationLog.Replay replay = log.replay(replayFrom, this::applyEncoded);
+            log.open(replay);
+            if (migrated) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load binary snapshot", e);
+        }
+    }
+
+    private void resetTo(BinarySnapshot base) {
+        snapshot = base;
+        overlay.clear();
+        tombstones.clear();
+        shadowed.clear();
+        shadowedByOwner.clear();
+        overlayOwners.clear();
+        overlayExpiry.clear();
+        expiryCursor = 0;
+        dirtyVisitCodes.clear();
+        users.clear();
+        base.users().forEach(user -> users.put(user.getId(), user));
+    }
+
+    private boolean applyEncoded(byte[] bytes, int offset, int length) {
+        LogRecord record = codec.decode(bytes, offset, length);
+        if (record == null) {
+            return false;
+        }
+        switch (record.getOp()) {
+            case SAVE_LINK -> putOverlay(record.getLink());
+            case DELETE_LINK -> remove(record.getCode());
+            case EXPIRE_LINKS -> record.getCodes().forEach(this::remove);
+            case SAVE_USER -> users.put(record.getUser().getId(), record.getUser());
+            case VISITS -> record.getVisits().forEach((code, count) -> {
+                ShortLink link = live(code);
+                if (link != null) {
+                    link.raiseVisitCount(count);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Живой экземпляр ссылки: из оверлея или декодированный из снимка и перенесённый в оверлей.
+     * Перенос идёт и под блокировкой чтения, поэтому код сначала попадает в оверлей и его индексы
+     * и только потом помечается перекрытым: обход в это время видит его дважды (копии склеиваются
+     * по коду), но не теряет.
+     */
+    private ShortLink live(String code) {
+        ShortLink link = overlay.get(code);
+        if (link != null || tombstones.contains(code)) {
+            return link;
+        }
+        link = overlay.computeIfAbsent(code, key -> {
+            int index = snapshot.indexOf(key);
+            return index < 0 ? null : snapshot.linkAt(index);
+        });
+        if (link != null) {
+            indexOverlay(link);
+            shadow(code);
+        }
+        return link;
+    }
+
+    private void putOverlay(ShortLink link) {
+        ShortLink previous = overlay.put(link.getCode(), link);
+        if (previous != null) {
+            unindexOverlay(previous);
+        }
+        indexOverlay(link);
+        tombstones.remove(link.getCode());
+        shadow(link.getCode());
+    }
+
+    /**
+     * Помечает запись снимка с этим кодом перекрытой; перекрытие снимается только сменой снимка.
+     */
+    private void shadow(String code) {
+        if (shadowed.contains(code)) {
+            return;
+        }
+        BinarySnapshot base = snapshot;
+        int index = base.indexOf(code);
+        if (index >= 0 && shadowed.add(code)) {
+            shadowedByOwner.merge(base.ownerOf(index), 1, Integer::sum);
+        }
+    }
+
+    private void indexOverlay(ShortLink link) {
+        overlayOwners.computeIfAbsent(link.getOwnerId(), owner -> new ConcurrentSkipListSet<>()).add(link.getCode());
+        overlayExpiry.add(new ExpiryEntry(link));
+    }
+
+    private void unindexOverlay(ShortLink link) {
+        overlayOwners.computeIfPresent(link.getOwnerId(), (owner, codes) -> {
+            codes.remove(link.getCode());
+            return codes.isEmpty() ? null : codes;
+        });
+        overlayExpiry.remove(new ExpiryEntry(link));
+    }
+
+    private ShortLink copyOf(String code) {
+        ShortLink link = overlay.get(code);
+        if (link != null) {
+            return InMemoryShortLinkRepository.cloneLink(link);
+        }
+        if (tombstones.contains(code)) {
+            return null;
+        }
+        int index = snapshot.indexOf(code);
+        return index < 0 ? null : snapshot.linkAt(index);
+    }
+
+    private ShortLink remove(String code) {
+        ShortLink removed = live(code);
+        if (removed == null) {
+            return null;
+        }
+        overlay.remove(code);
+        unindexOverlay(removed);
+        if (shadowed.contains(code)) {
+            tombstones.add(code);
+        }
+        return removed;
+    }
+
+    private List<ShortLink> ownerPage(UUID ownerId, String afterCode, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BinarySnapshot base = snapshot;
+            int slot = base.ownerSlot(ownerId);
+            int from = slot < 0 ? 0 : base.ownerRank(slot, afterCode);
+            int to = slot < 0 ? 0 : base.ownerEnd(slot);
+            NavigableSet<String> codes = overlayOwners.getOrDefault(ownerId, Collections.emptyNavigableSet());
+            NavigableSet<String> page = afterCode == null ? codes : codes.tailSet(afterCode, false);
+            return merge(base, base::ownerOrderAt, from, to, page.iterator(), offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сливает упорядоченный по коду отрезок {@code [from, to)} секции снимка с кодами оверлея.
+     * Перекрытые записи снимка пропускаются, при равных кодах берётся версия оверлея.
+     */
+    private List<ShortLink> merge(BinarySnapshot base, IntUnaryOperator records, int from, int to,
+                                  Iterator<String> overlayCodes, int offset, int limit) {
+        List<ShortLink> result = new ArrayList<>(Math.min(limit, 64));
+        int position = from;
+        int baseIndex = -1;
+        String baseCode = null;
+        String overlayCode = overlayCodes.hasNext() ? overlayCodes.next() : null;
+        int skipped = 0;
+        while (result.size() < limit) {
+            while (baseCode == null && position < to) {
+                int index = records.applyAsInt(position++);
+                String code = base.codeAt(index);
+                if (!shadowed.contains(code)) {
+                    baseIndex = index;
+                    baseCode = code;
+                }
+            }
+            if (baseCode == null && overlayCode == null) {
+                break;
+            }
+            int order = baseCode == null ? 1 : overlayCode == null ? -1 : baseCode.compareTo(overlayCode);
+            ShortLink link;
+            if (order < 0) {
+                link = base.linkAt(baseIndex);
+                baseCode = null;
+            } else {
+                link = copyOf(overlayCode);
+                if (order == 0) {
+                    baseCode = null;
+                }
+                overlayCode = overlayCodes.hasNext() ? overlayCodes.next() : null;
+            }
+            if (link == null) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(link);
+            }
+        }
+        return result;
+    }
+
+    private void append(LogRecord record) {
+        log.append(codec.encode(record));
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+}
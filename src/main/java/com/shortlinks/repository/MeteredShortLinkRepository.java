@@ -0,0 +1,222 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Замеряет время обращений к хранилищу: {@code shortlinks_repository_seconds} с меткой
+ * {@code op} — {@code read} для поиска, {@code visit} для засчитывания перехода и {@code write}
+ * для изменений. Ставится прямо над движком, чтобы в замер не попадали ответы кэша и фильтра.
+ */
+public class MeteredShortLinkRepository implements ShortLinkRepository {
+    private final ShortLinkRepository delegate;
+    private final LatencyHistogram reads;
+    private final LatencyHistogram visits;
+    private final LatencyHistogram writes;
+
+    public MeteredShortLinkRepository(ShortLinkRepository delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.reads = registry.histogram("shortlinks_repository_seconds", "op", "read");
+        this.visits = registry.histogram("shortlinks_repository_seconds", "op", "visit");
+        this.writes = registry.histogram("shortlinks_repository_seconds", "op", "write");
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByCode(code);
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        long start = System.nanoTime();
+        try {
+            return delegate.tryConsumeVisit(code, now);
+        } finally {
+            visits.recordSince(start);
+        }
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        long start = System.nanoTime();
+        try {
+            return delegate.tryConsumeVisit(packedCode, now);
+        } finally {
+            visits.recordSince(start);
+        }
+    }
+
+    @Override
+    public VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        long start = System.nanoTime();
+        try {
+            return delegate.consumeVisit(packedCode, nowMillis);
+        } finally {
+            visits.recordSince(start);
+        }
+    }
+
+    @Override
+    public void flushVisits() {
+        long start = System.nanoTime();
+        try {
+            delegate.flushVisits();
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByOwner(ownerId);
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByOwner(ownerId, offset, limit);
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByOwnerAfter(ownerId, afterCode, limit);
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return delegate.countByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        return delegate.findAfter(afterCode, limit);
+    }
+
+    @Override
+    public void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        delegate.forEachLink(afterCode, pageSize, action);
+    }
+
+    @Override
+    public void deferPersistence(Runnable work) {
+        delegate.deferPersistence(work);
+    }
+
+    @Override
+    public String storeIdentity() {
+        return delegate.storeIdentity();
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        long start = System.nanoTime();
+        try {
+            return delegate.save(shortLink);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        long start = System.nanoTime();
+        try {
+            return delegate.saveAll(shortLinks);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean delete(String code) {
+        long start = System.nanoTime();
+        try {
+            return delegate.delete(code);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deleteExpired(now);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deleteExpired(now, limit);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        long start = System.nanoTime();
+        try {
+            return delegate.saveUser(userAccount);
+        } finally {
+            writes.recordSince(start);
+        }
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findUser(userId);
+        } finally {
+            reads.recordSince(start);
+        }
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
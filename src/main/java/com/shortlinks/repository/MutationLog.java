@@ -0,0 +1,258 @@
+package com.shortlinks.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Сегментированный журнал изменений: записи дописываются в конец текущего сегмента,
+ * при превышении размера открывается следующий. Номер сегмента растёт монотонно,
+ * поэтому снимок хранилища достаточно пометить номером первого сегмента, который
+ * ещё нужно проиграть поверх него.
+ */
+class MutationLog implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long segmentSizeBytes;
+    private final ScheduledExecutorService syncExecutor;
+    private FileChannel channel;
+    private long currentSegment;
+    private long currentSegmentSize;
+    private long baseSegment;
+    private long bytesSinceSnapshot;
+    private boolean unsynced;
+
+    MutationLog(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval, long segmentSizeBytes) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentSizeBytes = segmentSizeBytes;
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            long millis = Math.max(1, fsyncInterval.toMillis());
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "mutation-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncExecutor.scheduleAtFixedRate(this::syncIfNeeded, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncExecutor = null;
+        }
+    }
+
+    static String segmentFileName(long segment) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX);
+    }
+
+    static List<Long> listSegments(Path directory) throws IOException {
+        return listNumbered(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Номера файлов вида {@code prefix + N + suffix} в каталоге по возрастанию.
+     */
+    static List<Long> listNumbered(Path directory, String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Проигрывает записи всех сегментов начиная с {@code fromSegment}. Запись, которую обработчик
+     * не смог разобрать, допустима только в хвосте последнего сегмента — это след падения во время
+     * дозаписи, и сегмент обрезается по последней целой записи.
+     *
+     * @return номер последнего прочитанного сегмента (или {@code fromSegment - 1}, если сегментов нет)
+     *         и объём прочитанных данных
+     */
+    Replay replay(long fromSegment, RecordHandler handler) throws IOException {
+        Replay replay = new Replay(fromSegment);
+        List<Long> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            if (segment < fromSegment) {
+                continue;
+            }
+            replay.bytes += replaySegment(segmentPath(segment), i == segments.size() - 1, handler);
+            replay.lastSegment = segment;
+        }
+        return replay;
+    }
+
+    Path segmentPath(long segment) {
+        return directory.resolve(segmentFileName(segment));
+    }
+
+    /**
+     * Открывает для дозаписи сегмент, следующий за проигранными.
+     */
+    synchronized void open(Replay replay) throws IOException {
+        openSegment(Math.max(1, replay.lastSegment + 1));
+        baseSegment = replay.fromSegment;
+        bytesSinceSnapshot = replay.bytes;
+    }
+
+    synchronized void append(byte[] record) {
+        try {
+            if (currentSegmentSize > 0 && currentSegmentSize + record.length > segmentSizeBytes) {
+                openSegment(currentSegment + 1);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            currentSegmentSize += record.length;
+            bytesSinceSnapshot += record.length;
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                channel.force(false);
+            } else {
+                unsynced = true;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to append to mutation log", e);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и открывает следующий.
+     *
+     * @return номер нового сегмента — с него начнётся проигрывание поверх снимка
+     */
+    synchronized long roll() throws IOException {
+        openSegment(currentSegment + 1);
+        baseSegment = currentSegment;
+        bytesSinceSnapshot = 0;
+        return currentSegment;
+    }
+
+    synchronized long bytesSinceSnapshot() {
+        return bytesSinceSnapshot;
+    }
+
+    /**
+     * Позиция конца журнала: сегмент, с которого идёт проигрывание поверх снимка, и объём записей
+     * после него. Не зависит от того, что при открытии начат новый сегмент, поэтому после
+     * перезапуска без изменений позиция та же.
+     */
+    synchronized String position() {
+        return baseSegment + ":" + bytesSinceSnapshot;
+    }
+
+    void deleteSegmentsBefore(long segment) throws IOException {
+        for (Long existing : listSegments(directory)) {
+            if (existing < segment) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    synchronized void sync() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to sync mutation log", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to close mutation log", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private synchronized void syncIfNeeded() {
+        if (unsynced) {
+            sync();
+        }
+    }
+
+    private static long replaySegment(Path segment, boolean lastSegment, RecordHandler handler) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        int position = 0;
+        while (position < bytes.length) {
+            int end = indexOf(bytes, (byte) '\n', position);
+            if (end < 0 || !handler.handle(bytes, position, end - position)) {
+                if (!lastSegment) {
+                    throw new IllegalStateException("Corrupted mutation log segment " + segment);
+                }
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.truncate(position);
+                }
+                return position;
+            }
+            position = end + 1;
+        }
+        return bytes.length;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void openSegment(long segment) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSegment = segment;
+        currentSegmentSize = channel.size();
+        unsynced = false;
+    }
+
+    interface RecordHandler {
+        /**
+         * @return {@code false}, если запись не удалось разобрать
+         */
+        boolean handle(byte[] bytes, int offset, int length);
+    }
+
+    static final class Replay {
+        final long fromSegment;
+        long lastSegment;
+        long bytes;
+
+        private Replay(long fromSegment) {
+            this.fromSegment = fromSegment;
+            this.lastSegment = fromSegment - 1;
+        }
+    }
+}
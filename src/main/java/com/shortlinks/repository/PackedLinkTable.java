@@ -0,0 +1,699 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.util.ShortCode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Колоночная таблица ссылок на примитивных массивах. Запись — номер строки во всех колонках;
+ * base62-коды хранятся упакованными в {@code long} ({@link ShortCode}), прочие коды и URL — в байтовой
+ * арене, владельцы интернированы, время хранится в epoch-миллисекундах.
+ * Поиск по коду — открытая адресация с линейным пробированием и удалением сдвигом назад,
+ * записи владельца — в массиве, упорядоченном по коду, сроки — в двоичной куче с ленивым удалением.
+ *
+ * <p>Не потокобезопасна: изменения выполняются под блокировкой записи вызывающего,
+ * без неё допустимы только чтения, {@link #tryIncrementVisits(int)} и флаги несохранённых переходов.
+ */
+final class PackedLinkTable {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int LENGTH_BITS = 20;
+    private static final int MAX_STRING_BYTES = (1 << LENGTH_BITS) - 1;
+    private static final int NONE = -1;
+    private static final long FREE = 0;
+
+    private List<byte[]> chunks = new ArrayList<>();
+    private int chunkPosition = CHUNK_SIZE;
+    private long deadArenaBytes;
+
+    private long[] packedCodes = new long[INITIAL_CAPACITY];
+    private long[] codeRefs = new long[INITIAL_CAPACITY];
+    private long[] urlRefs = new long[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] owners = new int[INITIAL_CAPACITY];
+    private int[] maxVisits = new int[INITIAL_CAPACITY];
+    private int[] visitCounts = new int[INITIAL_CAPACITY];
+    private int[] visitsDirty = new int[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] expiresAt = new long[INITIAL_CAPACITY];
+    private int highWater;
+    private int size;
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private final Map<UUID, Integer> ownerIds = new HashMap<>();
+    private UUID[] ownerTable = new UUID[16];
+    private int[][] ownerLinks = new int[16][];
+    private int[] ownerSize = new int[16];
+    private boolean ownerOrderDeferred;
+
+    private long[] heapTimes = new long[INITIAL_CAPACITY];
+    private int[] heapRecords = new int[INITIAL_CAPACITY];
+    private int heapSize;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Граница перебора записей: живые записи лежат в диапазоне {@code [0, highWater())}.
+     */
+    int highWater() {
+        return highWater;
+    }
+
+    /**
+     * Байты арены, выделенные под строки: живые и освобождённые вместе.
+     */
+    long arenaBytes() {
+        return chunks.isEmpty() ? 0 : (long) (chunks.size() - 1) * CHUNK_SIZE + chunkPosition;
+    }
+
+    /**
+     * Байты арены, занятые строками удалённых записей и заменёнными URL.
+     */
+    long deadArenaBytes() {
+        return deadArenaBytes;
+    }
+
+    boolean isLive(int record) {
+        return packedCodes[record] != FREE;
+    }
+
+    int find(String code) {
+        long packed = ShortCode.pack(code);
+        if (packed != ShortCode.INVALID) {
+            return find(packed);
+        }
+        byte[] key = code.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return NONE;
+            }
+            int record = entry - 1;
+            if (hashes[record] == hash && packedCodes[record] == ShortCode.INVALID
+                    && bytesEqual(codeRefs[record], key)) {
+                return record;
+            }
+        }
+    }
+
+    /**
+     * Поиск по упакованному коду: без строк, хеширования символов и выделения памяти.
+     */
+    int find(long packedCode) {
+        int hash = hash(packedCode);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return NONE;
+            }
+            int record = entry - 1;
+            if (packedCodes[record] == packedCode) {
+                return record;
+            }
+        }
+    }
+
+    int insert(ShortLink link) {
+        if (link.getCode().isEmpty()) {
+            throw new IllegalStateException("Empty short code");
+        }
+        int record = allocateRecord();
+        long packed = ShortCode.pack(link.getCode());
+        packedCodes[record] = packed;
+        if (packed != ShortCode.INVALID) {
+            codeRefs[record] = 0;
+            hashes[record] = hash(packed);
+        } else {
+            byte[] code = link.getCode().getBytes(StandardCharsets.UTF_8);
+            codeRefs[record] = store(code);
+            hashes[record] = hash(code);
+        }
+        urlRefs[record] = store(link.getOriginalUrl().getBytes(StandardCharsets.UTF_8));
+        maxVisits[record] = link.getMaxVisits();
+        INTS.setVolatile(visitCounts, record, link.getVisitCount());
+        INTS.setVolatile(visitsDirty, record, 0);
+        createdAt[record] = link.getCreatedAt().toEpochMilli();
+        expiresAt[record] = link.getExpiresAt().toEpochMilli();
+        linkOwner(record, internOwner(link.getOwnerId()));
+        pushExpiry(expiresAt[record], record);
+        if ((size + 1) * 2 > slots.length) {
+            resizeIndex(slots.length * 2);
+        }
+        index(record);
+        size++;
+        return record;
+    }
+
+    /**
+     * Переносит в запись изменяемые поля ссылки; счётчик переходов только растёт.
+     */
+    void update(int record, ShortLink link) {
+        int owner = internOwner(link.getOwnerId());
+        if (owners[record] != owner) {
+            unlinkOwner(record);
+            linkOwner(record, owner);
+        }
+        byte[] url = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        if (!bytesEqual(urlRefs[record], url)) {
+            deadArenaBytes += length(urlRefs[record]);
+            urlRefs[record] = store(url);
+        }
+        maxVisits[record] = link.getMaxVisits();
+        long expires = link.getExpiresAt().toEpochMilli();
+        if (expiresAt[record] != expires) {
+            expiresAt[record] = expires;
+            pushExpiry(expires, record);
+        }
+        raiseVisits(record, link.getVisitCount());
+    }
+
+    void remove(int record) {
+        unindex(record);
+        unlinkOwner(record);
+        if (packedCodes[record] == ShortCode.INVALID) {
+            deadArenaBytes += length(codeRefs[record]);
+        }
+        deadArenaBytes += length(urlRefs[record]);
+        packedCodes[record] = FREE;
+        codeRefs[record] = 0;
+        urlRefs[record] = 0;
+        if (freeCount == freeRecords.length) {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+        freeRecords[freeCount++] = record;
+        size--;
+    }
+
+    /**
+     * Переписывает строки живых записей в новые чанки подряд и отпускает старые, возвращая
+     * байты удалённых записей и заменённых URL. Ссылки на арену меняются у всех записей,
+     * поэтому вызывается только под блокировкой записи.
+     */
+    void repackArena() {
+        List<byte[]> old = chunks;
+        chunks = new ArrayList<>();
+        chunkPosition = CHUNK_SIZE;
+        for (int record = 0; record < highWater; record++) {
+            if (!isLive(record)) {
+                continue;
+            }
+            if (packedCodes[record] == ShortCode.INVALID) {
+                codeRefs[record] = copy(old, codeRefs[record]);
+            }
+            urlRefs[record] = copy(old, urlRefs[record]);
+        }
+        deadArenaBytes = 0;
+    }
+
+    boolean tryIncrementVisits(int record) {
+        int current;
+        do {
+            current = (int) INTS.getVolatile(visitCounts, record);
+            if (current >= maxVisits[record]) {
+                return false;
+            }
+        } while (!INTS.compareAndSet(visitCounts, record, current, current + 1));
+        return true;
+    }
+
+    void raiseVisits(int record, int value) {
+        int current;
+        do {
+            current = (int) INTS.getVolatile(visitCounts, record);
+            if (current >= value) {
+                return;
+            }
+        } while (!INTS.compareAndSet(visitCounts, record, current, value));
+    }
+
+    /**
+     * Помечает счётчик записи несохранённым; {@code true}, только если пометки ещё не было,
+     * поэтому код записи попадает в очередь на сброс один раз между сбросами.
+     */
+    boolean markVisitsDirty(int record) {
+        return (int) INTS.getVolatile(visitsDirty, record) == 0
+                && INTS.compareAndSet(visitsDirty, record, 0, 1);
+    }
+
+    /**
+     * Снимает пометку перед чтением счётчика при сбросе: переход, засчитанный после чтения,
+     * пометит запись снова.
+     */
+    void clearVisitsDirty(int record) {
+        INTS.setVolatile(visitsDirty, record, 0);
+    }
+
+    int visitCount(int record) {
+        return (int) INTS.getVolatile(visitCounts, record);
+    }
+
+    boolean isExpired(int record, Instant now) {
+        return isExpired(record, now.toEpochMilli());
+    }
+
+    boolean isExpired(int record, long nowMillis) {
+        return nowMillis >= expiresAt[record];
+    }
+
+    /**
+     * Материализует запись в {@link ShortLink}; вызывается только на границе API.
+     */
+    ShortLink view(int record) {
+        return new ShortLink(
+                code(record),
+                ownerTable[owners[record]],
+                string(urlRefs[record]),
+                maxVisits[record],
+                visitCount(record),
+                Instant.ofEpochMilli(createdAt[record]),
+                Instant.ofEpochMilli(expiresAt[record]));
+    }
+
+    int countByOwner(UUID ownerId) {
+        Integer owner = ownerIds.get(ownerId);
+        return owner == null ? 0 : ownerSize[owner];
+    }
+
+    /**
+     * Страница записей владельца в порядке возрастания кода: после {@code afterCode}
+     * ({@code null} — с начала) пропускается {@code offset} записей и берётся не больше
+     * {@code limit}. Массив владельца упорядочен, поэтому страница стоит двоичного поиска
+     * и копирования самой страницы.
+     */
+    int[] ownerRecords(UUID ownerId, String afterCode, int offset, int limit) {
+        Integer owner = ownerIds.get(ownerId);
+        if (owner == null) {
+            return new int[0];
+        }
+        int count = ownerSize[owner];
+        int start = 0;
+        if (afterCode != null) {
+            int position = ownerPosition(owner, afterCode);
+            start = position >= 0 ? position + 1 : -position - 1;
+        }
+        int from = (int) Math.min(count, (long) start + offset);
+        int to = (int) Math.min(count, (long) from + limit);
+        return Arrays.copyOfRange(ownerLinks[owner], from, to);
+    }
+
+    /**
+     * Откладывает упорядочивание записей владельцев: при загрузке записи дописываются в конец
+     * массива владельца, и порядок восстанавливается одной сортировкой в
+     * {@link #restoreOwnerOrder()}, а не сдвигом массива на каждую вставку.
+     */
+    void deferOwnerOrder() {
+        ownerOrderDeferred = true;
+    }
+
+    void restoreOwnerOrder() {
+        long[] keys = sortKeys();
+        for (int owner = 0; owner < ownerIds.size(); owner++) {
+            int[] sorted = Arrays.stream(ownerLinks[owner], 0, ownerSize[owner])
+                    .boxed()
+                    .sorted(byCode(keys))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            System.arraycopy(sorted, 0, ownerLinks[owner], 0, sorted.length);
+        }
+        ownerOrderDeferred = false;
+    }
+
+    /**
+     * Не больше {@code limit} записей с кодом строго больше {@code afterCode} в порядке возрастания
+     * кода. Глобального упорядоченного индекса у таблицы нет, поэтому каждый вызов проходит все
+     * записи, удерживая только {@code limit} лучших кандидатов; для обхода всей таблицы
+     * есть {@link #recordsInCodeOrder(String)}.
+     */
+    int[] recordsAfter(String afterCode, int limit) {
+        PriorityQueue<Map.Entry<String, Integer>> best =
+                new PriorityQueue<>(Map.Entry.<String, Integer>comparingByKey().reversed());
+        for (int record = 0; record < highWater && limit > 0; record++) {
+            if (!isLive(record)) {
+                continue;
+            }
+            String code = code(record);
+            if (afterCode != null && code.compareTo(afterCode) <= 0) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(Map.entry(code, record));
+            } else if (code.compareTo(best.peek().getKey()) < 0) {
+                best.poll();
+                best.add(Map.entry(code, record));
+            }
+        }
+        int[] records = new int[best.size()];
+        for (int i = records.length - 1; i >= 0; i--) {
+            records[i] = best.poll().getValue();
+        }
+        return records;
+    }
+
+    /**
+     * Все живые записи с кодом строго больше {@code afterCode} в порядке возрастания кода —
+     * курсор для постраничного обхода, который строится один раз за O(N log N) вместо прохода
+     * таблицы на каждую страницу. Ключ сортировки — первые четыре символа кода в одном
+     * {@code long}; полные коды сравниваются только при равных ключах.
+     */
+    int[] recordsInCodeOrder(String afterCode) {
+        long[] keys = new long[highWater];
+        int[] candidates = new int[size];
+        int count = 0;
+        for (int record = 0; record < highWater; record++) {
+            if (!isLive(record)) {
+                continue;
+            }
+            String code = code(record);
+            if (afterCode == null || code.compareTo(afterCode) > 0) {
+                keys[record] = sortKey(code);
+                candidates[count++] = record;
+            }
+        }
+        return Arrays.stream(candidates, 0, count)
+                .boxed()
+                .sorted(byCode(keys))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private long[] sortKeys() {
+        long[] keys = new long[highWater];
+        for (int record = 0; record < highWater; record++) {
+            if (isLive(record)) {
+                keys[record] = sortKey(code(record));
+            }
+        }
+        return keys;
+    }
+
+    private Comparator<Integer> byCode(long[] keys) {
+        return (left, right) -> {
+            int byKey = Long.compareUnsigned(keys[left], keys[right]);
+            return byKey != 0 ? byKey : code(left).compareTo(code(right));
+        };
+    }
+
+    /**
+     * Первые четыре UTF-16-символа кода, дополненные нулями: беззнаковый порядок ключей
+     * совпадает с {@link String#compareTo} везде, где ключи различаются.
+     */
+    private static long sortKey(String code) {
+        long key = 0;
+        for (int i = 0; i < 4; i++) {
+            key = key << 16 | (i < code.length() ? code.charAt(i) : 0);
+        }
+        return key;
+    }
+
+    boolean hasExpired(Instant now) {
+        return heapSize > 0 && heapTimes[0] <= now.toEpochMilli();
+    }
+
+    /**
+     * Удаляет не больше {@code limit} истёкших записей, снимая их с кучи. Устаревшие элементы кучи
+     * (после продления или удаления) отбрасываются по дороге.
+     */
+    List<ShortLink> removeExpired(Instant now, int limit) {
+        long nowMillis = now.toEpochMilli();
+        List<ShortLink> removed = new ArrayList<>();
+        while (removed.size() < limit && heapSize > 0 && heapTimes[0] <= nowMillis) {
+            long time = heapTimes[0];
+            int record = heapRecords[0];
+            popExpiry();
+            if (isLive(record) && expiresAt[record] == time) {
+                removed.add(view(record));
+                remove(record);
+            }
+        }
+        return removed;
+    }
+
+    private int allocateRecord() {
+        if (freeCount > 0) {
+            return freeRecords[--freeCount];
+        }
+        if (highWater == codeRefs.length) {
+            grow(codeRefs.length * 2);
+        }
+        return highWater++;
+    }
+
+    private void grow(int capacity) {
+        packedCodes = Arrays.copyOf(packedCodes, capacity);
+        codeRefs = Arrays.copyOf(codeRefs, capacity);
+        urlRefs = Arrays.copyOf(urlRefs, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        maxVisits = Arrays.copyOf(maxVisits, capacity);
+        visitCounts = Arrays.copyOf(visitCounts, capacity);
+        visitsDirty = Arrays.copyOf(visitsDirty, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        expiresAt = Arrays.copyOf(expiresAt, capacity);
+    }
+
+    private void index(int record) {
+        int mask = slots.length - 1;
+        int slot = hashes[record] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = record + 1;
+    }
+
+    private void unindex(int record) {
+        int mask = slots.length - 1;
+        int slot = hashes[record] & mask;
+        while (slots[slot] != record + 1) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = 0;
+        for (int next = (slot + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int ideal = hashes[slots[next] - 1] & mask;
+            boolean reachable = slot <= next
+                    ? slot < ideal && ideal <= next
+                    : slot < ideal || ideal <= next;
+            if (!reachable) {
+                slots[slot] = slots[next];
+                slots[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    private void resizeIndex(int capacity) {
+        slots = new int[capacity];
+        for (int record = 0; record < highWater; record++) {
+            if (isLive(record)) {
+                index(record);
+            }
+        }
+    }
+
+    private int internOwner(UUID ownerId) {
+        Integer existing = ownerIds.get(ownerId);
+        if (existing != null) {
+            return existing;
+        }
+        int owner = ownerIds.size();
+        if (owner == ownerTable.length) {
+            ownerTable = Arrays.copyOf(ownerTable, owner * 2);
+            ownerLinks = Arrays.copyOf(ownerLinks, owner * 2);
+            ownerSize = Arrays.copyOf(ownerSize, owner * 2);
+        }
+        ownerTable[owner] = ownerId;
+        ownerLinks[owner] = new int[4];
+        ownerIds.put(ownerId, owner);
+        return owner;
+    }
+
+    /**
+     * Вставляет запись в массив владельца на место по коду; при отложенном порядке — в конец.
+     */
+    private void linkOwner(int record, int owner) {
+        owners[record] = owner;
+        int count = ownerSize[owner];
+        if (count == ownerLinks[owner].length) {
+            ownerLinks[owner] = Arrays.copyOf(ownerLinks[owner], count * 2);
+        }
+        int[] links = ownerLinks[owner];
+        int position = ownerOrderDeferred ? count : -ownerPosition(owner, code(record)) - 1;
+        System.arraycopy(links, position, links, position + 1, count - position);
+        links[position] = record;
+        ownerSize[owner] = count + 1;
+    }
+
+    private void unlinkOwner(int record) {
+        int owner = owners[record];
+        int count = ownerSize[owner];
+        int[] links = ownerLinks[owner];
+        int position;
+        if (ownerOrderDeferred) {
+            position = count - 1;
+            while (links[position] != record) {
+                position--;
+            }
+            links[position] = links[count - 1];
+        } else {
+            position = ownerPosition(owner, code(record));
+            System.arraycopy(links, position + 1, links, position, count - position - 1);
+        }
+        ownerSize[owner] = count - 1;
+    }
+
+    /**
+     * Двоичный поиск кода в упорядоченном массиве владельца: позиция записи с этим кодом или
+     * {@code -(точка вставки) - 1}, как у {@link Arrays#binarySearch}.
+     */
+    private int ownerPosition(int owner, String code) {
+        int[] links = ownerLinks[owner];
+        int low = 0;
+        int high = ownerSize[owner] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = code(links[middle]).compareTo(code);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private void pushExpiry(long time, int record) {
+        if (heapSize == heapTimes.length) {
+            heapTimes = Arrays.copyOf(heapTimes, heapSize * 2);
+            heapRecords = Arrays.copyOf(heapRecords, heapSize * 2);
+        }
+        int position = heapSize++;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heapTimes[parent] <= time) {
+                break;
+            }
+            heapTimes[position] = heapTimes[parent];
+            heapRecords[position] = heapRecords[parent];
+            position = parent;
+        }
+        heapTimes[position] = time;
+        heapRecords[position] = record;
+    }
+
+    private void popExpiry() {
+        long time = heapTimes[--heapSize];
+        int record = heapRecords[heapSize];
+        int position = 0;
+        while (true) {
+            int child = position * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapTimes[child + 1] < heapTimes[child]) {
+                child++;
+            }
+            if (heapTimes[child] >= time) {
+                break;
+            }
+            heapTimes[position] = heapTimes[child];
+            heapRecords[position] = heapRecords[child];
+            position = child;
+        }
+        heapTimes[position] = time;
+        heapRecords[position] = record;
+    }
+
+    /**
+     * Ссылка на строку в арене: номер чанка, смещение в чанке и длина, упакованные в long.
+     */
+    private long store(byte[] bytes) {
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalStateException("String of " + bytes.length + " bytes does not fit packed storage");
+        }
+        return store(bytes, 0, bytes.length);
+    }
+
+    private long store(byte[] source, int from, int length) {
+        if (chunkPosition + length > CHUNK_SIZE) {
+            chunks.add(new byte[CHUNK_SIZE]);
+            chunkPosition = 0;
+        }
+        int chunk = chunks.size() - 1;
+        System.arraycopy(source, from, chunks.get(chunk), chunkPosition, length);
+        long ref = ((long) chunk << (CHUNK_BITS + LENGTH_BITS))
+                | ((long) chunkPosition << LENGTH_BITS)
+                | length;
+        chunkPosition += length;
+        return ref;
+    }
+
+    private long copy(List<byte[]> from, long ref) {
+        return store(from.get((int) (ref >>> (CHUNK_BITS + LENGTH_BITS))), offset(ref), length(ref));
+    }
+
+    private String string(long ref) {
+        return new String(chunk(ref), offset(ref), length(ref), StandardCharsets.UTF_8);
+    }
+
+    private boolean bytesEqual(long ref, byte[] other) {
+        int length = length(ref);
+        if (length != other.length) {
+            return false;
+        }
+        int offset = offset(ref);
+        return Arrays.equals(chunk(ref), offset, offset + length, other, 0, length);
+    }
+
+    private byte[] chunk(long ref) {
+        return chunks.get((int) (ref >>> (CHUNK_BITS + LENGTH_BITS)));
+    }
+
+    private static int offset(long ref) {
+        return (int) (ref >>> LENGTH_BITS) & (CHUNK_SIZE - 1);
+    }
+
+    private static int length(long ref) {
+        return (int) ref & MAX_STRING_BYTES;
+    }
+
+    String code(int record) {
+        long packed = packedCodes[record];
+        return packed != ShortCode.INVALID ? ShortCode.unpack(packed) : string(codeRefs[record]);
+    }
+
+    private static int hash(long packedCode) {
+        long h = packedCode * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) {
+            h = 31 * h + b;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,528 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище на {@link PackedLinkTable}: ссылки живут в примитивных колонках без объекта на запись,
+ * {@link ShortLink} создаётся только для ответа вызывающему. Мутации пишутся в {@link MutationLog},
+ * снимок — {@link BinarySnapshot}, как у движка {@code mapped}.
+ */
+public class PackedShortLinkRepository implements ShortLinkRepository {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String SNAPSHOT_TEMP = "snapshot.tmp";
+
+    private final Path directory;
+    private final Path legacyStorageFile;
+    private final long compactionThresholdBytes;
+    private final double arenaGarbageRatio;
+    private final ObjectMapper objectMapper;
+    private final LogRecordCodec codec;
+    private final MutationLog log;
+    private final ScheduledExecutorService compactionExecutor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final PackedLinkTable table = new PackedLinkTable();
+    private final Map<UUID, UserAccount> users = new ConcurrentHashMap<>();
+    private final Set<String> dirtyVisitCodes = ConcurrentHashMap.newKeySet();
+
+    public PackedShortLinkRepository(AppConfig config) {
+        this.directory = config.getPackedDirectory();
+        this.legacyStorageFile = config.getStorageFile();
+        this.compactionThresholdBytes = config.getCompactionThresholdBytes();
+        this.arenaGarbageRatio = config.getArenaGarbageRatio();
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.codec = new LogRecordCodec(objectMapper);
+        this.log = new MutationLog(directory,
+                config.getFsyncPolicy(),
+                config.getFsyncInterval(),
+                config.getLogSegmentSizeBytes());
+        load();
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "packed-table-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Duration interval = config.getCompactionInterval();
+        long seconds = Math.max(1, interval.getSeconds());
+        compactionExecutor.scheduleWithFixedDelay(this::compactIfNeeded, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        lock.readLock().lock();
+        try {
+            int record = table.find(code);
+            return record < 0 ? Optional.empty() : Optional.of(table.view(record));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        lock.readLock().lock();
+        try {
+            return consumeVisit(table.find(code), now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        lock.readLock().lock();
+        try {
+            return consumeVisit(table.find(packedCode), now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        lock.readLock().lock();
+        try {
+            int record = table.find(packedCode);
+            if (record < 0) {
+                return VisitAttempt.Outcome.NOT_FOUND;
+            }
+            if (table.isExpired(record, nowMillis)) {
+                return VisitAttempt.Outcome.EXPIRED;
+            }
+            if (!table.tryIncrementVisits(record)) {
+                return VisitAttempt.Outcome.LIMIT_REACHED;
+            }
+            markVisitsDirty(record);
+            return VisitAttempt.Outcome.CONSUMED;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void flushVisits() {
+        if (dirtyVisitCodes.isEmpty()) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> visits = new LinkedHashMap<>();
+            for (Iterator<String> iterator = dirtyVisitCodes.iterator(); iterator.hasNext(); ) {
+                String code = iterator.next();
+                iterator.remove();
+                int record = table.find(code);
+                if (record >= 0) {
+                    table.clearVisitsDirty(record);
+                    visits.put(code, table.visitCount(record));
+                }
+            }
+            if (!visits.isEmpty()) {
+                try {
+                    append(LogRecord.visits(visits));
+                } catch (RuntimeException e) {
+                    dirtyVisitCodes.addAll(visits.keySet());
+                    throw e;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return findByOwner(ownerId, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return views(table.ownerRecords(ownerId, null, offset, limit), 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        lock.readLock().lock();
+        try {
+            return views(table.ownerRecords(ownerId, afterCode, 0, limit), 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        lock.readLock().lock();
+        try {
+            return table.countByOwner(ownerId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        lock.readLock().lock();
+        try {
+            List<ShortLink> result = new ArrayList<>(table.size());
+            for (int record = 0; record < table.highWater(); record++) {
+                if (table.isLive(record)) {
+                    result.add(table.view(record));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        lock.readLock().lock();
+        try {
+            return views(table.recordsAfter(afterCode, limit), 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Порядок обхода снимается один раз; страницы материализуются под блокировкой чтения,
+     * действие выполняется вне её. Запись, удалённая или занятая другой ссылкой после снятия
+     * порядка, пропускается, если её код не продолжает возрастающую последовательность.
+     */
+    @Override
+    public void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        int[] order;
+        lock.readLock().lock();
+        try {
+            order = table.recordsInCodeOrder(afterCode);
+        } finally {
+            lock.readLock().unlock();
+        }
+        String last = afterCode;
+        List<ShortLink> page = new ArrayList<>(Math.min(pageSize, order.length));
+        for (int from = 0; from < order.length; from += pageSize) {
+            page.clear();
+            lock.readLock().lock();
+            try {
+                for (int i = from; i < Math.min(order.length, from + pageSize); i++) {
+                    int record = order[i];
+                    if (!table.isLive(record)) {
+                        continue;
+                    }
+                    ShortLink link = table.view(record);
+                    if (last == null || link.getCode().compareTo(last) > 0) {
+                        page.add(link);
+                        last = link.getCode();
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            page.forEach(action);
+        }
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        lock.writeLock().lock();
+        try {
+            int record = upsert(shortLink);
+            append(LogRecord.saveLink(table.view(record)));
+            return shortLink;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String code) {
+        lock.writeLock().lock();
+        try {
+            int record = table.find(code);
+            if (record < 0) {
+                return false;
+            }
+            table.remove(record);
+            append(LogRecord.deleteLink(code));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        lock.readLock().lock();
+        try {
+            if (!table.hasExpired(now)) {
+                return List.of();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            List<ShortLink> removed = table.removeExpired(now, limit);
+            if (!removed.isEmpty()) {
+                append(LogRecord.expireLinks(removed.stream()
+                        .map(ShortLink::getCode)
+                        .collect(Collectors.toList())));
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        lock.writeLock().lock();
+        try {
+            users.put(userAccount.getId(), userAccount);
+            append(LogRecord.saveUser(userAccount));
+            return userAccount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return Optional.ofNullable(users.get(userId));
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * Пишет таблицу в новый бинарный снимок и удаляет покрытые им сегменты журнала.
+     * Если доля освободившихся байтов арены превысила {@code app.storage.packed-arena-garbage-ratio},
+     * арена переписывается под блокировкой записи.
+     */
+    public synchronized void compact() {
+        if (arenaNeedsRepack()) {
+            lock.writeLock().lock();
+            try {
+                table.repackArena();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        try {
+            Path temp = directory.resolve(SNAPSHOT_TEMP);
+            long segment;
+            lock.readLock().lock();
+            try {
+                segment = log.roll();
+                try (BinarySnapshotWriter writer = new BinarySnapshotWriter(temp, table.size())) {
+                    for (int record = 0; record < table.highWater(); record++) {
+                        if (table.isLive(record)) {
+                            writer.addLink(table.view(record));
+                        }
+                    }
+                    users.values().forEach(writer::addUser);
+                    writer.finish();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            Files.move(temp, snapshotPath(segment), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Long existing : MutationLog.listNumbered(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (existing < segment) {
+                    Files.deleteIfExists(snapshotPath(existing));
+                }
+            }
+            log.deleteSegmentsBefore(segment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to compact packed table", e);
+        }
+    }
+
+    @Override
+    public String storeIdentity() {
+        lock.readLock().lock();
+        try {
+            return "packed " + directory.toAbsolutePath() + " lsn=" + log.position() + " links=" + table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        flushVisits();
+        compactionExecutor.shutdownNow();
+        log.close();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (log.bytesSinceSnapshot() >= compactionThresholdBytes || arenaNeedsRepack()) {
+                compact();
+            }
+        } catch (RuntimeException ignored) {
+            // следующая попытка будет на следующем тике планировщика
+        }
+    }
+
+    private boolean arenaNeedsRepack() {
+        lock.readLock().lock();
+        try {
+            return table.deadArenaBytes() > 0
+                    && table.deadArenaBytes() >= table.arenaBytes() * arenaGarbageRatio;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private VisitAttempt consumeVisit(int record, Instant now) {
+        if (record < 0) {
+            return VisitAttempt.notFound();
+        }
+        if (table.isExpired(record, now)) {
+            return VisitAttempt.of(VisitAttempt.Outcome.EXPIRED, table.view(record));
+        }
+        if (!table.tryIncrementVisits(record)) {
+            return VisitAttempt.of(VisitAttempt.Outcome.LIMIT_REACHED, table.view(record));
+        }
+        markVisitsDirty(record);
+        return VisitAttempt.of(VisitAttempt.Outcome.CONSUMED, table.view(record));
+    }
+
+    private void markVisitsDirty(int record) {
+        if (table.markVisitsDirty(record)) {
+            dirtyVisitCodes.add(table.code(record));
+        }
+    }
+
+    private int upsert(ShortLink link) {
+        int record = table.find(link.getCode());
+        if (record < 0) {
+            return table.insert(link);
+        }
+        table.update(record, link);
+        return record;
+    }
+
+    private List<ShortLink> views(int[] records, int from, int limit) {
+        int to = (int) Math.min(records.length, (long) from + limit);
+        List<ShortLink> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(table.view(records[i]));
+        }
+        return result;
+    }
+
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+            List<Long> snapshots = MutationLog.listNumbered(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            long replayFrom = 0;
+            boolean migrated = false;
+            table.deferOwnerOrder();
+            if (!snapshots.isEmpty()) {
+                replayFrom = snapshots.get(snapshots.size() - 1);
+                BinarySnapshot snapshot = BinarySnapshot.open(snapshotPath(replayFrom));
+                for (int i = 0; i < snapshot.linkCount(); i++) {
+                    table.insert(snapshot.linkAt(i));
+                }
+                snapshot.users().forEach(user -> users.put(user.getId(), user));
+            } else if (Files.exists(legacyStorageFile)) {
+                DataStore legacy = StoreFile.read(legacyStorageFile, objectMapper);
+                legacy.getShortLinks().values().forEach(table::insert);
+                users.putAll(legacy.getUsers());
+                migrated = true;
+            }
+            MutationLog.Replay replay = log.replay(replayFrom, (bytes, offset, length) -> {
+                LogRecord record = codec.decode(bytes, offset, length);
+                if (record == null) {
+                    return false;
+                }
+                apply(record);
+                return true;
+            });
+            table.restoreOwnerOrder();
+            log.open(replay);
+            if (migrated) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load packed table", e);
+        }
+    }
+
+    private void apply(LogRecord record) {
+        switch (record.getOp()) {
+            case SAVE_LINK -> upsert(record.getLink());
+            case DELETE_LINK -> removeIfPresent(record.getCode());
+            case EXPIRE_LINKS -> record.getCodes().forEach(this::removeIfPresent);
+            case SAVE_USER -> users.put(record.getUser().getId(), record.getUser());
+            case VISITS -> record.getVisits().forEach((code, count) -> {
+                int index = table.find(code);
+                if (index >= 0) {
+                    table.raiseVisits(index, count);
+                }
+            });
+        }
+    }
+
+    private void removeIfPresent(String code) {
+        int record = table.find(code);
+        if (record >= 0) {
+            table.remove(record);
+        }
+    }
+
+    private void append(LogRecord record) {
+        log.append(codec.encode(record));
+    }
+
+    private Path snapshotPath(long segment) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX));
+    }
+}
@@ -0,0 +1,347 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище из N независимых шардов: код ссылки хешируется в шард, у каждого шарда своя
+ * блокировка, карта и файл {@code shard-NN.json} ({@link FileShortLinkRepository}), так что запись
+ * в один шард не останавливает чтения и записи в остальных. Пользователи лежат отдельно
+ * в {@code users.json} со своей блокировкой.
+ *
+ * <p>Операции по одному коду идут в его шард; {@code findAll}, {@code deleteExpired},
+ * выборки по владельцу и сброс счётчиков рассылаются по шардам параллельно и сливаются.
+ * Если число шардов изменилось, ссылки перераспределяются при старте.
+ */
+public class ShardedShortLinkRepository implements ShortLinkRepository {
+    private static final Pattern SHARD_FILE = Pattern.compile("shard-(\\d+)\\.json");
+    private static final Comparator<ShortLink> BY_CODE = Comparator.comparing(ShortLink::getCode);
+
+    private final FileShortLinkRepository[] shards;
+    private final FileShortLinkRepository users;
+    private final ExecutorService executor;
+
+    public ShardedShortLinkRepository(AppConfig config) {
+        this(config.getShardedDirectory(), config.getShardCount(), config.getStorageFile());
+    }
+
+    ShardedShortLinkRepository(Path directory, int shardCount, Path legacyStorageFile) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        boolean fresh = !Files.exists(directory);
+        this.shards = new FileShortLinkRepository[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new FileShortLinkRepository(shardFile(directory, i));
+        }
+        this.users = new FileShortLinkRepository(directory.resolve("users.json"));
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(
+                Math.min(shardCount, Runtime.getRuntime().availableProcessors()),
+                r -> {
+                    Thread thread = new Thread(r, "shard-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        if (fresh && legacyStorageFile != null && Files.exists(legacyStorageFile)) {
+            importLegacy(legacyStorageFile);
+        }
+        rebalance(directory);
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        return shardFor(code).findByCode(code);
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        return shardFor(code).tryConsumeVisit(code, now);
+    }
+
+    @Override
+    public void flushVisits() {
+        fanOut(shard -> {
+            shard.flushVisits();
+            return null;
+        });
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return findByOwner(ownerId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Каждый шард отдаёт первые {@code offset + limit} ссылок владельца, страница вырезается
+     * из их слияния по коду.
+     */
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        int window = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        List<ShortLink> merged = merge(fanOut(shard -> shard.findByOwner(ownerId, 0, window)));
+        if (offset >= merged.size()) {
+            return List.of();
+        }
+        return new ArrayList<>(merged.subList(offset, (int) Math.min(merged.size(), (long) offset + limit)));
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        List<ShortLink> merged = merge(fanOut(shard -> shard.findByOwnerAfter(ownerId, afterCode, limit)));
+        return merged.size() <= limit ? merged : new ArrayList<>(merged.subList(0, limit));
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        int count = 0;
+        for (FileShortLinkRepository shard : shards) {
+            count += shard.countByOwner(ownerId);
+        }
+        return count;
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        List<ShortLink> all = new ArrayList<>();
+        fanOut(ShortLinkRepository::findAll).forEach(all::addAll);
+        return all;
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        List<ShortLink> merged = merge(fanOut(shard -> shard.findAfter(afterCode, limit)));
+        return merged.size() <= limit ? merged : new ArrayList<>(merged.subList(0, limit));
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        return shardFor(shortLink.getCode()).save(shortLink);
+    }
+
+    /**
+     * Пачка раскладывается по шардам, и каждый шард сохраняет свою часть одним захватом
+     * блокировки и одной записью файла; шарды работают параллельно.
+     */
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        List<List<ShortLink>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (ShortLink link : shortLinks) {
+            byShard.get(shardIndex(link.getCode(), shards.length)).add(link);
+        }
+        fanOut(shards.length, i -> shards[i].saveAll(byShard.get(i)));
+        return shortLinks;
+    }
+
+    @Override
+    public boolean delete(String code) {
+        return shardFor(code).delete(code);
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        List<ShortLink> removed = new ArrayList<>();
+        fanOut(shard -> shard.deleteExpired(now)).forEach(removed::addAll);
+        return removed;
+    }
+
+    /**
+     * Лимит делится между шардами поровну; остаток бюджета, который не понадобился шардам
+     * без просроченных ссылок, раздаётся тем, кто исчерпал свою долю.
+     */
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        List<ShortLink> removed = new ArrayList<>();
+        List<FileShortLinkRepository> candidates = List.of(shards);
+        while (removed.size() < limit && !candidates.isEmpty()) {
+            int budget = limit - removed.size();
+            int base = budget / candidates.size();
+            int extra = budget % candidates.size();
+            int active = Math.min(candidates.size(), budget);
+            List<FileShortLinkRepository> round = candidates;
+            List<List<ShortLink>> batches = fanOut(active,
+                    i -> round.get(i).deleteExpired(now, base + (i < extra ? 1 : 0)));
+            List<FileShortLinkRepository> exhausted = new ArrayList<>();
+            for (int i = 0; i < active; i++) {
+                removed.addAll(batches.get(i));
+                if (batches.get(i).size() == base + (i < extra ? 1 : 0)) {
+                    exhausted.add(round.get(i));
+                }
+            }
+            candidates = exhausted;
+        }
+        return removed;
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        return users.saveUser(userAccount);
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return users.findUser(userId);
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return users.findAllUsers();
+    }
+
+    /**
+     * Отметки всех шардов: изменение любого из них меняет отметку хранилища.
+     */
+    @Override
+    public String storeIdentity() {
+        StringBuilder identity = new StringBuilder("sharded");
+        for (FileShortLinkRepository shard : shards) {
+            identity.append("; ").append(shard.storeIdentity());
+        }
+        return identity.toString();
+    }
+
+    @Override
+    public void close() {
+        try {
+            flushVisits();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private FileShortLinkRepository shardFor(String code) {
+        return shards[shardIndex(code, shards.length)];
+    }
+
+    static int shardIndex(String code, int shardCount) {
+        int hash = code.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    private <T> List<T> fanOut(Function<FileShortLinkRepository, T> action) {
+        return fanOut(shards.length, i -> action.apply(shards[i]));
+    }
+
+    /**
+     * Выполняет {@code task(0..count-1)} параллельно и возвращает результаты в порядке индексов.
+     */
+    private <T> List<T> fanOut(int count, IntFunction<T> task) {
+        if (count == 1) {
+            return List.of(task.apply(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> task.apply(index)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard operation failed", e.getCause());
+        }
+        return results;
+    }
+
+    private static List<ShortLink> merge(List<List<ShortLink>> pages) {
+        List<ShortLink> merged = new ArrayList<>();
+        pages.forEach(merged::addAll);
+        merged.sort(BY_CODE);
+        return merged;
+    }
+
+    /**
+     * Пользователи переносятся одной записью {@code users.json}, ссылки — одним {@link #saveAll},
+     * то есть одной записью на шард, а не на каждую ссылку.
+     */
+    private void importLegacy(Path legacyStorageFile) {
+        try (FileShortLinkRepository legacy = new FileShortLinkRepository(legacyStorageFile)) {
+            users.deferPersistence(() -> legacy.findAllUsers().forEach(users::saveUser));
+            saveAll(legacy.findAll());
+        }
+    }
+
+    /**
+     * Переносит ссылки, которые лежат не в своём шарде: после изменения числа шардов
+     * или из файлов шардов сверх текущего числа. Файлы лишнего шарда удаляются со всеми
+     * поколениями: иначе при следующем увеличении числа шардов он поднялся бы из старого снимка.
+     *
+     * <p>Перенос пакетный: все ссылки не на месте сохраняются одним {@link #saveAll} (одна запись
+     * на целевой шард), затем каждый исходный шард удаляет свои одним
+     * {@link FileShortLinkRepository#deleteAll}. Падение между этими шагами оставляет копии
+     * в старых шардах, и следующий старт перенесёт их снова.
+     */
+    private void rebalance(Path directory) {
+        List<ShortLink> moved = new ArrayList<>();
+        List<List<String>> misplaced = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            List<String> codes = new ArrayList<>();
+            for (ShortLink link : shards[i].findAll()) {
+                if (shardIndex(link.getCode(), shards.length) != i) {
+                    moved.add(link);
+                    codes.add(link.getCode());
+                }
+            }
+            misplaced.add(codes);
+        }
+        List<Path> extraFiles = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SHARD_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= shards.length) {
+                    try (FileShortLinkRepository extra = new FileShortLinkRepository(file)) {
+                        moved.addAll(extra.findAll());
+                    }
+                    extraFiles.add(file);
+                }
+            }
+            if (moved.isEmpty() && extraFiles.isEmpty()) {
+                return;
+            }
+            saveAll(moved);
+            fanOut(shards.length, i -> shards[i].deleteAll(misplaced.get(i)));
+            for (Path file : extraFiles) {
+                StoreFile.deleteAll(file);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to rebalance shards in " + directory, e);
+        }
+    }
+
+    private static Path shardFile(Path directory, int index) {
+        return directory.resolve(String.format("shard-%02d.json", index));
+    }
+}
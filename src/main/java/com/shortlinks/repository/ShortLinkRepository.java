@@ -2,29 +2,131 @@ package com.shortlinks.repository;
 
 import com.shortlinks.model.ShortLink;
 import com.shortlinks.model.UserAccount;
+import com.shortlinks.util.ShortCode;
 
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
-public interface ShortLinkRepository {
+public interface ShortLinkRepository extends AutoCloseable {
     Optional<ShortLink> findByCode(String code);
 
+    /**
+     * Атомарно засчитывает переход по ссылке, проверяя срок действия и лимит.
+     * Счётчик сохраняется на диск не сразу, а при {@link #flushVisits()}.
+     */
+    VisitAttempt tryConsumeVisit(String code, Instant now);
+
+    /**
+     * То же по коду, упакованному в {@link ShortCode}. Движки с индексом по {@code long}
+     * переопределяют метод, остальные распаковывают код в строку.
+     */
+    default VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        return tryConsumeVisit(ShortCode.unpack(packedCode), now);
+    }
+
+    /**
+     * То же, что {@link #tryConsumeVisit(long, Instant)}, но возвращает только исход — для
+     * горячего пути редиректа, где сама ссылка не нужна. Движок {@code packed} засчитывает
+     * переход без создания объектов.
+     */
+    default VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        return tryConsumeVisit(packedCode, Instant.ofEpochMilli(nowMillis)).getOutcome();
+    }
+
+    void flushVisits();
+
     List<ShortLink> findByOwner(UUID ownerId);
 
+    /**
+     * Страница ссылок владельца в порядке возрастания кода.
+     */
+    List<ShortLink> findByOwner(UUID ownerId, int offset, int limit);
+
+    /**
+     * Курсорная страница: ссылки владельца с кодом строго больше {@code afterCode}
+     * ({@code null} — с начала).
+     */
+    List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit);
+
+    int countByOwner(UUID ownerId);
+
     List<ShortLink> findAll();
 
+    /**
+     * Курсорная страница по всем ссылкам: коды строго больше {@code afterCode}
+     * ({@code null} — с начала) в порядке возрастания.
+     */
+    List<ShortLink> findAfter(String afterCode, int limit);
+
+    /**
+     * Передаёт в {@code action} все ссылки с кодом больше {@code afterCode} по возрастанию кода.
+     * Ссылки читаются страницами через {@link #findAfter}, поэтому в памяти одновременно не больше
+     * {@code pageSize} копий, а блокировка хранилища держится только на время выборки страницы.
+     */
+    default void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        String cursor = afterCode;
+        List<ShortLink> page;
+        do {
+            page = findAfter(cursor, pageSize);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getCode();
+            }
+        } while (page.size() == pageSize);
+    }
+
+    /**
+     * Отметка сохранённого состояния: движок, путь, поколение или позиция журнала и число ссылок.
+     * Меняется с каждым записанным изменением и совпадает после перезапуска без изменений, поэтому
+     * по ней производные файлы (фильтр кодов) проверяют, что построены по этому же хранилищу.
+     * {@code null} — движок отметку не ведёт.
+     */
+    default String storeIdentity() {
+        return null;
+    }
+
     ShortLink save(ShortLink shortLink);
 
+    /**
+     * Сохраняет пачку ссылок. Движки, которые умеют зафиксировать пачку за один захват
+     * блокировки и одну запись на диск, переопределяют метод.
+     */
+    default List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        shortLinks.forEach(this::save);
+        return shortLinks;
+    }
+
+    /**
+     * Выполняет {@code work}, откладывая запись изменений вызывающего потока на диск до его конца.
+     * Движок {@code file}, который переписывает хранилище целиком, так фиксирует всю работу одной
+     * записью вместо записи на каждый вызов; остальные движки просто выполняют работу.
+     */
+    default void deferPersistence(Runnable work) {
+        work.run();
+    }
+
     boolean delete(String code);
 
     List<ShortLink> deleteExpired(Instant now);
 
+    /**
+     * Удаляет не больше {@code limit} ссылок, срок которых истёк к моменту {@code now},
+     * начиная с самых ранних.
+     */
+    List<ShortLink> deleteExpired(Instant now, int limit);
+
     UserAccount saveUser(UserAccount userAccount);
 
     Optional<UserAccount> findUser(UUID userId);
 
     Collection<UserAccount> findAllUsers();
+
+    @Override
+    default void close() {
+        flushVisits();
+    }
 }
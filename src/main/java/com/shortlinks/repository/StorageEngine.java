@@ -0,0 +1,19 @@
+package com.shortlinks.repository;
+
+import java.util.Locale;
+
+public enum StorageEngine {
+    FILE,
+    LOG,
+    MAPPED,
+    PACKED,
+    SHARDED;
+
+    public static StorageEngine parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown storage engine: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.shortlinks.model.DataStore;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Файл {@link DataStore} с защитой от частичной записи. Снимок начинается строкой-заголовком
+ * {@code #shortlinks-store generation=N length=L crc32c=X}, за которой идёт JSON. Запись идёт
+ * во временный файл рядом с основным, {@code fsync}, затем предыдущие поколения сдвигаются
+ * ({@code store.json} → {@code store.json.1} → {@code store.json.2} …) и временный файл атомарно
+ * переименовывается в основной.
+ *
+ * <p>При чтении берётся самое новое поколение с верной длиной и контрольной суммой среди основного,
+ * временного и сохранённых файлов; если это не основной файл, в {@code System.err} пишется
+ * предупреждение. Кандидаты проверяются потоково, в память читается только выбранный.
+ * Файл без заголовка читается как JSON прежнего формата с поколением 0.
+ *
+ * <p>Тело в формате {@code lines} ({@code format=lines} в заголовке) построчное: первая строка —
+ * пользователи и число ссылок, дальше по ссылке на строку. При загрузке тело режется по переводам
+ * строк на куски, которые разбираются параллельно в общем {@link ForkJoinPool} прямо в заранее
+ * рассчитанную {@link java.util.concurrent.ConcurrentHashMap}, так что время старта на больших
+ * хранилищах падает с числом ядер. Снимки с заголовком без {@code format} — один JSON-объект.
+ */
+final class StoreFile {
+    private static final String HEADER_PREFIX = "#shortlinks-store ";
+    private static final int MAX_HEADER_LENGTH = 256;
+    private static final String FORMAT_LINES = "lines";
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int CHECKSUM_BUFFER_BYTES = 1 << 16;
+
+    private final Path path;
+    private final Path tempPath;
+    private final int keepGenerations;
+    private final ObjectMapper objectMapper;
+    private long generation;
+    private boolean mainFileValid = true;
+
+    StoreFile(Path path, int keepGenerations, ObjectMapper objectMapper) {
+        if (keepGenerations < 0) {
+            throw new IllegalArgumentException("Kept generations must not be negative");
+        }
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.keepGenerations = keepGenerations;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Читает хранилище, записанное {@link StoreFile} или прежним форматом, для миграции в другой движок.
+     */
+    static DataStore read(Path path, ObjectMapper objectMapper) {
+        return new StoreFile(path, 0, objectMapper).load();
+    }
+
+    /**
+     * @return самое новое целое поколение или {@code null}, если файлов хранилища нет
+     */
+    DataStore load() {
+        List<Candidate> candidates = new ArrayList<>();
+        try {
+            for (Path file : existingFiles()) {
+                candidates.add(inspect(file));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load storage file", e);
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        candidates.sort(Comparator.comparingLong((Candidate candidate) -> candidate.generation).reversed());
+        for (Candidate candidate : candidates) {
+            if (candidate.reason != null) {
+                continue;
+            }
+            try {
+                byte[] body = readBody(candidate);
+                DataStore dataStore = FORMAT_LINES.equals(candidate.format)
+                        ? decodeLines(body, 0)
+                        : objectMapper.readValue(body, DataStore.class);
+                if (!candidate.file.equals(path)) {
+                    System.err.println("[WARN] Хранилище " + path + " восстановлено из " + candidate.file
+                            + " (поколение " + candidate.generation + ")");
+                }
+                generation = candidate.generation;
+                mainFileValid = candidates.stream()
+                        .noneMatch(other -> other.file.equals(path) && other.reason != null);
+                return dataStore;
+            } catch (IOException e) {
+                candidate.reason = e.getMessage();
+            }
+        }
+        StringBuilder reasons = new StringBuilder();
+        candidates.forEach(candidate -> reasons.append("; ").append(candidate.file).append(": ").append(candidate.reason));
+        throw new IllegalStateException("Unable to load storage file, no valid generation" + reasons);
+    }
+
+    /**
+     * Сериализует хранилище в тело формата {@code lines}. Вызывающий держит хранилище неизменным.
+     */
+    byte[] encode(DataStore dataStore) {
+        Head head = new Head();
+        head.links = dataStore.getShortLinks().size();
+        head.users = dataStore.getUsers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + head.links * 192);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            objectMapper.writeValue(generator, head);
+            for (ShortLink link : dataStore.getShortLinks().values()) {
+                objectMapper.writeValue(generator, link);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize storage", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Записывает следующее поколение с телом из {@link #encode(DataStore)}. Вызывающий
+     * сериализует записи сам.
+     *
+     * @return число записанных байт вместе с заголовком
+     */
+    long write(byte[] json) {
+        long next = generation + 1;
+        CRC32C crc = new CRC32C();
+        crc.update(json);
+        byte[] header = (HEADER_PREFIX + "generation=" + next + " length=" + json.length
+                + " crc32c=" + String.format("%08x", crc.getValue()) + " format=" + FORMAT_LINES + "\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer[] buffers = {ByteBuffer.wrap(header), ByteBuffer.wrap(json)};
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+            rotate();
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to persist storage file", e);
+        }
+        generation = next;
+        mainFileValid = true;
+        return header.length + (long) json.length;
+    }
+
+    /**
+     * Удаляет основной и временный файлы вместе со всеми сохранёнными поколениями, чтобы
+     * следующий {@link #load()} по этому пути не поднял устаревший снимок.
+     */
+    static void deleteAll(Path path) throws IOException {
+        for (Path file : new StoreFile(path, 0, null).existingFiles()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Основной файл, не прошедший проверку при загрузке, не сдвигается, а удаляется, чтобы
+     * не вытеснить целые снимки. Целый основной файл сдвигается как обычно, даже если загрузка
+     * взяла более новый временный файл, оставшийся после сбоя между fsync и переименованием.
+     */
+    private void rotate() throws IOException {
+        if (!mainFileValid) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        if (keepGenerations == 0 || !Files.exists(path)) {
+            return;
+        }
+        Files.deleteIfExists(generationPath(keepGenerations));
+        for (int k = keepGenerations - 1; k >= 1; k--) {
+            Path older = generationPath(k);
+            if (Files.exists(older)) {
+                Files.move(older, generationPath(k + 1), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.move(path, generationPath(1), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Переименования попадают на диск только вместе с каталогом; на системах, где каталог
+     * нельзя открыть как канал, шаг пропускается.
+     */
+    private void syncDirectory() {
+        Path parent = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(parent, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // каталог не синхронизируется
+        }
+    }
+
+    private Path generationPath(int k) {
+        return path.resolveSibling(path.getFileName() + "." + k);
+    }
+
+    /**
+     * Основной и временный файлы плюс все {@code <имя>.<номер>} в каталоге, а не только
+     * {@code keepGenerations}: после уменьшения настройки старые поколения всё ещё годятся.
+     */
+    private List<Path> existingFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.exists(path)) {
+            files.add(path);
+        }
+        if (Files.exists(tempPath)) {
+            files.add(tempPath);
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null && Files.isDirectory(parent)) {
+            String prefix = path.getFileName() + ".";
+            try (Stream<Path> siblings = Files.list(parent)) {
+                siblings.filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(prefix) && name.length() > prefix.length()
+                            && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+                }).sorted().forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Проверяет заголовок, длину и контрольную сумму, прогоняя файл через CRC32C кусками:
+     * в памяти при выборе поколения не держится ни одно тело целиком.
+     */
+    private static Candidate inspect(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Candidate candidate = new Candidate(file, size);
+            if (size > Integer.MAX_VALUE - 8) {
+                return candidate.invalid("file is too large");
+            }
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, MAX_HEADER_LENGTH));
+            readFully(channel, head);
+            byte[] bytes = head.array();
+            if (!startsWith(bytes, HEADER_PREFIX)) {
+                candidate.generation = 0;
+                candidate.offset = 0;
+                return candidate;
+            }
+            int end = -1;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0) {
+                return candidate.invalid("header is truncated");
+            }
+            long length = -1;
+            long checksum = -1;
+            long headerGeneration = -1;
+            String header = new String(bytes, HEADER_PREFIX.length(), end - HEADER_PREFIX.length(),
+                    StandardCharsets.US_ASCII);
+            try {
+                for (String field : header.trim().split(" ")) {
+                    int eq = field.indexOf('=');
+                    if (eq < 0) {
+                        continue;
+                    }
+                    String value = field.substring(eq + 1);
+                    switch (field.substring(0, eq)) {
+                        case "generation" -> headerGeneration = Long.parseLong(value);
+                        case "length" -> length = Long.parseLong(value);
+                        case "crc32c" -> checksum = Long.parseLong(value, 16);
+                        case "format" -> candidate.format = value;
+                        default -> { }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return candidate.invalid("header is corrupted");
+            }
+            if (headerGeneration < 0 || length < 0 || checksum < 0) {
+                return candidate.invalid("header is corrupted");
+            }
+            candidate.generation = headerGeneration;
+            candidate.offset = end + 1;
+            if (size - candidate.offset != length) {
+                return candidate.invalid("length mismatch");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, candidate.offset, bytes.length - candidate.offset);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHECKSUM_BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            if (crc.getValue() != checksum) {
+                return candidate.invalid("checksum mismatch");
+            }
+            return candidate;
+        }
+    }
+
+    /**
+     * Тело выбранного поколения — единственный файл, который читается в память целиком.
+     */
+    private static byte[] readBody(Candidate candidate) throws IOException {
+        try (FileChannel channel = FileChannel.open(candidate.file, StandardOpenOption.READ)) {
+            long length = channel.size() - candidate.offset;
+            if (length != candidate.size - candidate.offset) {
+                throw new IOException("Storage file changed while loading");
+            }
+            ByteBuffer body = ByteBuffer.allocate((int) length);
+            channel.position(candidate.offset);
+            readFully(channel, body);
+            return body.array();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of storage file");
+            }
+        }
+    }
+
+    /**
+     * Первая строка разбирается сразу, остальное режется на куски по границам строк. Маленькое
+     * хранилище — один кусок в вызывающем потоке, без передачи задач в пул.
+     */
+    private DataStore decodeLines(byte[] bytes, int offset) throws IOException {
+        int headEnd = lineEnd(bytes, offset);
+        Head head = objectMapper.readValue(bytes, offset, headEnd - offset, Head.class);
+        DataStore dataStore = new DataStore(head.links);
+        if (head.users != null) {
+            dataStore.getUsers().putAll(head.users);
+        }
+        Map<String, ShortLink> links = dataStore.getShortLinks();
+        ObjectReader linkReader = objectMapper.readerFor(ShortLink.class);
+        int start = Math.min(bytes.length, headEnd + 1);
+        int length = bytes.length - start;
+        int chunks = (int) Math.min((long) ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD,
+                length / MIN_CHUNK_BYTES);
+        if (chunks <= 1) {
+            decodeRange(linkReader, bytes, start, bytes.length, links);
+            return dataStore;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        int from = start;
+        for (int i = 1; i <= chunks && from < bytes.length; i++) {
+            int to = i == chunks ? bytes.length
+                    : Math.min(bytes.length, lineEnd(bytes, Math.max(from, start + (int) ((long) length * i / chunks))) + 1);
+            int chunkFrom = from;
+            tasks.add(() -> {
+                decodeRange(linkReader, bytes, chunkFrom, to, links);
+                return null;
+            });
+            from = to;
+        }
+        try {
+            for (Future<Void> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading storage file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Unable to load storage file", e.getCause());
+        }
+        return dataStore;
+    }
+
+    private static void decodeRange(ObjectReader linkReader, byte[] bytes, int from, int to,
+                                     Map<String, ShortLink> links) throws IOException {
+        int position = from;
+        while (position < to) {
+            int end = Math.min(to, lineEnd(bytes, position));
+            if (end > position) {
+                ShortLink link = linkReader.readValue(bytes, position, end - position);
+                links.put(link.getCode(), link);
+            }
+            position = end + 1;
+        }
+    }
+
+    private static int lineEnd(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return bytes.length;
+    }
+
+    private static boolean startsWith(byte[] bytes, String prefix) {
+        if (bytes.length < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Первая строка тела {@code lines}.
+     */
+    private static final class Head {
+        public int links;
+        public Map<UUID, UserAccount> users;
+    }
+
+    private static final class Candidate {
+        private final Path file;
+        private final long size;
+        private long generation = -1;
+        private int offset;
+        private String reason;
+        private String format;
+
+        private Candidate(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        private Candidate invalid(String reason) {
+            this.reason = reason;
+            return this;
+        }
+    }
+}
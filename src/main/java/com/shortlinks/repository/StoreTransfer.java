@@ -0,0 +1,393 @@
+package com.shortlinks.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый экспорт и импорт хранилища в NDJSON: одна запись {@link LogRecord} на строку
+ * ({@code SAVE_USER}, затем {@code SAVE_LINK} по возрастанию кода) — тот же формат, что у журнала
+ * движков {@code log}, {@code mapped} и {@code packed}. В памяти одновременно держится не больше
+ * одной страницы ссылок, поэтому объём хранилища ограничен только диском.
+ *
+ * <p>Оба направления продолжаются с заданного кода: экспорт дописывает ссылки после него
+ * (пользователи к этому моменту уже выгружены), импорт пропускает ссылки с кодом не больше него.
+ */
+public class StoreTransfer {
+    public static final int DEFAULT_PAGE_SIZE = 1_000;
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+
+    private final LogRecordCodec codec;
+    private final int pageSize;
+    private final long checkpointBytes;
+
+    public StoreTransfer() {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    public StoreTransfer(int pageSize) {
+        this(pageSize, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    public StoreTransfer(int pageSize, long checkpointBytes) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException("Checkpoint size must be positive");
+        }
+        this.pageSize = pageSize;
+        this.checkpointBytes = checkpointBytes;
+        this.codec = new LogRecordCodec(new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS));
+    }
+
+    /**
+     * Выгружает пользователей (только при {@code afterCode == null}) и ссылки с кодом больше
+     * {@code afterCode}. Прогресс пишется в {@code progress} после каждого {@code flush} страницы,
+     * так что после ошибки в нём остаётся код, уже отданный потоку, а не застрявший в буфере.
+     */
+    public Progress export(ShortLinkRepository repository, OutputStream out, String afterCode, Progress progress)
+            throws IOException {
+        if (afterCode == null) {
+            for (UserAccount user : repository.findAllUsers()) {
+                out.write(codec.encode(LogRecord.saveUser(user)));
+                progress.users++;
+            }
+        }
+        out.flush();
+        long[] unflushed = {0};
+        String[] lastWritten = {null};
+        try {
+            repository.forEachLink(afterCode, pageSize, link -> {
+                try {
+                    out.write(codec.encode(LogRecord.saveLink(link)));
+                    lastWritten[0] = link.getCode();
+                    if (++unflushed[0] == pageSize) {
+                        out.flush();
+                        progress.links += unflushed[0];
+                        progress.lastCode = lastWritten[0];
+                        unflushed[0] = 0;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        progress.links += unflushed[0];
+        if (lastWritten[0] != null) {
+            progress.lastCode = lastWritten[0];
+        }
+        return progress;
+    }
+
+    /**
+     * Загружает записи из {@code in}, сохраняя ссылки пачками по размеру страницы через
+     * {@link ShortLinkRepository#saveAll}. Оборванная последняя строка (прерванный экспорт)
+     * отбрасывается, повреждённая строка в середине — ошибка.
+     *
+     * <p>Вход делится на контрольные точки по {@code checkpointBytes} байт, каждая загружается
+     * внутри {@link ShortLinkRepository#deferPersistence}: движок {@code file}, переписывающий
+     * хранилище целиком, пишет его раз на точку, а не на каждую страницу. Прогресс сдвигается
+     * только после записи точки, поэтому код для продолжения не опережает сохранённое.
+     */
+    public Progress importFrom(ShortLinkRepository repository, InputStream in, String afterCode, Progress progress)
+            throws IOException {
+        Import run = new Import(repository, new LineReader(in), afterCode);
+        boolean[] more = {true};
+        try {
+            while (more[0]) {
+                repository.deferPersistence(() -> more[0] = run.nextCheckpoint());
+                run.commit(progress);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return progress;
+    }
+
+    /**
+     * Отрезает незавершённую последнюю строку файла, чтобы продолженный экспорт дописывал
+     * записи с новой строки.
+     */
+    public static void truncatePartialLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = channel.size();
+            while (end > 0) {
+                int chunk = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(chunk);
+                channel.read(buffer, end - chunk);
+                for (int i = chunk - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        channel.truncate(end - chunk + i + 1);
+                        return;
+                    }
+                }
+                end -= chunk;
+            }
+            channel.truncate(0);
+        }
+    }
+
+    /**
+     * Экспорт в файл: с начала файл перезаписывается, при продолжении — дописывается. Точка
+     * продолжения берётся из последней целой строки файла, а не из {@code afterCode}: код,
+     * напечатанный после сбоя, мог опередить то, что успело попасть на диск.
+     */
+    public Progress export(ShortLinkRepository repository, Path file, String afterCode, Progress progress)
+            throws IOException {
+        if (afterCode != null && Files.exists(file)) {
+            truncatePartialLine(file);
+            afterCode = Files.size(file) == 0 ? null : resumeCode(file);
+        }
+        StandardOpenOption mode = afterCode == null ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode), 1 << 16)) {
+            return export(repository, out, afterCode, progress);
+        }
+    }
+
+    /**
+     * Код последней ссылки в файле, оканчивающемся целой строкой; пустая строка, если выгружены
+     * только пользователи.
+     */
+    private String resumeCode(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = channel.size() - 1;
+            long start = findLineStart(channel, end);
+            ByteBuffer line = ByteBuffer.allocate((int) (end - start));
+            while (line.hasRemaining() && channel.read(line, start + line.position()) > 0) {
+                // читаем строку целиком
+            }
+            LogRecord record = codec.decode(line.array(), 0, line.capacity());
+            if (record == null) {
+                throw new IllegalStateException("Malformed last record in " + file);
+            }
+            return record.getOp() == LogRecord.Op.SAVE_LINK && record.getLink() != null
+                    ? record.getLink().getCode()
+                    : "";
+        }
+    }
+
+    private static long findLineStart(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = end;
+        while (position > 0) {
+            int chunk = (int) Math.min(buffer.capacity(), position);
+            buffer.clear().limit(chunk);
+            channel.read(buffer, position - chunk);
+            for (int i = chunk - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position - chunk + i + 1;
+                }
+            }
+            position -= chunk;
+        }
+        return 0;
+    }
+
+    public Progress importFrom(ShortLinkRepository repository, Path file, String afterCode, Progress progress)
+            throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return importFrom(repository, in, afterCode, progress);
+        }
+    }
+
+    /**
+     * Состояние одного импорта между контрольными точками.
+     */
+    private final class Import {
+        private final ShortLinkRepository repository;
+        private final LineReader lines;
+        private final String afterCode;
+        private final List<ShortLink> batch = new ArrayList<>(pageSize);
+        private long lineNumber;
+        private long users;
+        private long links;
+        private String lastCode;
+        private boolean truncated;
+
+        private Import(ShortLinkRepository repository, LineReader lines, String afterCode) {
+            this.repository = repository;
+            this.lines = lines;
+            this.afterCode = afterCode;
+        }
+
+        /**
+         * Загружает записи до следующей контрольной точки или конца потока.
+         *
+         * @return {@code false}, если поток прочитан до конца
+         */
+        boolean nextCheckpoint() {
+            long bytes = 0;
+            try {
+                byte[] line;
+                while ((line = lines.next()) != null) {
+                    lineNumber++;
+                    int length = lines.length();
+                    bytes += length + 1;
+                    if (length == 0) {
+                        continue;
+                    }
+                    LogRecord record = codec.decode(line, 0, length);
+                    if (record == null) {
+                        if (lines.atEnd()) {
+                            truncated = true;
+                            break;
+                        }
+                        throw new IllegalStateException("Malformed record at line " + lineNumber);
+                    }
+                    if (record.getOp() == LogRecord.Op.SAVE_USER && record.getUser() != null) {
+                        repository.saveUser(record.getUser());
+                        users++;
+                    } else if (record.getOp() == LogRecord.Op.SAVE_LINK && record.getLink() != null) {
+                        ShortLink link = record.getLink();
+                        if (afterCode == null || link.getCode().compareTo(afterCode) > 0) {
+                            batch.add(link);
+                            if (batch.size() == pageSize) {
+                                saveBatch();
+                            }
+                        }
+                    }
+                    if (bytes >= checkpointBytes) {
+                        saveBatch();
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            saveBatch();
+            return false;
+        }
+
+        private void saveBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            repository.saveAll(batch);
+            links += batch.size();
+            lastCode = batch.get(batch.size() - 1).getCode();
+            batch.clear();
+        }
+
+        /**
+         * Переносит в {@code progress} всё, что загружено с прошлой контрольной точки.
+         */
+        void commit(Progress progress) {
+            progress.users += users;
+            progress.links += links;
+            if (lastCode != null) {
+                progress.lastCode = lastCode;
+            }
+            progress.truncated |= truncated;
+            users = 0;
+            links = 0;
+            lastCode = null;
+        }
+    }
+
+    public static class Progress {
+        private long users;
+        private long links;
+        private String lastCode;
+        private boolean truncated;
+
+        public long getUsers() {
+            return users;
+        }
+
+        public long getLinks() {
+            return links;
+        }
+
+        /**
+         * Код последней обработанной ссылки — точка продолжения после сбоя.
+         */
+        public String getLastCode() {
+            return lastCode;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * Читает строки как байты, без декодирования в {@code String}.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final byte[] chunk = new byte[1 << 16];
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private int position;
+        private int limit;
+        private boolean terminated = true;
+        private boolean eof;
+
+        private LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        byte[] next() throws IOException {
+            if (eof) {
+                return null;
+            }
+            line.reset();
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(chunk);
+                    position = 0;
+                    if (limit <= 0) {
+                        eof = true;
+                        limit = 0;
+                        terminated = false;
+                        return line.size() > 0 ? line.toByteArray() : null;
+                    }
+                }
+                int start = position;
+                while (position < limit && chunk[position] != '\n') {
+                    position++;
+                }
+                line.write(chunk, start, position - start);
+                if (position < limit) {
+                    position++;
+                    terminated = true;
+                    return line.toByteArray();
+                }
+            }
+        }
+
+        int length() {
+            return line.size();
+        }
+
+        /**
+         * Последняя прочитанная строка оборвана концом потока без перевода строки.
+         */
+        boolean atEnd() {
+            return eof && !terminated;
+        }
+    }
+}
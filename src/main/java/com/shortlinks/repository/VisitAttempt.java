@@ -0,0 +1,40 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+
+import java.util.Optional;
+
+public class VisitAttempt {
+    public enum Outcome {
+        CONSUMED,
+        NOT_FOUND,
+        EXPIRED,
+        LIMIT_REACHED
+    }
+
+    private static final VisitAttempt NOT_FOUND = new VisitAttempt(Outcome.NOT_FOUND, null);
+
+    private final Outcome outcome;
+    private final ShortLink shortLink;
+
+    private VisitAttempt(Outcome outcome, ShortLink shortLink) {
+        this.outcome = outcome;
+        this.shortLink = shortLink;
+    }
+
+    public static VisitAttempt notFound() {
+        return NOT_FOUND;
+    }
+
+    public static VisitAttempt of(Outcome outcome, ShortLink shortLink) {
+        return new VisitAttempt(outcome, shortLink);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public Optional<ShortLink> getShortLink() {
+        return Optional.ofNullable(shortLink);
+    }
+}
@@ -0,0 +1,261 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик сброса счётчиков переходов. Засчитанный переход помечает код грязным в самом
+ * хранилище, и {@link ShortLinkRepository#flushVisits()} нижележащего хранилища пишет именно эти
+ * коды; декоратор лишь считает переходы с последнего сброса и вызывает его: по таймеру, в фоне
+ * при достижении {@code flushThreshold}, синхронно — когда счётчик превысил {@code maxPending},
+ * и при закрытии.
+ *
+ * <p>Счётчик обнуляется в начале сброса, а не уменьшается на записанное, поэтому переход,
+ * засчитанный во время сброса, просто попадает в следующий. Граница потерь при падении процесса:
+ * {@code maxPending} переходов плюс засчитанные за время идущего сброса и окно fsync хранилища.
+ *
+ * <p>Метрики: {@code shortlinks_visit_flush_seconds}, {@code shortlinks_visit_flushes_total}
+ * и {@code shortlinks_visits_unflushed}.
+ */
+public class WriteBehindShortLinkRepository implements ShortLinkRepository {
+    private final ShortLinkRepository delegate;
+    private final long flushThreshold;
+    private final long maxPending;
+    private final AtomicLong unflushedVisits;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor;
+    private final LatencyHistogram flushLatency;
+    private final LongAdder flushes;
+
+    public WriteBehindShortLinkRepository(ShortLinkRepository delegate,
+                                          Duration flushInterval,
+                                          long flushThreshold,
+                                          long maxPending) {
+        this(delegate, flushInterval, flushThreshold, maxPending, MetricsRegistry.global());
+    }
+
+    public WriteBehindShortLinkRepository(ShortLinkRepository delegate,
+                                          Duration flushInterval,
+                                          long flushThreshold,
+                                          long maxPending,
+                                          MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.flushThreshold = Math.max(1, flushThreshold);
+        this.maxPending = Math.max(this.flushThreshold, maxPending);
+        this.unflushedVisits = registry.gauge("shortlinks_visits_unflushed");
+        this.flushLatency = registry.histogram("shortlinks_visit_flush_seconds");
+        this.flushes = registry.counter("shortlinks_visit_flushes_total");
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "visit-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, flushInterval.toMillis());
+        executor.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(String code, Instant now) {
+        VisitAttempt attempt = delegate.tryConsumeVisit(code, now);
+        recordVisit(attempt.getOutcome());
+        return attempt;
+    }
+
+    @Override
+    public VisitAttempt tryConsumeVisit(long packedCode, Instant now) {
+        VisitAttempt attempt = delegate.tryConsumeVisit(packedCode, now);
+        recordVisit(attempt.getOutcome());
+        return attempt;
+    }
+
+    /**
+     * Путь NIO-редиректа: исход берётся у хранилища без {@link VisitAttempt} и {@link Instant}.
+     */
+    @Override
+    public VisitAttempt.Outcome consumeVisit(long packedCode, long nowMillis) {
+        VisitAttempt.Outcome outcome = delegate.consumeVisit(packedCode, nowMillis);
+        recordVisit(outcome);
+        return outcome;
+    }
+
+    private void recordVisit(VisitAttempt.Outcome outcome) {
+        if (outcome != VisitAttempt.Outcome.CONSUMED) {
+            return;
+        }
+        long unflushed = unflushedVisits.incrementAndGet();
+        if (unflushed > maxPending) {
+            flushIfOverBound();
+        } else if (unflushed >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            scheduleFlush();
+        }
+    }
+
+    @Override
+    public synchronized void flushVisits() {
+        long start = System.nanoTime();
+        long unflushed = unflushedVisits.getAndSet(0);
+        try {
+            delegate.flushVisits();
+        } finally {
+            if (unflushed > 0) {
+                flushLatency.recordSince(start);
+                flushes.increment();
+            }
+        }
+    }
+
+    /**
+     * Переходы с последнего сброса; после сбоя записи счётчик уже обнулён, а коды остаются
+     * грязными в хранилище и уходят со следующим сбросом.
+     */
+    public long getUnflushedVisits() {
+        return unflushedVisits.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    @Override
+    public Optional<ShortLink> findByCode(String code) {
+        return delegate.findByCode(code);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return delegate.findByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId, int offset, int limit) {
+        return delegate.findByOwner(ownerId, offset, limit);
+    }
+
+    @Override
+    public List<ShortLink> findByOwnerAfter(UUID ownerId, String afterCode, int limit) {
+        return delegate.findByOwnerAfter(ownerId, afterCode, limit);
+    }
+
+    @Override
+    public int countByOwner(UUID ownerId) {
+        return delegate.countByOwner(ownerId);
+    }
+
+    @Override
+    public List<ShortLink> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<ShortLink> findAfter(String afterCode, int limit) {
+        return delegate.findAfter(afterCode, limit);
+    }
+
+    @Override
+    public void forEachLink(String afterCode, int pageSize, Consumer<? super ShortLink> action) {
+        delegate.forEachLink(afterCode, pageSize, action);
+    }
+
+    @Override
+    public void deferPersistence(Runnable work) {
+        delegate.deferPersistence(work);
+    }
+
+    @Override
+    public String storeIdentity() {
+        return delegate.storeIdentity();
+    }
+
+    @Override
+    public ShortLink save(ShortLink shortLink) {
+        return delegate.save(shortLink);
+    }
+
+    @Override
+    public List<ShortLink> saveAll(List<ShortLink> shortLinks) {
+        return delegate.saveAll(shortLinks);
+    }
+
+    @Override
+    public boolean delete(String code) {
+        return delegate.delete(code);
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now) {
+        return delegate.deleteExpired(now);
+    }
+
+    @Override
+    public List<ShortLink> deleteExpired(Instant now, int limit) {
+        return delegate.deleteExpired(now, limit);
+    }
+
+    @Override
+    public UserAccount saveUser(UserAccount userAccount) {
+        return delegate.saveUser(userAccount);
+    }
+
+    @Override
+    public Optional<UserAccount> findUser(UUID userId) {
+        return delegate.findUser(userId);
+    }
+
+    @Override
+    public Collection<UserAccount> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        flushVisits();
+        delegate.close();
+    }
+
+    private void scheduleFlush() {
+        try {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+        }
+    }
+
+    /**
+     * Посетители, одновременно превысившие границу, ждут один сброс, а не выстраиваются в очередь
+     * на свой собственный.
+     */
+    private synchronized void flushIfOverBound() {
+        if (unflushedVisits.get() > maxPending) {
+            flushVisits();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushVisits();
+        } catch (RuntimeException ignored) {
+            // незаписанные коды остаются грязными в хранилище и уйдут при следующем сбросе
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.shortlinks.service;
+
+/**
+ * Получает код ссылки, которая изменилась или была удалена через {@link ShortLinkService}:
+ * так кэши поверх сервиса узнают, что закэшированное по коду больше не актуально.
+ */
+@FunctionalInterface
+public interface LinkChangeListener {
+    void onLinkChanged(String code);
+}
@@ -0,0 +1,12 @@
+package com.shortlinks.service;
+
+/**
+ * Запрос отклонён ограничением частоты до обращения к хранилищу.
+ */
+public class RateLimitExceededException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,100 @@
+package com.shortlinks.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Маркерные корзины по ключу (владелец, адрес клиента). Состояние корзины — одно число:
+ * момент, к которому корзина снова наполнится (GCRA — эквивалентная запись маркерной корзины),
+ * поэтому запрос стоит одного CAS, а ключ в карте — одного {@link AtomicLong}.
+ *
+ * <p>Полная корзина ничем не отличается от отсутствующей, поэтому такие ключи удаляются:
+ * при добавлении нового ключа, если карта выросла больше {@code maxKeys} или с прошлой
+ * чистки прошло {@value #SWEEP_INTERVAL_SECONDS} с. Переполненная карта чистится
+ * не чаще раза в {@value #MIN_SWEEP_INTERVAL_MILLIS} мс, чтобы поток новых адресов не превращал
+ * каждый запрос в обход карты. Переход, попавший на только что удалённую
+ * корзину, списывается с неё и теряется — клиент получает лишний маркер, не больше.
+ */
+public class RateLimiter<K> {
+    private static final long SWEEP_INTERVAL_SECONDS = 10;
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 100;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final LongSupplier clock;
+    private final Map<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    /**
+     * @param permitsPerSecond скорость пополнения корзины
+     * @param burst            ёмкость корзины — сколько запросов подряд пропускается без ожидания
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this(permitsPerSecond, burst, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, int burst, int maxKeys, LongSupplier clock) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate limit must have positive rate and burst");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxKeys = Math.max(1, maxKeys);
+        this.clock = clock;
+        this.lastSweep = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * @return {@code false}, если корзина ключа пуста; запрос тогда не списывается
+     */
+    public boolean tryAcquire(K key) {
+        return tryAcquire(key, 1) == 1;
+    }
+
+    /**
+     * Списывает столько маркеров из {@code permits}, сколько есть в корзине ключа.
+     *
+     * @return число списанных маркеров, от 0 до {@code permits}
+     */
+    public int tryAcquire(K key, int permits) {
+        if (permits <= 0) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            maybeSweep(now);
+            bucket = buckets.computeIfAbsent(key, ignored -> new AtomicLong(now));
+        }
+        while (true) {
+            long refilledAt = bucket.get();
+            long start = refilledAt - now > 0 ? refilledAt : now;
+            long spare = toleranceNanos - (start - now);
+            if (spare < 0) {
+                return 0;
+            }
+            int granted = (int) Math.min(permits, spare / intervalNanos + 1);
+            if (bucket.compareAndSet(refilledAt, start + granted * intervalNanos)) {
+                return granted;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private void maybeSweep(long now) {
+        long last = lastSweep.get();
+        long elapsed = now - last;
+        boolean due = elapsed >= TimeUnit.SECONDS.toNanos(SWEEP_INTERVAL_SECONDS)
+                || buckets.size() >= maxKeys && elapsed >= TimeUnit.MILLISECONDS.toNanos(MIN_SWEEP_INTERVAL_MILLIS);
+        if (due && lastSweep.compareAndSet(last, now)) {
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.shortlinks.service;
 
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
 import com.shortlinks.model.ShortLink;
 import com.shortlinks.notification.NotificationService;
 
@@ -9,30 +11,65 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ShortLinkCleaner implements AutoCloseable {
+    private static final long CONTINUATION_DELAY_MILLIS = 50;
+
     private final ScheduledExecutorService executorService;
     private final ShortLinkService shortLinkService;
     private final NotificationService notificationService;
+    private final int batchSize;
+    private final long maxRunNanos;
+    private final LatencyHistogram runLatency = MetricsRegistry.global().histogram("shortlinks_cleanup_seconds");
+    private final LongAdder removedLinks = MetricsRegistry.global().counter("shortlinks_cleanup_removed_total");
 
     public ShortLinkCleaner(ShortLinkService shortLinkService,
                             NotificationService notificationService,
-                            Duration interval) {
+                            Duration interval,
+                            int batchSize,
+                            Duration maxRun) {
         this.shortLinkService = shortLinkService;
         this.notificationService = notificationService;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRunNanos = maxRun.toNanos();
         this.executorService = Executors.newSingleThreadScheduledExecutor(new CleanerThreadFactory());
         long seconds = Math.max(5, interval.getSeconds());
         executorService.scheduleAtFixedRate(this::cleanup, seconds, seconds, TimeUnit.SECONDS);
     }
 
-    private void cleanup() {
+    /**
+     * Удаляет просроченные ссылки порциями по {@code batchSize}, отпуская блокировку хранилища
+     * между порциями. Если за {@code maxRun} справиться не удалось, остаток дочищается
+     * отдельным запуском через короткую паузу, а не ждёт следующего интервала.
+     * Порции идут внутри {@link ShortLinkService#deferPersistence}: движок {@code file} переписывает
+     * файл один раз за запуск, а не после каждой порции.
+     */
+    void cleanup() {
+        long start = System.nanoTime();
         try {
-            List<ShortLink> removed = shortLinkService.removeExpired();
-            if (!removed.isEmpty()) {
-                notificationService.info("Удалено просроченных ссылок: " + removed.size());
+            long deadline = start + maxRunNanos;
+            int[] total = new int[1];
+            boolean[] more = new boolean[1];
+            shortLinkService.deferPersistence(() -> {
+                List<ShortLink> removed;
+                do {
+                    removed = shortLinkService.removeExpired(batchSize);
+                    total[0] += removed.size();
+                } while (removed.size() == batchSize && System.nanoTime() < deadline);
+                more[0] = removed.size() == batchSize;
+            });
+            removedLinks.add(total[0]);
+            if (total[0] > 0) {
+                notificationService.info("Удалено просроченных ссылок: " + total[0]);
+            }
+            if (more[0]) {
+                executorService.schedule(this::cleanup, CONTINUATION_DELAY_MILLIS, TimeUnit.MILLISECONDS);
             }
         } catch (Exception e) {
             notificationService.error("Ошибка фоновой очистки: " + e.getMessage());
+        } finally {
+            runLatency.recordSince(start);
         }
     }
 
@@ -1,44 +1,91 @@
 package com.shortlinks.service;
 
 import com.shortlinks.config.AppConfig;
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
 import com.shortlinks.model.ShortLink;
 import com.shortlinks.notification.NotificationService;
 import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.repository.VisitAttempt;
+import com.shortlinks.util.CodeAllocator;
+import com.shortlinks.util.RandomCodeAllocator;
+import com.shortlinks.util.SequentialCodeAllocator;
+import com.shortlinks.util.ShortCode;
 import com.shortlinks.util.ShortLinkGenerator;
 
 import java.awt.Desktop;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 public class ShortLinkService {
     private final ShortLinkRepository repository;
-    private final ShortLinkGenerator generator;
+    private final CodeAllocator codeAllocator;
     private final Duration ttl;
     private final NotificationService notificationService;
     private final boolean openBrowser;
     private final String shortLinkDomain;
-    private final int shortCodeLength;
+    private final List<LinkChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<VisitListener> visitListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder[] visitOutcomes = visitOutcomeCounters(MetricsRegistry.global());
+    private final LatencyHistogram visitLatency = MetricsRegistry.global().histogram("shortlinks_visit_seconds");
+    private final LatencyHistogram createLatency = MetricsRegistry.global().histogram("shortlinks_create_seconds");
+    private final LongAdder createdLinks = MetricsRegistry.global().counter("shortlinks_links_created_total");
+    private final LongAdder rejectedCreates = MetricsRegistry.global().counter("shortlinks_rate_limited_total",
+            "scope", "create");
+    private final RateLimiter<UUID> createLimiter;
+    private final RateLimiter<InetAddress> visitLimiter;
 
     public ShortLinkService(AppConfig config,
                             ShortLinkRepository repository,
                             ShortLinkGenerator generator,
                             NotificationService notificationService) {
+        this(config, repository, createAllocator(config, repository, generator), notificationService);
+    }
+
+    public ShortLinkService(AppConfig config,
+                            ShortLinkRepository repository,
+                            CodeAllocator codeAllocator,
+                            NotificationService notificationService) {
         this.repository = repository;
-        this.generator = generator;
+        this.codeAllocator = codeAllocator;
         this.notificationService = notificationService;
         this.ttl = config.getDefaultTtl();
         this.openBrowser = config.isOpenBrowserEnabled();
         this.shortLinkDomain = normalizeDomain(config.getShortLinkDomain());
-        this.shortCodeLength = config.getShortCodeLength();
+        this.createLimiter = config.isRateLimitEnabled()
+                ? new RateLimiter<>(config.getCreateRatePerMinute() / 60.0, config.getCreateBurst(),
+                config.getRateLimitMaxKeys())
+                : null;
+        this.visitLimiter = config.isRateLimitEnabled()
+                ? new RateLimiter<>(config.getVisitRatePerSecond(), config.getVisitBurst(), config.getRateLimitMaxKeys())
+                : null;
     }
 
     public ShortLink createShortLink(UUID ownerId, String originalUrl, int maxVisits) {
+        long start = System.nanoTime();
+        try {
+            ShortLink created = doCreateShortLink(ownerId, originalUrl, maxVisits);
+            createdLinks.increment();
+            return created;
+        } finally {
+            createLatency.recordSince(start);
+        }
+    }
+
+    private ShortLink doCreateShortLink(UUID ownerId, String originalUrl, int maxVisits) {
+        checkCreateRate(ownerId);
         repository.findUser(ownerId)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
         validateUrl(originalUrl);
@@ -47,35 +94,181 @@ public class ShortLinkService {
         }
         Instant now = Instant.now();
         Instant expiration = now.plus(ttl);
-        String code = generateUniqueCode();
+        String code = codeAllocator.allocate();
         ShortLink shortLink = new ShortLink(code, ownerId, originalUrl.trim(), maxVisits, 0, now, expiration);
         return repository.save(shortLink);
     }
 
-    public VisitResult visit(String rawCodeOrUrl) {
-        String code = extractCode(rawCodeOrUrl);
-        Optional<ShortLink> optional = repository.findByCode(code);
-        if (optional.isEmpty()) {
-            notificationService.warning("Короткая ссылка не найдена.");
-            return new VisitResult(VisitStatus.NOT_FOUND, "Короткая ссылка не найдена");
+    /**
+     * Пакетное создание: URL и лимиты проверяются параллельно, коды для корректных строк
+     * выдаются одной пачкой, ссылки сохраняются одним {@link ShortLinkRepository#saveAll}.
+     * Ошибка в строке не прерывает пачку — результат возвращается по каждой строке в исходном порядке.
+     * Ограничение частоты списывает по маркеру на каждую корректную строку; строки сверх
+     * оставшихся маркеров получают ошибку, а если маркеров нет совсем, пачка отклоняется целиком.
+     */
+    public List<BulkResult> createShortLinks(UUID ownerId, List<BulkRequest> requests) {
+        String[] errors = new String[requests.size()];
+        IntStream.range(0, requests.size())
+                .parallel()
+                .forEach(i -> errors[i] = validationError(requests.get(i)));
+        int valid = 0;
+        for (String error : errors) {
+            if (error == null) {
+                valid++;
+            }
         }
-        ShortLink link = optional.get();
+        int granted = acquireCreates(ownerId, valid);
+        for (int i = errors.length - 1; i >= 0 && granted < valid; i--) {
+            if (errors[i] == null) {
+                errors[i] = BULK_RATE_LIMITED;
+                valid--;
+            }
+        }
+        repository.findUser(ownerId)
+                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
+        List<String> codes = codeAllocator.allocate(valid);
         Instant now = Instant.now();
-        if (link.isExpired(now)) {
-            repository.delete(code);
-            notificationService.warning("Ссылка истекла и удалена.");
-            return new VisitResult(VisitStatus.EXPIRED, "Срок действия ссылки истёк", link);
+        Instant expiration = now.plus(ttl);
+        List<ShortLink> links = new ArrayList<>(valid);
+        List<BulkResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            BulkRequest request = requests.get(i);
+            if (errors[i] != null) {
+                results.add(BulkResult.failed(request, errors[i]));
+                continue;
+            }
+            ShortLink link = new ShortLink(codes.get(links.size()), ownerId, request.getOriginalUrl().trim(),
+                    request.getMaxVisits(), 0, now, expiration);
+            links.add(link);
+            results.add(BulkResult.created(request, link));
+        }
+        repository.saveAll(links);
+        createdLinks.add(links.size());
+        return results;
+    }
+
+    public VisitResult visit(String rawCodeOrUrl) {
+        VisitResult result = resolve(rawCodeOrUrl);
+        switch (result.getStatus()) {
+            case NOT_FOUND -> notificationService.warning("Короткая ссылка не найдена.");
+            case EXPIRED -> notificationService.warning("Ссылка истекла и удалена.");
+            case LIMIT_REACHED -> notificationService.warning("Достигнут лимит переходов по ссылке.");
+            case RATE_LIMITED -> notificationService.warning("Слишком много переходов, повторите позже.");
+            case SUCCESS -> {
+                notificationService.info("Открываю оригинальный адрес…");
+                openInBrowserIfEnabled(result.getShortLink().orElseThrow().getOriginalUrl());
+            }
         }
-        if (link.isVisitLimitReached()) {
-            notificationService.warning("Достигнут лимит переходов по ссылке.");
-            return new VisitResult(VisitStatus.LIMIT_REACHED, "Лимит переходов исчерпан", link);
+        return result;
+    }
+
+    /**
+     * Засчитывает переход так же, как {@link #visit(String)}, но без уведомлений и браузера:
+     * для HTTP-редиректа, где результат превращается в код ответа.
+     */
+    public VisitResult resolve(String rawCodeOrUrl) {
+        return resolve(rawCodeOrUrl, null);
+    }
+
+    /**
+     * Переход от сетевого клиента: при включённом ограничении частоты лишний запрос получает
+     * {@link VisitStatus#RATE_LIMITED} без обращения к хранилищу. {@code client == null} — без ограничения.
+     */
+    public VisitResult resolve(String rawCodeOrUrl, InetAddress client) {
+        long start = System.nanoTime();
+        VisitResult result = client != null && visitLimiter != null && !visitLimiter.tryAcquire(client)
+                ? new VisitResult(VisitStatus.RATE_LIMITED, "Слишком много запросов")
+                : doResolve(rawCodeOrUrl);
+        visitLatency.recordSince(start);
+        visitOutcomes[result.getStatus().ordinal()].increment();
+        return result;
+    }
+
+    private VisitResult doResolve(String rawCodeOrUrl) {
+        int end = codeEnd(rawCodeOrUrl);
+        int start = codeStart(rawCodeOrUrl, end);
+        long packed = ShortCode.pack(rawCodeOrUrl, start, end);
+        VisitAttempt attempt = packed != ShortCode.INVALID
+                ? repository.tryConsumeVisit(packed, Instant.now())
+                : repository.tryConsumeVisit(rawCodeOrUrl.substring(start, end), Instant.now());
+        ShortLink link = attempt.getShortLink().orElse(null);
+        if (attempt.getOutcome() == VisitAttempt.Outcome.CONSUMED) {
+            fireVisit(link.getCode(), System.currentTimeMillis());
         }
+        return switch (attempt.getOutcome()) {
+            case NOT_FOUND -> new VisitResult(VisitStatus.NOT_FOUND, "Короткая ссылка не найдена");
+            case EXPIRED -> {
+                deleteExpired(link.getCode());
+                yield new VisitResult(VisitStatus.EXPIRED, "Срок действия ссылки истёк", link);
+            }
+            case LIMIT_REACHED -> new VisitResult(VisitStatus.LIMIT_REACHED, "Лимит переходов исчерпан", link);
+            case CONSUMED -> new VisitResult(VisitStatus.SUCCESS, "Успешно", link);
+        };
+    }
 
-        link.setVisitCount(link.getVisitCount() + 1);
-        repository.save(link);
-        notificationService.info("Открываю оригинальный адрес…");
-        openInBrowserIfEnabled(link.getOriginalUrl());
-        return new VisitResult(VisitStatus.SUCCESS, "Успешно", link);
+    /**
+     * Горячий путь редиректа: засчитывает переход по упакованному коду и возвращает только
+     * статус, не создавая объектов при успехе. Истёкшая ссылка удаляется, как в {@link #resolve(String)}.
+     */
+    public VisitStatus resolve(long packedCode) {
+        return resolve(packedCode, null);
+    }
+
+    public VisitStatus resolve(long packedCode, InetAddress client) {
+        long start = System.nanoTime();
+        VisitStatus status = client != null && visitLimiter != null && !visitLimiter.tryAcquire(client)
+                ? VisitStatus.RATE_LIMITED
+                : doResolve(packedCode);
+        visitLatency.recordSince(start);
+        visitOutcomes[status.ordinal()].increment();
+        return status;
+    }
+
+    private VisitStatus doResolve(long packedCode) {
+        long now = System.currentTimeMillis();
+        return switch (repository.consumeVisit(packedCode, now)) {
+            case CONSUMED -> {
+                fireVisit(packedCode, now);
+                yield VisitStatus.SUCCESS;
+            }
+            case NOT_FOUND -> VisitStatus.NOT_FOUND;
+            case LIMIT_REACHED -> VisitStatus.LIMIT_REACHED;
+            case EXPIRED -> {
+                deleteExpired(ShortCode.unpack(packedCode));
+                yield VisitStatus.EXPIRED;
+            }
+        };
+    }
+
+    public Optional<String> findOriginalUrl(String code) {
+        return repository.findByCode(code).map(ShortLink::getOriginalUrl);
+    }
+
+    public void addLinkChangeListener(LinkChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeLinkChangeListener(LinkChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    public void addVisitListener(VisitListener listener) {
+        visitListeners.add(listener);
+    }
+
+    public void removeVisitListener(VisitListener listener) {
+        visitListeners.remove(listener);
+    }
+
+    /**
+     * Ссылка владельца по коду или полному адресу; чужая ссылка — ошибка, как при удалении.
+     */
+    public Optional<ShortLink> findOwnLink(UUID ownerId, String codeInput) {
+        Optional<ShortLink> link = repository.findByCode(extractCode(codeInput));
+        if (link.isPresent() && !link.get().getOwnerId().equals(ownerId)) {
+            throw new IllegalStateException("Можно смотреть только собственные ссылки");
+        }
+        return link;
     }
 
     public boolean deleteShortLink(UUID ownerId, String codeInput) {
@@ -88,7 +281,11 @@ public class ShortLinkService {
         if (!link.getOwnerId().equals(ownerId)) {
             throw new IllegalStateException("Можно удалять только собственные ссылки");
         }
-        return repository.delete(code);
+        boolean deleted = repository.delete(code);
+        if (deleted) {
+            fireLinkChanged(code);
+        }
+        return deleted;
     }
 
     public String toFullShortUrl(String code) {
@@ -99,8 +296,31 @@ public class ShortLinkService {
         return repository.findByOwner(ownerId);
     }
 
+    public List<ShortLink> listLinks(UUID ownerId, String afterCode, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        return repository.findByOwnerAfter(ownerId, afterCode, limit);
+    }
+
+    public int countLinks(UUID ownerId) {
+        return repository.countByOwner(ownerId);
+    }
+
+    /**
+     * Выполняет пакетную работу, откладывая запись хранилища до её конца,
+     * см. {@link ShortLinkRepository#deferPersistence}.
+     */
+    public void deferPersistence(Runnable work) {
+        repository.deferPersistence(work);
+    }
+
     public List<ShortLink> removeExpired() {
-        return repository.deleteExpired(Instant.now());
+        return fireLinksChanged(repository.deleteExpired(Instant.now()));
+    }
+
+    public List<ShortLink> removeExpired(int batchSize) {
+        return fireLinksChanged(repository.deleteExpired(Instant.now(), batchSize));
     }
 
     public ShortLink updateShortLink(UUID ownerId,
@@ -128,35 +348,149 @@ public class ShortLinkService {
         if (refreshTtl) {
             link.setExpiresAt(Instant.now().plus(ttl));
         }
-        return repository.save(link);
+        ShortLink saved = repository.save(link);
+        fireLinkChanged(code);
+        return saved;
+    }
+
+    private void deleteExpired(String code) {
+        repository.delete(code);
+        fireLinkChanged(code);
+    }
+
+    private void fireLinkChanged(String code) {
+        for (LinkChangeListener listener : changeListeners) {
+            listener.onLinkChanged(code);
+        }
+    }
+
+    /**
+     * @return сколько из {@code count} созданий разрешено; если ни одного — исключение
+     */
+    private int acquireCreates(UUID ownerId, int count) {
+        if (createLimiter == null || count == 0) {
+            return count;
+        }
+        int granted = createLimiter.tryAcquire(ownerId, count);
+        if (granted == 0) {
+            rejectedCreates.add(count);
+            throw new RateLimitExceededException("Слишком много запросов на создание ссылок, повторите позже");
+        }
+        rejectedCreates.add(count - granted);
+        return granted;
+    }
+
+    private void checkCreateRate(UUID ownerId) {
+        if (createLimiter != null && !createLimiter.tryAcquire(ownerId)) {
+            rejectedCreates.increment();
+            throw new RateLimitExceededException("Слишком много запросов на создание ссылок, повторите позже");
+        }
+    }
+
+    private void fireVisit(String code, long visitedAtMillis) {
+        if (!visitListeners.isEmpty()) {
+            for (VisitListener listener : visitListeners) {
+                listener.onVisit(code, visitedAtMillis);
+            }
+        }
+    }
+
+    private void fireVisit(long packedCode, long visitedAtMillis) {
+        if (!visitListeners.isEmpty()) {
+            for (VisitListener listener : visitListeners) {
+                listener.onVisit(packedCode, visitedAtMillis);
+            }
+        }
+    }
+
+    private List<ShortLink> fireLinksChanged(List<ShortLink> removed) {
+        if (!changeListeners.isEmpty()) {
+            for (ShortLink link : removed) {
+                fireLinkChanged(link.getCode());
+            }
+        }
+        return removed;
     }
 
     private String extractCode(String raw) {
+        int end = codeEnd(raw);
+        return raw.substring(codeStart(raw, end), end);
+    }
+
+    /**
+     * Конец кода во вводе: после обрезки пробелов и отбрасывания {@code ?query} и {@code #fragment}.
+     * Индексы считаются по исходной строке, чтобы не создавать промежуточных подстрок.
+     */
+    private static int codeEnd(String raw) {
         if (raw == null || raw.isBlank()) {
             throw new IllegalArgumentException("Короткая ссылка не может быть пустой");
         }
-        String trimmed = raw.trim();
-        int queryIndex = trimmed.indexOf('?');
-        if (queryIndex >= 0) {
-            trimmed = trimmed.substring(0, queryIndex);
+        int start = trimmedStart(raw);
+        int end = raw.length();
+        while (end > start && raw.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int codeStart(String raw, int end) {
+        int start = trimmedStart(raw);
+        int slashIndex = raw.lastIndexOf('/', end - 1);
+        if (slashIndex >= start && slashIndex < end - 1) {
+            return slashIndex + 1;
         }
-        int hashIndex = trimmed.indexOf('#');
-        if (hashIndex >= 0) {
-            trimmed = trimmed.substring(0, hashIndex);
+        return start;
+    }
+
+    private static int trimmedStart(String raw) {
+        int start = 0;
+        while (start < raw.length() && raw.charAt(start) <= ' ') {
+            start++;
         }
-        int slashIndex = trimmed.lastIndexOf('/');
-        if (slashIndex >= 0 && slashIndex < trimmed.length() - 1) {
-            return trimmed.substring(slashIndex + 1);
+        return start;
+    }
+
+    private static LongAdder[] visitOutcomeCounters(MetricsRegistry registry) {
+        VisitStatus[] statuses = VisitStatus.values();
+        LongAdder[] counters = new LongAdder[statuses.length];
+        for (VisitStatus status : statuses) {
+            counters[status.ordinal()] = registry.counter("shortlinks_visits_total",
+                    "status", status.name().toLowerCase(Locale.ROOT));
         }
-        return trimmed;
+        return counters;
+    }
+
+    private static CodeAllocator createAllocator(AppConfig config,
+                                                 ShortLinkRepository repository,
+                                                 ShortLinkGenerator generator) {
+        return switch (config.getCodeStrategy()) {
+            case RANDOM -> new RandomCodeAllocator(generator, config.getShortCodeLength(),
+                    code -> repository.findByCode(code).isPresent());
+            case SEQUENTIAL -> new SequentialCodeAllocator(config.getCodeStateFile(),
+                    config.getShortCodeLength(), config.getCodeBlockSize(),
+                    code -> repository.findByCode(code).isPresent());
+        };
     }
 
-    private String generateUniqueCode() {
-        String code;
-        do {
-            code = generator.generate(shortCodeLength);
-        } while (repository.findByCode(code).isPresent());
-        return code;
+    private String validationError(BulkRequest request) {
+        if (request.getOriginalUrl() == null || request.getOriginalUrl().isBlank()) {
+            return "URL не может быть пустым";
+        }
+        if (request.getMaxVisits() <= 0) {
+            return "Лимит переходов должен быть положительным";
+        }
+        try {
+            validateUrl(request.getOriginalUrl());
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
     }
 
     private void validateUrl(String url) {
@@ -197,12 +531,68 @@ public class ShortLinkService {
     }
 
     private static final String DEFAULT_DOMAIN_FALLBACK = "https://lehjke.ru/";
+    private static final String BULK_RATE_LIMITED = "Превышен лимит создания ссылок, повторите позже";
 
     public enum VisitStatus {
         SUCCESS,
         NOT_FOUND,
         EXPIRED,
-        LIMIT_REACHED
+        LIMIT_REACHED,
+        RATE_LIMITED
+    }
+
+    public static class BulkRequest {
+        private final String originalUrl;
+        private final int maxVisits;
+
+        public BulkRequest(String originalUrl, int maxVisits) {
+            this.originalUrl = originalUrl;
+            this.maxVisits = maxVisits;
+        }
+
+        public String getOriginalUrl() {
+            return originalUrl;
+        }
+
+        public int getMaxVisits() {
+            return maxVisits;
+        }
+    }
+
+    public static class BulkResult {
+        private final BulkRequest request;
+        private final ShortLink shortLink;
+        private final String error;
+
+        private BulkResult(BulkRequest request, ShortLink shortLink, String error) {
+            this.request = request;
+            this.shortLink = shortLink;
+            this.error = error;
+        }
+
+        static BulkResult created(BulkRequest request, ShortLink shortLink) {
+            return new BulkResult(request, shortLink, null);
+        }
+
+        static BulkResult failed(BulkRequest request, String error) {
+            return new BulkResult(request, null, error);
+        }
+
+        public BulkRequest getRequest() {
+            return request;
+        }
+
+        public boolean isSuccess() {
+            return shortLink != null;
+        }
+
+        public Optional<ShortLink> getShortLink() {
+            return Optional.ofNullable(shortLink);
+        }
+
+        public Optional<String> getError() {
+            return Optional.ofNullable(error);
+        }
     }
 
     public static class VisitResult {
@@ -28,4 +28,8 @@ public class UserService {
     public List<ShortLink> getUserLinks(UUID userId) {
         return repository.findByOwner(userId);
     }
+
+    public List<ShortLink> getUserLinks(UUID userId, int offset, int limit) {
+        return repository.findByOwner(userId, offset, limit);
+    }
 }
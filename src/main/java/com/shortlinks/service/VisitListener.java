@@ -0,0 +1,18 @@
+package com.shortlinks.service;
+
+import com.shortlinks.util.ShortCode;
+
+/**
+ * Получает засчитанные переходы из {@link ShortLinkService}. Вызывается прямо на пути перехода,
+ * поэтому реализация должна только передать событие дальше, не блокируясь.
+ */
+public interface VisitListener {
+    void onVisit(String code, long visitedAtMillis);
+
+    /**
+     * Переход по коду, упакованному в {@link ShortCode}; горячий путь редиректа вызывает этот вариант.
+     */
+    default void onVisit(long packedCode, long visitedAtMillis) {
+        onVisit(ShortCode.unpack(packedCode), visitedAtMillis);
+    }
+}
@@ -0,0 +1,22 @@
+package com.shortlinks.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Стратегия выдачи новых коротких кодов. Реализация сама отвечает за уникальность кода.
+ */
+public interface CodeAllocator {
+    String allocate();
+
+    /**
+     * Выдаёт {@code count} различных кодов для пакетного создания.
+     */
+    default List<String> allocate(int count) {
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(allocate());
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.shortlinks.util;
+
+import java.util.Locale;
+
+public enum CodeStrategy {
+    RANDOM,
+    SEQUENTIAL;
+
+    public static CodeStrategy parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown code strategy: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.shortlinks.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Фильтр кукушки по коротким кодам: вероятностное множество с удалением. Отрицательный ответ
+ * {@link #mightContain} точен, положительный ложен с вероятностью около {@code falsePositiveRate}.
+ * Удалять можно только то, что было добавлено, иначе фильтр может потерять чужой отпечаток.
+ *
+ * <p>Корзины по 4 отпечатка длиной {@code ceil(log2(8 / falsePositiveRate))} бит (от 4 до 16),
+ * число корзин — степень двойки под {@code expectedCodes} при заполнении 95%. Коды, которые
+ * упаковываются в {@link ShortCode}, хешируются по упакованному значению, поэтому проверка
+ * {@link #mightContain(long)} не выделяет памяти.
+ *
+ * <p>Чтение идёт оптимистично через {@link StampedLock}, изменения — под блокировкой записи.
+ * Если при вставке вытеснения не нашли места, вытесненный отпечаток остаётся в запасной ячейке,
+ * а фильтр считается заполненным: следующие вставки возвращают {@code false}, и владелец
+ * должен перестроить фильтр с большей ёмкостью.
+ */
+public final class CuckooFilter {
+    private static final int MAGIC = 0x434B4F4F;
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double LOAD_FACTOR = 0.95;
+
+    private final StampedLock lock = new StampedLock();
+    private final short[] slots;
+    private final int bucketMask;
+    private final int fingerprintBits;
+    private final int fingerprintMask;
+    private int count;
+    private short victimFingerprint;
+    private int victimBucket;
+
+    public CuckooFilter(long expectedCodes, double falsePositiveRate) {
+        this(bucketsFor(expectedCodes), fingerprintBits(falsePositiveRate));
+    }
+
+    private CuckooFilter(int buckets, int fingerprintBits) {
+        this.slots = new short[buckets * BUCKET_SIZE];
+        this.bucketMask = buckets - 1;
+        this.fingerprintBits = fingerprintBits;
+        this.fingerprintMask = (1 << fingerprintBits) - 1;
+    }
+
+    public static int fingerprintBits(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        int bits = (int) Math.ceil(Math.log(2.0 * BUCKET_SIZE / falsePositiveRate) / Math.log(2));
+        return Math.max(4, Math.min(16, bits));
+    }
+
+    public boolean mightContain(String code) {
+        return mightContainHash(hash(code));
+    }
+
+    /**
+     * Проверка по коду, упакованному в {@link ShortCode}.
+     */
+    public boolean mightContain(long packedCode) {
+        return mightContainHash(mix(packedCode));
+    }
+
+    /**
+     * @return {@code false}, если фильтр заполнен и код не добавлен
+     */
+    public boolean add(String code) {
+        long hash = hash(code);
+        long stamp = lock.writeLock();
+        try {
+            if (victimFingerprint != 0) {
+                return false;
+            }
+            short fingerprint = fingerprint(hash);
+            int first = firstBucket(hash);
+            int second = alternate(first, fingerprint);
+            if (insertInto(first, fingerprint) || insertInto(second, fingerprint)) {
+                count++;
+                return true;
+            }
+            int bucket = ThreadLocalRandom.current().nextBoolean() ? first : second;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = bucket * BUCKET_SIZE + ThreadLocalRandom.current().nextInt(BUCKET_SIZE);
+                short evicted = slots[slot];
+                slots[slot] = fingerprint;
+                fingerprint = evicted;
+                bucket = alternate(bucket, fingerprint);
+                if (insertInto(bucket, fingerprint)) {
+                    count++;
+                    return true;
+                }
+            }
+            victimFingerprint = fingerprint;
+            victimBucket = bucket;
+            count++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean remove(String code) {
+        long hash = hash(code);
+        long stamp = lock.writeLock();
+        try {
+            short fingerprint = fingerprint(hash);
+            int first = firstBucket(hash);
+            int second = alternate(first, fingerprint);
+            if (removeFrom(first, fingerprint) || removeFrom(second, fingerprint)) {
+                count--;
+                if (victimFingerprint != 0) {
+                    short victim = victimFingerprint;
+                    victimFingerprint = 0;
+                    count--;
+                    reinsertVictim(victim, victimBucket);
+                }
+                return true;
+            }
+            if (victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second)) {
+                victimFingerprint = 0;
+                count--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public int getFingerprintBits() {
+        return fingerprintBits;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(fingerprintBits);
+            out.writeInt(bucketMask + 1);
+            out.writeInt(count);
+            out.writeShort(victimFingerprint);
+            out.writeInt(victimBucket);
+            for (short slot : slots) {
+                out.writeShort(slot);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public static CuckooFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a cuckoo filter file");
+        }
+        int bits = in.readInt();
+        int buckets = in.readInt();
+        if (bits < 4 || bits > 16 || buckets <= 0 || Integer.bitCount(buckets) != 1) {
+            throw new IOException("Corrupted cuckoo filter header");
+        }
+        CuckooFilter filter = new CuckooFilter(buckets, bits);
+        filter.count = in.readInt();
+        filter.victimFingerprint = in.readShort();
+        filter.victimBucket = in.readInt();
+        for (int i = 0; i < filter.slots.length; i++) {
+            filter.slots[i] = in.readShort();
+        }
+        return filter;
+    }
+
+    private boolean mightContainHash(long hash) {
+        short fingerprint = fingerprint(hash);
+        int first = firstBucket(hash);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            boolean found = contains(first, fingerprint);
+            if (lock.validate(stamp)) {
+                return found;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return contains(first, fingerprint);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private boolean contains(int first, short fingerprint) {
+        int second = alternate(first, fingerprint);
+        return bucketContains(first, fingerprint)
+                || bucketContains(second, fingerprint)
+                || (victimFingerprint == fingerprint && (victimBucket == first || victimBucket == second));
+    }
+
+    private boolean bucketContains(int bucket, short fingerprint) {
+        int base = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (slots[base + i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean insertInto(int bucket, short fingerprint) {
+        int base = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (slots[base + i] == 0) {
+                slots[base + i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFrom(int bucket, short fingerprint) {
+        int base = bucket * BUCKET_SIZE;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            if (slots[base + i] == fingerprint) {
+                slots[base + i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * После удаления в одной из корзин запасного отпечатка освободилось место — пробуем вернуть его.
+     */
+    private void reinsertVictim(short fingerprint, int bucket) {
+        if (insertInto(bucket, fingerprint) || insertInto(alternate(bucket, fingerprint), fingerprint)) {
+            count++;
+        } else {
+            victimFingerprint = fingerprint;
+            victimBucket = bucket;
+            count++;
+        }
+    }
+
+    private short fingerprint(long hash) {
+        int fingerprint = (int) (hash >>> 40) & fingerprintMask;
+        return (short) (fingerprint == 0 ? 1 : fingerprint);
+    }
+
+    private int firstBucket(long hash) {
+        return (int) hash & bucketMask;
+    }
+
+    private int alternate(int bucket, short fingerprint) {
+        return (bucket ^ (fingerprint & 0xFFFF) * 0x5BD1E995) & bucketMask;
+    }
+
+    private static long hash(String code) {
+        long packed = ShortCode.pack(code);
+        if (packed != ShortCode.INVALID) {
+            return mix(packed);
+        }
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            hash = (hash ^ code.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static int bucketsFor(long expectedCodes) {
+        long needed = (long) Math.ceil(Math.max(1, expectedCodes) / (BUCKET_SIZE * LOAD_FACTOR));
+        if (needed > (1 << 28)) {
+            throw new IllegalArgumentException("Too many codes for a cuckoo filter: " + expectedCodes);
+        }
+        return Integer.highestOneBit((int) Math.max(2, needed) - 1) << 1;
+    }
+}
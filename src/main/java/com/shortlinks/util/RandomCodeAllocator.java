@@ -0,0 +1,49 @@
+package com.shortlinks.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Случайный код с повторной попыткой, пока {@code taken} сообщает о коллизии.
+ * Число попыток растёт по мере заполнения пространства кодов.
+ */
+public class RandomCodeAllocator implements CodeAllocator {
+    private final ShortLinkGenerator generator;
+    private final int length;
+    private final Predicate<String> taken;
+
+    public RandomCodeAllocator(ShortLinkGenerator generator, int length, Predicate<String> taken) {
+        this.generator = generator;
+        this.length = length;
+        this.taken = taken;
+    }
+
+    @Override
+    public String allocate() {
+        String code;
+        do {
+            code = generator.generate(length);
+        } while (taken.test(code));
+        return code;
+    }
+
+    /**
+     * Коды пачки ещё не сохранены, поэтому кроме {@code taken} проверяются и друг против друга.
+     */
+    @Override
+    public List<String> allocate(int count) {
+        Set<String> issued = new HashSet<>(count * 2);
+        List<String> codes = new ArrayList<>(count);
+        while (codes.size() < count) {
+            String code = generator.generate(length);
+            if (!issued.contains(code) && !taken.test(code)) {
+                issued.add(code);
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,202 @@
+package com.shortlinks.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Predicate;
+
+/**
+ * Коды без повторных попыток: каждый поток берёт из общего счётчика блок номеров и выдаёт их
+ * без синхронизации, а номер перед кодированием в base62 переставляется секретной сетью Фейстеля
+ * по всему пространству {@code 62^length}. Соседние номера дают несвязанные на вид коды,
+ * а биективность перестановки гарантирует уникальность.
+ *
+ * <p>Граница выданных блоков сохраняется в файл состояния до начала выдачи блока, поэтому
+ * после перезапуска коды не повторяются; неизрасходованный остаток блока теряется.
+ * Перестановка уникальна только среди кодов этого распределителя: коды, созданные стратегией
+ * {@code random}, импортом или до потери файла состояния, могут совпасть с выдаваемыми. Поэтому
+ * каждый код проверяется через {@code taken}, и занятый номер пропускается.
+ */
+public class SequentialCodeAllocator implements CodeAllocator {
+    private static final int ROUNDS = 4;
+    private static final String KEY_PROPERTY = "key";
+    private static final String NEXT_PROPERTY = "next";
+
+    private final Path stateFile;
+    private final int length;
+    private final int blockSize;
+    private final long capacity;
+    private final int halfBits;
+    private final long halfMask;
+    private final Predicate<String> taken;
+    private final long[] roundKeys = new long[ROUNDS];
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+    private long key;
+    private long reserved;
+
+    public SequentialCodeAllocator(Path stateFile, int length, int blockSize) {
+        this(stateFile, length, blockSize, code -> false);
+    }
+
+    public SequentialCodeAllocator(Path stateFile, int length, int blockSize, Predicate<String> taken) {
+        if (length <= 0 || length > ShortCode.MAX_LENGTH) {
+            throw new IllegalArgumentException("Sequential codes support lengths 1.." + ShortCode.MAX_LENGTH);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.stateFile = stateFile;
+        this.length = length;
+        this.blockSize = blockSize;
+        this.taken = taken;
+        long space = 1;
+        for (int i = 0; i < length; i++) {
+            space *= ShortLinkGenerator.ALPHABET.length;
+        }
+        this.capacity = space;
+        int bits = 64 - Long.numberOfLeadingZeros(space - 1);
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1L << halfBits) - 1;
+        loadState();
+        for (int round = 0; round < ROUNDS; round++) {
+            roundKeys[round] = mix(key + round * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    @Override
+    public String allocate() {
+        long[] block = blocks.get();
+        while (true) {
+            if (block[0] == block[1]) {
+                block[0] = reserve(blockSize, false);
+                block[1] = Math.min(capacity, block[0] + blockSize);
+            }
+            String code = encode(permute(block[0]++));
+            if (!taken.test(code)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Пачка берёт из общего счётчика собственный непрерывный диапазон: одна синхронизация
+     * и одна запись файла состояния на всю пачку. Вместо занятых кодов дозапрашивается
+     * диапазон на их число.
+     */
+    @Override
+    public List<String> allocate(int count) {
+        List<String> codes = new ArrayList<>(count);
+        while (codes.size() < count) {
+            int missing = count - codes.size();
+            long start = reserve(missing, true);
+            for (long index = start; index < start + missing; index++) {
+                String code = encode(permute(index));
+                if (!taken.test(code)) {
+                    codes.add(code);
+                }
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Биекция на {@code [0, capacity)}: сеть Фейстеля на ближайшей чётной степени двойки
+     * и «проход по циклу», пока значение не попадёт в диапазон.
+     */
+    long permute(long index) {
+        long value = index;
+        do {
+            value = feistel(value);
+        } while (value >= capacity);
+        return value;
+    }
+
+    private long feistel(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private String encode(long value) {
+        char[] chars = new char[length];
+        int radix = ShortLinkGenerator.ALPHABET.length;
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = ShortLinkGenerator.ALPHABET[(int) (value % radix)];
+            value /= radix;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Резервирует диапазон номеров и возвращает его начало; {@code exact} требует ровно
+     * {@code size} номеров, иначе допускается укороченный последний блок.
+     */
+    private synchronized long reserve(int size, boolean exact) {
+        if (reserved >= capacity || exact && capacity - reserved < size) {
+            throw new IllegalStateException("Пространство коротких кодов длины " + length + " исчерпано");
+        }
+        long start = reserved;
+        reserved = Math.min(capacity, start + size);
+        saveState();
+        return start;
+    }
+
+    private void loadState() {
+        if (!Files.exists(stateFile)) {
+            key = new SecureRandom().nextLong();
+            reserved = 0;
+            saveState();
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read code allocator state " + stateFile, e);
+        }
+        key = Long.parseUnsignedLong(properties.getProperty(KEY_PROPERTY), 16);
+        reserved = Long.parseLong(properties.getProperty(NEXT_PROPERTY));
+    }
+
+    private void saveState() {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_PROPERTY, Long.toHexString(key));
+        properties.setProperty(NEXT_PROPERTY, Long.toString(reserved));
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            Path parent = stateFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "short code allocator");
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to persist code allocator state " + stateFile, e);
+        }
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
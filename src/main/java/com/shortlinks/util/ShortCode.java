@@ -0,0 +1,152 @@
+package com.shortlinks.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Короткий код, упакованный в {@code long} биективной base62-нумерацией: у каждой строки
+ * из алфавита {@link ShortLinkGenerator} длиной до {@value #MAX_LENGTH} символов ровно одно
+ * положительное значение, поэтому {@code "0"} и {@code "00"} различаются.
+ * {@link #pack(CharSequence, int, int)} и {@link #pack(ByteBuffer, int, int)} не выделяют памяти
+ * и годятся для горячего пути.
+ */
+public final class ShortCode {
+    public static final int MAX_LENGTH = 10;
+    /**
+     * Признак строки, которую нельзя упаковать: пустой, длиннее {@value #MAX_LENGTH}
+     * или с символом вне алфавита.
+     */
+    public static final long INVALID = -1L;
+
+    private static final int RADIX = 62;
+    private static final char[] ALPHABET = ShortLinkGenerator.ALPHABET;
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DIGITS[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private final long value;
+
+    private ShortCode(long value) {
+        this.value = value;
+    }
+
+    public static ShortCode of(String code) {
+        long value = pack(code);
+        if (value == INVALID) {
+            throw new IllegalArgumentException("Not a base62 short code: " + code);
+        }
+        return new ShortCode(value);
+    }
+
+    public static ShortCode fromLong(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Packed short code must be positive: " + value);
+        }
+        return new ShortCode(value);
+    }
+
+    public static long pack(CharSequence code) {
+        return pack(code, 0, code.length());
+    }
+
+    /**
+     * Упаковывает {@code code[from, to)} без создания подстроки.
+     *
+     * @return упакованный код или {@link #INVALID}
+     */
+    public static long pack(CharSequence code, int from, int to) {
+        int length = to - from;
+        if (length <= 0 || length > MAX_LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = code.charAt(i);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value * RADIX + digit + 1;
+        }
+        return value;
+    }
+
+    /**
+     * Упаковывает ASCII-байты {@code buffer[from, to)} (абсолютные индексы, позиция буфера
+     * не меняется) — для разбора HTTP-запроса прямо из буфера сокета.
+     *
+     * @return упакованный код или {@link #INVALID}
+     */
+    public static long pack(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (length <= 0 || length > MAX_LENGTH) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            int digit = b >= 0 ? DIGITS[b] : -1;
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = value * RADIX + digit + 1;
+        }
+        return value;
+    }
+
+    public static String unpack(long value) {
+        char[] chars = new char[MAX_LENGTH];
+        int position = unpack(value, chars);
+        return new String(chars, position, MAX_LENGTH - position);
+    }
+
+    /**
+     * Раскладывает код в конец {@code target} длиной не меньше {@value #MAX_LENGTH}.
+     *
+     * @return индекс первого символа кода в {@code target}
+     */
+    public static int unpack(long value, char[] target) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Packed short code must be positive: " + value);
+        }
+        int position = target.length;
+        while (value > 0) {
+            value--;
+            target[--position] = ALPHABET[(int) (value % RADIX)];
+            value /= RADIX;
+        }
+        return position;
+    }
+
+    public long toLong() {
+        return value;
+    }
+
+    public int length() {
+        int length = 0;
+        for (long rest = value; rest > 0; rest = (rest - 1) / RADIX) {
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ShortCode other && other.value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return unpack(value);
+    }
+}
@@ -3,7 +3,7 @@ package com.shortlinks.util;
 import java.security.SecureRandom;
 
 public class ShortLinkGenerator {
-    private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+    static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
             .toCharArray();
     private final SecureRandom random = new SecureRandom();
 
@@ -0,0 +1,89 @@
+package com.shortlinks.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitAnalyticsTest {
+    private static final Instant NOW = Instant.parse("2026-03-01T12:30:20Z");
+
+    @Test
+    void shouldAggregateVisitsPerLinkAndOwner() throws InterruptedException {
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        Map<String, UUID> owners = Map.of("abc", alice, "xyz", alice, "q-1", bob);
+        AtomicInteger lookups = new AtomicInteger();
+        try (VisitAnalytics analytics = new VisitAnalytics(code -> {
+            lookups.incrementAndGet();
+            return Optional.ofNullable(owners.get(code));
+        }, 1_024, 48)) {
+            Thread[] visitors = new Thread[4];
+            for (int t = 0; t < visitors.length; t++) {
+                visitors[t] = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        analytics.onVisit("abc", NOW.toEpochMilli());
+                    }
+                });
+                visitors[t].start();
+            }
+            for (Thread visitor : visitors) {
+                visitor.join();
+            }
+            analytics.onVisit("xyz", NOW.minus(Duration.ofMinutes(2)).toEpochMilli());
+            analytics.onVisit("q-1", NOW.toEpochMilli());
+            analytics.onVisit("xyz", NOW.minus(Duration.ofHours(3)).toEpochMilli());
+            analytics.flush();
+
+            assertEquals(403, analytics.getProcessedCount());
+            assertEquals(0, analytics.getDroppedCount());
+            assertEquals(3, lookups.get());
+
+            long[] minutes = analytics.ownerMinutes(alice, NOW, 5);
+            assertArrayEquals(new long[]{0, 0, 1, 0, 400}, minutes);
+            long[] hours = analytics.ownerHours(alice, NOW, 4);
+            assertArrayEquals(new long[]{1, 0, 0, 401}, hours);
+            assertEquals(402, analytics.ownerTotal(alice));
+            assertArrayEquals(new long[]{0, 1}, analytics.linkMinutes("q-1", NOW, 2));
+            assertArrayEquals(new long[]{0, 0, 0}, analytics.linkMinutes("unknown", NOW, 3));
+            assertThrows(IllegalArgumentException.class, () -> analytics.linkHours("abc", NOW, 49));
+
+            analytics.sweep(NOW.toEpochMilli() / 60_000 + 1);
+            assertArrayEquals(new long[]{0, 0, 0, 0, 0}, analytics.ownerMinutes(alice, NOW, 5));
+            assertEquals(402, analytics.ownerTotal(alice));
+        }
+    }
+
+    @Test
+    void oldMinutesShouldRollUpIntoHoursAndThenIntoTotal() {
+        VisitSeries series = new VisitSeries(3);
+        long start = NOW.toEpochMilli() / 60_000;
+        series.add(start, 5);
+        series.add(start + 1, 2);
+        series.add(start + 90, 1);
+
+        long[] minutes = new long[60];
+        series.addMinutes(minutes, start + 90);
+        assertEquals(1, minutes[59]);
+        assertEquals(1, Arrays.stream(minutes).sum());
+
+        long hour = (start + 90) / 60;
+        long[] hours = new long[3];
+        series.addHours(hours, hour);
+        assertArrayEquals(new long[]{7, 0, 1}, hours);
+
+        series.add(start + 60 * 5, 1);
+        long[] later = new long[3];
+        series.addHours(later, (start + 60 * 5) / 60);
+        assertArrayEquals(new long[]{0, 0, 1}, later);
+        assertEquals(8, series.older());
+        assertEquals(9, series.total());
+    }
+}
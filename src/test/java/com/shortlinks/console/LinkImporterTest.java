@@ -0,0 +1,114 @@
+package com.shortlinks.console;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.notification.NotificationService;
+import com.shortlinks.repository.FileShortLinkRepository;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.service.UserService;
+import com.shortlinks.util.ShortLinkGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkImporterTest {
+    private Path tempFile;
+    private FileShortLinkRepository repository;
+    private ShortLinkService shortLinkService;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("shortlinks-import", ".json");
+        Files.deleteIfExists(tempFile);
+        System.setProperty("app.storage-file", tempFile.toString());
+        System.setProperty("app.open-browser", "false");
+        AppConfig config = new AppConfig();
+        repository = new FileShortLinkRepository(config.getStorageFile());
+        userService = new UserService(repository);
+        shortLinkService = new ShortLinkService(config, repository, new ShortLinkGenerator(), new SilentNotification());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileShortLinkRepository.deleteFiles(tempFile);
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.open-browser");
+    }
+
+    @Test
+    void shouldImportInChunksAndReportEveryLine() throws IOException {
+        UserAccount user = userService.registerNewUser();
+        String source = String.join("\n",
+                "# кампания",
+                "https://example.com/a",
+                "https://example.com/b;7",
+                "",
+                "https://example.com/c?x=1;y=2",
+                "ftp-without-host",
+                "https://example.com/d;0");
+        StringWriter report = new StringWriter();
+
+        LinkImporter.Summary summary = new LinkImporter(shortLinkService, 2)
+                .importLinks(user.getId(), new BufferedReader(new StringReader(source)), report, 5);
+
+        assertEquals(3, summary.getCreated());
+        assertEquals(2, summary.getFailed());
+        String[] lines = report.toString().split(System.lineSeparator());
+        assertEquals(5, lines.length);
+        assertTrue(lines[0].startsWith("2;ok;"), lines[0]);
+        assertTrue(lines[3].startsWith("6;error;"), lines[3]);
+        assertTrue(lines[4].startsWith("7;error;"), lines[4]);
+        assertEquals(3, repository.countByOwner(user.getId()));
+        assertTrue(repository.findAll().stream().anyMatch(link ->
+                link.getOriginalUrl().equals("https://example.com/b") && link.getMaxVisits() == 7));
+        assertTrue(repository.findAll().stream().anyMatch(link ->
+                link.getOriginalUrl().equals("https://example.com/c?x=1;y=2") && link.getMaxVisits() == 5));
+    }
+
+    @Test
+    void fileEngineShouldBeRewrittenOncePerCheckpoint() throws IOException {
+        UserAccount user = userService.registerNewUser();
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            source.append("https://example.com/page").append(i % 10).append('\n');
+        }
+        LatencyHistogram rewrites = MetricsRegistry.global()
+                .histogram("shortlinks_persist_seconds", "file", tempFile.toString());
+        long rewritesBefore = rewrites.snapshot().getCount();
+
+        LinkImporter.Summary summary = new LinkImporter(shortLinkService, 3, source.length() / 2)
+                .importLinks(user.getId(), new BufferedReader(new StringReader(source.toString())),
+                        new StringWriter(), 5);
+
+        // две контрольные точки вместо записи на каждую из 14 порций
+        assertEquals(2, rewrites.snapshot().getCount() - rewritesBefore);
+        assertEquals(40, summary.getCreated());
+        assertEquals(40, new FileShortLinkRepository(tempFile).countByOwner(user.getId()));
+    }
+
+    private static class SilentNotification implements NotificationService {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    }
+}
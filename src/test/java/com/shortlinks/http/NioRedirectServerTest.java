@@ -0,0 +1,186 @@
+package com.shortlinks.http;
+
+import com.shortlinks.App;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import com.shortlinks.notification.NotificationService;
+import com.shortlinks.repository.FileShortLinkRepository;
+import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.repository.WriteBehindShortLinkRepository;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.service.UserService;
+import com.shortlinks.util.ShortLinkGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioRedirectServerTest {
+    private Path tempFile;
+    private ShortLinkRepository repository;
+    private ShortLinkService shortLinkService;
+    private UserService userService;
+    private NioRedirectServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("shortlinks-nio", ".json");
+        Files.deleteIfExists(tempFile);
+        System.setProperty("app.storage-file", tempFile.toString());
+        System.setProperty("app.open-browser", "false");
+        System.setProperty("app.visits.flush-interval-ms", "3600000");
+        AppConfig config = new AppConfig();
+        repository = App.createRepository(config);
+        userService = new UserService(repository);
+        shortLinkService = new ShortLinkService(config, repository, new ShortLinkGenerator(), new SilentNotification());
+        server = new NioRedirectServer(shortLinkService, "127.0.0.1", 0, 64, 1024, 16);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        repository.close();
+        FileShortLinkRepository.deleteFiles(tempFile);
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.open-browser");
+        System.clearProperty("app.visits.flush-interval-ms");
+    }
+
+    @Test
+    void shouldAnswerPipelinedRequestsOnOneConnection() throws IOException {
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/a", 2);
+        String request = "GET /" + link.getCode() + "?utm=1 HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            send(socket, request + request + request + "GET /missing1 HTTP/1.1\r\nConnection: close\r\n\r\n");
+            String responses = readUntilClosed(socket);
+
+            assertEquals(2, count(responses, "HTTP/1.1 302 Found\r\nLocation: https://example.com/a\r\n"));
+            assertEquals(1, count(responses, "HTTP/1.1 410 Gone"));
+            assertTrue(responses.contains("HTTP/1.1 404 Not Found"), responses);
+            assertTrue(responses.contains("Connection: close"), responses);
+        }
+    }
+
+    @Test
+    void shouldDropCachedResponseWhenLinkChanges() throws IOException {
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/b", 1);
+        String request = "GET /" + link.getCode() + " HTTP/1.1\r\n\r\n";
+
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            send(socket, request);
+            assertTrue(readResponse(socket).startsWith("HTTP/1.1 302"));
+            send(socket, request);
+            assertTrue(readResponse(socket).startsWith("HTTP/1.1 410"));
+
+            shortLinkService.updateShortLink(user.getId(), link.getCode(), 2, false);
+            send(socket, request);
+            assertTrue(readResponse(socket).startsWith("HTTP/1.1 302"));
+
+            shortLinkService.deleteShortLink(user.getId(), link.getCode());
+            send(socket, request);
+            assertTrue(readResponse(socket).startsWith("HTTP/1.1 404"));
+        }
+    }
+
+    @Test
+    void defaultDecoratorStackShouldCountHitsOnTheAllocationFreePath() throws Exception {
+        assertInstanceOf(WriteBehindShortLinkRepository.class, repository);
+        assertEquals(WriteBehindShortLinkRepository.class,
+                repository.getClass().getMethod("consumeVisit", long.class, long.class).getDeclaringClass());
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/c", 3);
+        String request = "GET /" + link.getCode() + " HTTP/1.1\r\n\r\n";
+
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            for (int i = 0; i < 3; i++) {
+                send(socket, request);
+                assertTrue(readResponse(socket).startsWith("HTTP/1.1 302"));
+            }
+        }
+
+        WriteBehindShortLinkRepository writeBehind = (WriteBehindShortLinkRepository) repository;
+        assertEquals(3, writeBehind.getUnflushedVisits());
+        writeBehind.flushVisits();
+        assertEquals(3, new FileShortLinkRepository(tempFile).findByCode(link.getCode()).orElseThrow().getVisitCount());
+    }
+
+    @Test
+    void shouldRejectUnsupportedRequests() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            send(socket, "POST /abc HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+            String response = readUntilClosed(socket);
+            assertTrue(response.startsWith("HTTP/1.1 405"), response);
+            assertTrue(response.contains("Allow: GET, HEAD"), response);
+        }
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            send(socket, "GET /" + "a".repeat(2_000) + " HTTP/1.1\r\n\r\n");
+            assertTrue(readUntilClosed(socket).startsWith("HTTP/1.1 400"));
+        }
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Читает один ответ: заголовки до пустой строки и тело длиной {@code Content-Length}.
+     */
+    private static String readResponse(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        while (!buffer.toString(StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertNotEquals(-1, b);
+            buffer.write(b);
+        }
+        String head = buffer.toString(StandardCharsets.UTF_8);
+        int lengthStart = head.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int length = Integer.parseInt(head.substring(lengthStart, head.indexOf('\r', lengthStart)));
+        byte[] body = in.readNBytes(length);
+        return head + new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static String readUntilClosed(Socket socket) throws IOException {
+        socket.setSoTimeout(5_000);
+        return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static int count(String text, String fragment) {
+        int count = 0;
+        for (int i = text.indexOf(fragment); i >= 0; i = text.indexOf(fragment, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static class SilentNotification implements NotificationService {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.shortlinks.http;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.notification.NotificationService;
+import com.shortlinks.repository.FileShortLinkRepository;
+import com.shortlinks.service.ShortLinkService;
+import com.shortlinks.service.UserService;
+import com.shortlinks.util.ShortLinkGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectHttpServerTest {
+    private Path tempFile;
+    private ShortLinkService shortLinkService;
+    private UserService userService;
+    private RedirectHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("shortlinks-http", ".json");
+        Files.deleteIfExists(tempFile);
+        System.setProperty("app.storage-file", tempFile.toString());
+        System.setProperty("app.open-browser", "false");
+        AppConfig config = new AppConfig();
+        FileShortLinkRepository repository = new FileShortLinkRepository(config.getStorageFile());
+        userService = new UserService(repository);
+        shortLinkService = new ShortLinkService(config,
+                repository,
+                new ShortLinkGenerator(),
+                new SilentNotification());
+        server = new RedirectHttpServer(shortLinkService, "127.0.0.1", 0, 64, true, 4);
+        server.start();
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+        FileShortLinkRepository.deleteFiles(tempFile);
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.open-browser");
+    }
+
+    @Test
+    void shouldRedirectUntilLimitIsReached() throws Exception {
+        ShortLink link = shortLinkService.createShortLink(userService.registerNewUser().getId(), "https://example.com/page", 2);
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = get("/" + link.getCode());
+            assertEquals(302, response.statusCode());
+            assertEquals("https://example.com/page", response.headers().firstValue("Location").orElseThrow());
+        }
+        assertEquals(410, get("/" + link.getCode()).statusCode());
+    }
+
+    @Test
+    void shouldAnswerNotFoundForUnknownOrMalformedPaths() throws Exception {
+        assertEquals(404, get("/unknown1").statusCode());
+        assertEquals(404, get("/").statusCode());
+        assertEquals(404, get("/a/b").statusCode());
+    }
+
+    @Test
+    void shouldRejectNonGetMethods() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/abc"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(405, response.statusCode());
+        assertEquals("GET", response.headers().firstValue("Allow").orElseThrow());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    private static class SilentNotification implements NotificationService {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.shortlinks.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsShouldCoverRangeWithBoundedRelativeError() {
+        for (long value = 0; value < 100_000; value += 7) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+            assertTrue(LatencyHistogram.upperBound(bucket) - value <= value / 16, "value " + value);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE));
+        assertEquals(LatencyHistogram.MAX_VALUE,
+                LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void quantilesShouldTrackRecordedValues() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (long micros = 1; micros <= 1_000; micros++) {
+                    histogram.record(micros * 1_000);
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4_001, snapshot.getCount());
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+        long median = snapshot.getValueAtQuantile(0.5);
+        assertTrue(median >= 500_000 && median <= 500_000 * 17 / 16, "median " + median);
+        long p99 = snapshot.getValueAtQuantile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 17 / 16, "p99 " + p99);
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getValueAtQuantile(1.0));
+    }
+}
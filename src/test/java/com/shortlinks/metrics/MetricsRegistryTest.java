@@ -0,0 +1,36 @@
+package com.shortlinks.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void prometheusTextShouldDeclareEachFamilyOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("visits_total", "status", "success").add(3);
+        registry.counter("visits_total", "status", "not_found").increment();
+        assertSame(registry.counter("visits_total", "status", "success"),
+                registry.counter("visits_total", "status", "success"));
+        registry.gauge("store_bytes").set(42);
+        registry.histogram("lock_wait_seconds", "mode", "read").record(2_000_000);
+        registry.histogram("lock_wait_seconds", "mode", "write").record(0);
+
+        String text = registry.toPrometheusText();
+        List<String> lines = text.lines().toList();
+
+        assertEquals(1, lines.stream().filter(line -> line.equals("# TYPE visits_total counter")).count());
+        assertTrue(lines.contains("visits_total{status=\"success\"} 3"));
+        assertTrue(lines.contains("visits_total{status=\"not_found\"} 1"));
+        assertTrue(lines.contains("store_bytes 42"));
+        assertEquals(1, lines.stream().filter(line -> line.equals("# TYPE lock_wait_seconds summary")).count());
+        assertTrue(lines.contains("lock_wait_seconds{mode=\"read\",quantile=\"0.5\"} 0.002"));
+        assertTrue(lines.contains("lock_wait_seconds_count{mode=\"write\"} 1"));
+        assertTrue(lines.contains("lock_wait_seconds_max{mode=\"read\"} 0.002"));
+        assertTrue(registry.toSummaryText().contains("lock_wait_seconds{mode=\"read\"}: n=1"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("broken", "label"));
+    }
+}
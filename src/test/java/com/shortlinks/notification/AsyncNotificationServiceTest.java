@@ -0,0 +1,85 @@
+package com.shortlinks.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncNotificationServiceTest {
+
+    @Test
+    void shouldWriteAllNotificationsInOrderAndSeparateErrors() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        try (AsyncNotificationService service = new AsyncNotificationService(
+                print(out), print(err), 4_096, OverflowPolicy.BLOCK, 1)) {
+            for (int i = 0; i < 1_000; i++) {
+                service.info("message " + i);
+            }
+            service.error("broken");
+            service.flush();
+
+            List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+            assertEquals(1_000, lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                assertEquals("[INFO] message " + i, lines.get(i));
+            }
+            assertEquals("[ERROR] broken", err.toString(StandardCharsets.UTF_8).strip());
+            assertEquals(1_001, service.getWrittenCount());
+            assertEquals(0, service.getQueuedCount());
+        }
+    }
+
+    @Test
+    void blockPolicyShouldNotLoseNotificationsFromConcurrentProducers() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncNotificationService service = new AsyncNotificationService(
+                print(out), print(new ByteArrayOutputStream()), 8, OverflowPolicy.BLOCK, 1);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int producer = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    service.info(producer + ":" + i);
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        service.close();
+
+        assertEquals(0, service.getDroppedCount());
+        assertEquals(8_000, service.getWrittenCount());
+        assertEquals(8_000, out.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void dropPolicyShouldCountEveryNotificationItDiscards() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        AsyncNotificationService service = new AsyncNotificationService(
+                print(out), print(err), 2, OverflowPolicy.DROP, 1);
+        for (int i = 0; i < 20_000; i++) {
+            service.info("burst " + i);
+        }
+        service.close();
+
+        assertEquals(20_000, service.getWrittenCount() + service.getDroppedCount());
+        assertEquals(service.getWrittenCount(), out.toString(StandardCharsets.UTF_8).lines().count());
+        if (service.getDroppedCount() > 0) {
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("Пропущено уведомлений"));
+        }
+    }
+
+    private static PrintStream print(ByteArrayOutputStream buffer) {
+        return new PrintStream(buffer, true, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.model.ShortLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingShortLinkRepositoryTest {
+    private Path storageFile;
+    private AtomicInteger lookups;
+    private FileShortLinkRepository backing;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storageFile = Files.createTempFile("shortlinks-cache", ".json");
+        Files.deleteIfExists(storageFile);
+        lookups = new AtomicInteger();
+        backing = new FileShortLinkRepository(storageFile) {
+            @Override
+            public Optional<ShortLink> findByCode(String code) {
+                lookups.incrementAndGet();
+                return super.findByCode(code);
+            }
+
+            @Override
+            public VisitAttempt tryConsumeVisit(String code, Instant now) {
+                lookups.incrementAndGet();
+                return super.tryConsumeVisit(code, now);
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        StoreFile.deleteAll(storageFile);
+    }
+
+    @Test
+    void unknownAndDeadCodesShouldBeAnsweredFromCache() {
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(backing, 1_000);
+        Instant now = Instant.now();
+        backing.save(link("dead", 1, now.plus(Duration.ofHours(1))));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(VisitAttempt.Outcome.NOT_FOUND, cache.tryConsumeVisit("missing", now).getOutcome());
+        }
+        assertEquals(VisitAttempt.Outcome.CONSUMED, cache.tryConsumeVisit("dead", now).getOutcome());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(VisitAttempt.Outcome.LIMIT_REACHED, cache.tryConsumeVisit("dead", now).getOutcome());
+        }
+
+        assertEquals(2, lookups.get());
+        assertEquals(4, cache.getNegativeHitCount());
+        assertEquals(9, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void mutationsShouldInvalidateEntries() {
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(backing, 1_000);
+        Instant now = Instant.now();
+        assertTrue(cache.findByCode("fresh").isEmpty());
+        cache.save(link("fresh", 1, now.plus(Duration.ofHours(1))));
+        assertEquals(VisitAttempt.Outcome.CONSUMED, cache.tryConsumeVisit("fresh", now).getOutcome());
+        assertEquals(VisitAttempt.Outcome.LIMIT_REACHED, cache.tryConsumeVisit("fresh", now).getOutcome());
+
+        ShortLink raised = cache.findByCode("fresh").orElseThrow();
+        raised.setMaxVisits(5);
+        cache.save(raised);
+        assertEquals(VisitAttempt.Outcome.CONSUMED, cache.tryConsumeVisit("fresh", now).getOutcome());
+
+        cache.delete("fresh");
+        assertEquals(VisitAttempt.Outcome.NOT_FOUND, cache.tryConsumeVisit("fresh", now).getOutcome());
+
+        cache.save(link("short", 5, now.plusMillis(10)));
+        assertEquals(VisitAttempt.Outcome.CONSUMED, cache.tryConsumeVisit("short", now).getOutcome());
+        assertEquals(1, cache.deleteExpired(now.plusSeconds(1)).size());
+        assertTrue(cache.findByCode("short").isEmpty());
+    }
+
+    @Test
+    void scanOfUnknownCodesShouldNotEvictHotLinks() {
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(backing, 320);
+        Instant now = Instant.now();
+        for (int i = 0; i < 20; i++) {
+            backing.save(link("hot" + i, 1_000, now.plus(Duration.ofHours(1))));
+            cache.findByCode("hot" + i);
+            cache.findByCode("hot" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            cache.tryConsumeVisit("bot" + i, now);
+        }
+
+        int before = lookups.get();
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cache.findByCode("hot" + i).isPresent());
+        }
+        assertEquals(before, lookups.get());
+        assertTrue(cache.getEvictionCount() > 9_000);
+        assertTrue(cache.size() <= 320);
+    }
+
+    private static ShortLink link(String code, int maxVisits, Instant expiresAt) {
+        return new ShortLink(code, UUID.randomUUID(), "https://example.com/" + code, maxVisits, 0,
+                Instant.now(), expiresAt);
+    }
+}
@@ -0,0 +1,182 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileShortLinkRepositoryTest {
+    private Path storageFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storageFile = Files.createTempFile("shortlinks-group", ".json");
+        Files.deleteIfExists(storageFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        StoreFile.deleteAll(storageFile);
+    }
+
+    @Test
+    void groupCommitShouldPersistEveryWriteWithFewerFileRewrites() throws Exception {
+        LongAdder commits = MetricsRegistry.global()
+                .counter("shortlinks_group_commits_total", "file", storageFile.toString());
+        long commitsBefore = commits.sum();
+        UUID owner = UUID.randomUUID();
+        int threads = 8;
+        int perThread = 50;
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile, true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repository.save(link("g" + thread + "x" + i, owner));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(threads * perThread, new FileShortLinkRepository(storageFile).countByOwner(owner));
+        } finally {
+            executor.shutdown();
+            repository.close();
+        }
+
+        long commitsMade = commits.sum() - commitsBefore;
+        assertTrue(commitsMade > 0 && commitsMade < threads * perThread, "commits: " + commitsMade);
+        assertEquals(threads * perThread, new FileShortLinkRepository(storageFile).countByOwner(owner));
+    }
+
+    @Test
+    void writesAfterCloseShouldFailInsteadOfHanging() {
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile, true);
+        repository.save(link("before", UUID.randomUUID()));
+        repository.close();
+
+        assertThrows(IllegalStateException.class, () -> repository.save(link("after", UUID.randomUUID())));
+        assertTrue(new FileShortLinkRepository(storageFile).findByCode("before").isPresent());
+    }
+
+    @Test
+    void deferredWritesShouldReachTheFileOnceWorkEnds() {
+        UUID owner = UUID.randomUUID();
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile);
+        repository.save(link("before1", owner));
+
+        repository.deferPersistence(() -> {
+            repository.save(link("during1", owner));
+            repository.saveAll(List.of(link("during2", owner), link("during3", owner)));
+            assertEquals(1, new FileShortLinkRepository(storageFile).findAll().size());
+        });
+
+        assertEquals(4, new FileShortLinkRepository(storageFile).findAll().size());
+        assertThrows(IllegalStateException.class, () -> repository.deferPersistence(() -> {
+            repository.delete("before1");
+            throw new IllegalStateException("interrupted");
+        }));
+        assertTrue(new FileShortLinkRepository(storageFile).findByCode("before1").isEmpty());
+    }
+
+    @Test
+    void corruptedSnapshotShouldFallBackToPreviousGeneration() throws IOException {
+        UUID owner = UUID.randomUUID();
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile);
+        repository.save(link("first", owner));
+        repository.save(link("second", owner));
+        repository.close();
+        assertTrue(Files.exists(storageFile.resolveSibling(storageFile.getFileName() + ".2")));
+
+        byte[] bytes = Files.readAllBytes(storageFile);
+        Files.write(storageFile, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        FileShortLinkRepository recovered = new FileShortLinkRepository(storageFile);
+        assertTrue(recovered.findByCode("first").isPresent());
+        assertTrue(recovered.findByCode("second").isEmpty());
+
+        recovered.save(link("third", owner));
+        bytes = Files.readAllBytes(storageFile);
+        bytes[bytes.length - 3] ^= 0x20;
+        Files.write(storageFile, bytes);
+        FileShortLinkRepository again = new FileShortLinkRepository(storageFile);
+        assertTrue(again.findByCode("first").isPresent());
+        assertTrue(again.findByCode("third").isEmpty());
+    }
+
+    @Test
+    void newerTempFileShouldNotCostTheValidMainGeneration() throws IOException {
+        UUID owner = UUID.randomUUID();
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile);
+        repository.save(link("first", owner));
+        repository.save(link("second", owner));
+        repository.save(link("third", owner));
+        repository.close();
+        Path first = storageFile.resolveSibling(storageFile.getFileName() + ".1");
+        Path second = storageFile.resolveSibling(storageFile.getFileName() + ".2");
+        Files.move(storageFile, storageFile.resolveSibling(storageFile.getFileName() + ".tmp"));
+        Files.move(first, storageFile);
+        Files.move(second, first);
+
+        FileShortLinkRepository recovered = new FileShortLinkRepository(storageFile);
+        assertTrue(recovered.findByCode("third").isPresent());
+        recovered.save(link("fourth", owner));
+        recovered.close();
+
+        FileShortLinkRepository previous = new FileShortLinkRepository(first);
+        assertTrue(previous.findByCode("second").isPresent());
+        assertTrue(previous.findByCode("third").isEmpty());
+    }
+
+    @Test
+    void plainJsonFromEarlierVersionsShouldStillLoad() throws IOException {
+        Files.writeString(storageFile, "{\"shortLinks\":{},\"users\":{}}");
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile);
+        repository.save(link("upgraded", UUID.randomUUID()));
+
+        assertTrue(Files.readString(storageFile).startsWith("#shortlinks-store generation=1 "));
+        assertTrue(new FileShortLinkRepository(storageFile).findByCode("upgraded").isPresent());
+    }
+
+    @Test
+    void largeStoreShouldLoadInParallelChunks() {
+        UUID[] owners = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            links.add(link(String.format("p%06d", i), owners[i % owners.length]));
+        }
+        FileShortLinkRepository repository = new FileShortLinkRepository(storageFile);
+        repository.saveAll(links);
+        repository.close();
+
+        FileShortLinkRepository loaded = new FileShortLinkRepository(storageFile);
+        assertEquals(20_000, loaded.findAll().size());
+        assertEquals(6_667, loaded.countByOwner(owners[0]));
+        assertEquals("p000001", loaded.findByOwner(owners[1], 0, 1).get(0).getCode());
+        assertEquals("https://example.com/p019999", loaded.findByCode("p019999").orElseThrow().getOriginalUrl());
+    }
+
+    private static ShortLink link(String code, UUID owner) {
+        Instant now = Instant.now();
+        return new ShortLink(code, owner, "https://example.com/" + code, 5, 0, now, now.plus(Duration.ofHours(1)));
+    }
+}
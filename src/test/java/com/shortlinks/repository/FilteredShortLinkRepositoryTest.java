@@ -0,0 +1,154 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.App;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredShortLinkRepositoryTest {
+    private Path tempDir;
+    private AtomicInteger lookups;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-filter-test");
+        lookups = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void unknownCodesShouldNotReachStorageAndKnownOnesAlwaysShould() {
+        FilteredShortLinkRepository repository = new FilteredShortLinkRepository(backing(), 16, 0.001,
+                tempDir.resolve("codes.filter"));
+        Instant now = Instant.now();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            links.add(link("k" + i, now.plus(Duration.ofHours(1))));
+        }
+        repository.saveAll(links);
+        repository.save(link("k7", now.plus(Duration.ofHours(2))));
+        repository.save(link("short", now.plusMillis(5)));
+        assertTrue(repository.delete("k1"));
+        assertEquals(1, repository.deleteExpired(now.plusSeconds(1)).size());
+
+        lookups.set(0);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(VisitAttempt.Outcome.NOT_FOUND, repository.tryConsumeVisit("bot" + i, now).getOutcome());
+        }
+        assertTrue(lookups.get() < 10, "storage lookups: " + lookups.get());
+        for (int i = 2; i < 500; i++) {
+            assertEquals(VisitAttempt.Outcome.CONSUMED, repository.tryConsumeVisit("k" + i, now).getOutcome());
+        }
+        assertEquals(VisitAttempt.Outcome.NOT_FOUND, repository.tryConsumeVisit("k1", now).getOutcome());
+        assertTrue(repository.findByCode("short").isEmpty());
+        assertEquals(499, repository.getFilterSize());
+    }
+
+    @Test
+    void filterShouldBeReusedAfterCleanShutdownAndRebuiltAfterCrash() {
+        Path filterFile = tempDir.resolve("codes.filter");
+        FileShortLinkRepository store = new FileShortLinkRepository(tempDir.resolve("store.json"));
+        FilteredShortLinkRepository first = new FilteredShortLinkRepository(store, 1_000, 0.01, filterFile);
+        first.save(link("alpha", Instant.now().plus(Duration.ofHours(1))));
+        first.close();
+        assertTrue(Files.exists(filterFile));
+
+        FilteredShortLinkRepository restarted = new FilteredShortLinkRepository(backing(), 1_000, 0.01, filterFile);
+        assertFalse(Files.exists(filterFile), "filter file must be consumed on start");
+        assertEquals(0, lookups.get(), "stored filter must not require a storage scan");
+        assertTrue(restarted.findByCode("alpha").isPresent());
+
+        store.save(link("beta", Instant.now().plus(Duration.ofHours(1))));
+        FilteredShortLinkRepository afterCrash = new FilteredShortLinkRepository(
+                new FileShortLinkRepository(tempDir.resolve("store.json")), 1_000, 0.01, filterFile);
+        assertTrue(afterCrash.findByCode("beta").isPresent());
+    }
+
+    @Test
+    void filterFileShouldNotOutliveChangesMadeWithoutTheFilter() {
+        Path filterFile = tempDir.resolve("codes.filter");
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(1));
+        List<String> keys = List.of("app.storage.engine", "app.storage-file", "app.filter.enabled", "app.filter.file");
+        System.setProperty("app.storage.engine", "file");
+        System.setProperty("app.storage-file", tempDir.resolve("store.json").toString());
+        System.setProperty("app.filter.file", filterFile.toString());
+        try {
+            System.setProperty("app.filter.enabled", "true");
+            try (ShortLinkRepository enabled = App.createRepository(new AppConfig())) {
+                enabled.save(link("alpha", expiresAt));
+            }
+            assertTrue(Files.exists(filterFile));
+
+            System.setProperty("app.filter.enabled", "false");
+            try (ShortLinkRepository disabled = App.createRepository(new AppConfig())) {
+                assertFalse(Files.exists(filterFile), "filter file must be dropped when the filter is off");
+                disabled.save(link("beta", expiresAt));
+            }
+
+            System.setProperty("app.filter.enabled", "true");
+            try (ShortLinkRepository reenabled = App.createRepository(new AppConfig())) {
+                assertTrue(reenabled.findByCode("alpha").isPresent());
+                assertTrue(reenabled.findByCode("beta").isPresent());
+            }
+            assertTrue(Files.exists(filterFile));
+
+            // хранилище изменилось в обход приложения: отметка в заголовке файла уже не совпадает
+            new FileShortLinkRepository(tempDir.resolve("store.json")).save(link("gamma", expiresAt));
+            FilteredShortLinkRepository stale = new FilteredShortLinkRepository(backing(), 1_000, 0.001, filterFile);
+            assertTrue(stale.findByCode("gamma").isPresent());
+        } finally {
+            keys.forEach(System::clearProperty);
+        }
+    }
+
+    private FileShortLinkRepository backing() {
+        return new FileShortLinkRepository(tempDir.resolve("store.json")) {
+            @Override
+            public Optional<ShortLink> findByCode(String code) {
+                lookups.incrementAndGet();
+                return super.findByCode(code);
+            }
+
+            @Override
+            public VisitAttempt tryConsumeVisit(String code, Instant now) {
+                lookups.incrementAndGet();
+                return super.tryConsumeVisit(code, now);
+            }
+
+            @Override
+            public List<ShortLink> findAfter(String afterCode, int limit) {
+                lookups.incrementAndGet();
+                return super.findAfter(afterCode, limit);
+            }
+        };
+    }
+
+    private static ShortLink link(String code, Instant expiresAt) {
+        return new ShortLink(code, UUID.randomUUID(), "https://example.com/" + code, 10, 0, Instant.now(), expiresAt);
+    }
+}
@@ -0,0 +1,100 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogShortLinkRepositoryTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-log-test");
+        System.setProperty("app.storage-file", tempDir.resolve("store.json").toString());
+        System.setProperty("app.storage.log-dir", tempDir.resolve("log").toString());
+        System.setProperty("app.storage.fsync", "always");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.storage.log-dir");
+        System.clearProperty("app.storage.fsync");
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void shouldReplayMutationsAfterRestart() {
+        UserAccount user = new UserAccount(UUID.randomUUID(), Instant.now());
+        try (LogShortLinkRepository repository = new LogShortLinkRepository(new AppConfig())) {
+            repository.saveUser(user);
+            repository.save(link("AAA1111", user.getId()));
+            repository.save(link("BBB2222", user.getId()));
+            repository.delete("AAA1111");
+        }
+
+        try (LogShortLinkRepository reopened = new LogShortLinkRepository(new AppConfig())) {
+            assertTrue(reopened.findUser(user.getId()).isPresent());
+            assertTrue(reopened.findByCode("AAA1111").isEmpty());
+            assertEquals("https://example.com/BBB2222",
+                    reopened.findByCode("BBB2222").orElseThrow().getOriginalUrl());
+        }
+    }
+
+    @Test
+    void compactionShouldReplaceSegmentsWithSnapshot() throws IOException {
+        UUID owner = UUID.randomUUID();
+        try (LogShortLinkRepository repository = new LogShortLinkRepository(new AppConfig())) {
+            repository.save(link("AAA1111", owner));
+            repository.compact();
+            repository.save(link("BBB2222", owner));
+        }
+
+        List<Long> segments = MutationLog.listSegments(tempDir.resolve("log"));
+        assertEquals(1, segments.size());
+        try (LogShortLinkRepository reopened = new LogShortLinkRepository(new AppConfig())) {
+            assertEquals(2, reopened.findAll().size());
+        }
+    }
+
+    @Test
+    void shouldTruncateTornRecordAtLogTail() throws IOException {
+        UUID owner = UUID.randomUUID();
+        try (LogShortLinkRepository repository = new LogShortLinkRepository(new AppConfig())) {
+            repository.save(link("AAA1111", owner));
+        }
+        Path logDir = tempDir.resolve("log");
+        List<Long> segments = MutationLog.listSegments(logDir);
+        Path tail = logDir.resolve(MutationLog.segmentFileName(segments.get(segments.size() - 1)));
+        Files.write(tail, "{\"op\":\"SAVE_LI".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (LogShortLinkRepository reopened = new LogShortLinkRepository(new AppConfig())) {
+            assertEquals(1, reopened.findAll().size());
+        }
+    }
+
+    private static ShortLink link(String code, UUID owner) {
+        Instant now = Instant.now();
+        return new ShortLink(code, owner, "https://example.com/" + code, 5, 0, now, now.plusSeconds(3600));
+    }
+}
@@ -0,0 +1,191 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedShortLinkRepositoryTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-mapped-test");
+        System.setProperty("app.storage-file", tempDir.resolve("store.json").toString());
+        System.setProperty("app.storage.mapped-dir", tempDir.resolve("mapped").toString());
+        System.setProperty("app.storage.fsync", "always");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.storage.mapped-dir");
+        System.clearProperty("app.storage.fsync");
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void shouldServeLinksFromSnapshotAndOverlayAfterRestart() {
+        UserAccount user = new UserAccount(UUID.randomUUID(), Instant.now());
+        try (MappedShortLinkRepository repository = new MappedShortLinkRepository(new AppConfig())) {
+            repository.saveUser(user);
+            repository.save(link("AAA1111", user.getId()));
+            repository.save(link("BBB2222", user.getId()));
+            repository.compact();
+            repository.tryConsumeVisit("AAA1111", Instant.now());
+            repository.delete("BBB2222");
+            repository.save(link("CCC3333", user.getId()));
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(new AppConfig())) {
+            assertTrue(reopened.findUser(user.getId()).isPresent());
+            assertEquals(1, reopened.findByCode("AAA1111").orElseThrow().getVisitCount());
+            assertTrue(reopened.findByCode("BBB2222").isEmpty());
+            assertEquals(2, reopened.findAll().size());
+            assertEquals(2, reopened.countByOwner(user.getId()));
+        }
+    }
+
+    @Test
+    void shouldExpireSnapshotLinksThroughLazyIndex() {
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        try (MappedShortLinkRepository repository = new MappedShortLinkRepository(new AppConfig())) {
+            repository.save(new ShortLink("OLD1111", owner, "https://example.com/old", 5, 0, now, now.plusSeconds(10)));
+            repository.save(link("NEW2222", owner));
+            repository.compact();
+
+            assertEquals(1, repository.deleteExpired(now.plusSeconds(60)).size());
+            assertEquals(1, repository.findByOwner(owner).size());
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(new AppConfig())) {
+            assertTrue(reopened.findByCode("OLD1111").isEmpty());
+        }
+    }
+
+    @Test
+    void sortedSnapshotSectionsShouldMergeWithOverlay() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Instant now = Instant.now();
+        try (MappedShortLinkRepository repository = new MappedShortLinkRepository(new AppConfig())) {
+            for (int i = 0; i < 200; i++) {
+                UUID owner = i % 2 == 0 ? first : second;
+                repository.save(new ShortLink(String.format("S%04d", i), owner, "https://example.com/" + i, 5, 0,
+                        now, now.plusSeconds(i < 10 ? 5 : 3600)));
+            }
+            repository.compact();
+
+            repository.delete("S0020");
+            repository.tryConsumeVisit("S0040", now);
+            ShortLink moved = repository.findByCode("S0042").orElseThrow();
+            moved.setOwnerId(second);
+            repository.save(moved);
+            repository.save(link("S0041a", first));
+            repository.save(link("A0000", first));
+
+            List<String> firstCodes = new ArrayList<>();
+            for (int i = 0; i < 200; i += 2) {
+                firstCodes.add(String.format("S%04d", i));
+            }
+            firstCodes.removeAll(List.of("S0020", "S0042"));
+            firstCodes.add("S0041a");
+            firstCodes.add("A0000");
+            Collections.sort(firstCodes);
+
+            assertEquals(firstCodes.size(), repository.countByOwner(first));
+            assertEquals(101, repository.countByOwner(second));
+            assertEquals(firstCodes, codes(repository.findByOwner(first)));
+            assertEquals(firstCodes.subList(5, 15), codes(repository.findByOwner(first, 5, 10)));
+            assertEquals(firstCodes.subList(21, 31), codes(repository.findByOwnerAfter(first, "S0040", 10)));
+            assertEquals(1, repository.findByCode("S0040").orElseThrow().getVisitCount());
+
+            List<String> all = new ArrayList<>();
+            repository.forEachLink(null, 7, link -> all.add(link.getCode()));
+            assertEquals(201, all.size());
+            assertEquals("A0000", all.get(0));
+            assertEquals(all.stream().sorted().toList(), all);
+            assertEquals(List.of("S0041", "S0041a", "S0042"), codes(repository.findAfter("S0040", 3)));
+
+            List<ShortLink> expired = repository.deleteExpired(now.plusSeconds(60), 4);
+            assertEquals(List.of("S0000", "S0001", "S0002", "S0003"), codes(expired));
+            assertEquals(6, repository.deleteExpired(now.plusSeconds(60)).size());
+            assertEquals(0, repository.deleteExpired(now.plusSeconds(60)).size());
+            assertEquals(firstCodes.size() - 5, repository.countByOwner(first));
+        }
+    }
+
+    @Test
+    void snapshotShouldFindCodesOutsideAscii() {
+        UUID owner = UUID.randomUUID();
+        try (MappedShortLinkRepository repository = new MappedShortLinkRepository(new AppConfig())) {
+            repository.save(link("ссылка", owner));
+            repository.save(link("café", owner));
+            repository.save(link("cafë", owner));
+            repository.save(link("caf\uD83D\uDE00", owner));
+            repository.save(link("caf\uFF01", owner));
+            repository.compact();
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(new AppConfig())) {
+            assertEquals("https://example.com/ссылка", reopened.findByCode("ссылка").orElseThrow().getOriginalUrl());
+            assertEquals("https://example.com/café", reopened.findByCode("café").orElseThrow().getOriginalUrl());
+            assertTrue(reopened.findByCode("cafe").isEmpty());
+            assertEquals(List.of("café", "cafë", "caf\uD83D\uDE00", "caf\uFF01", "ссылка"),
+                    codes(reopened.findAfter(null, 10)));
+            assertEquals(List.of("caf\uFF01", "ссылка"), codes(reopened.findByOwnerAfter(owner, "caf\uD83D\uDE00", 10)));
+        }
+    }
+
+    @Test
+    void converterShouldProduceSnapshotPickedUpAtStartup() throws IOException {
+        UUID owner = UUID.randomUUID();
+        try (FileShortLinkRepository legacy = new FileShortLinkRepository(tempDir.resolve("store.json"))) {
+            legacy.saveUser(new UserAccount(owner, Instant.now()));
+            for (int i = 0; i < 100; i++) {
+                legacy.save(link(String.format("L%06d", i), owner));
+            }
+        }
+        Path mappedDir = Files.createDirectories(tempDir.resolve("mapped"));
+        BinarySnapshotConverter.convert(tempDir.resolve("store.json"), mappedDir);
+
+        BinarySnapshot snapshot = BinarySnapshot.open(mappedDir.resolve(BinarySnapshotConverter.INITIAL_SNAPSHOT));
+        assertEquals(100, snapshot.linkCount());
+        assertEquals(1, snapshot.userCount());
+        assertEquals("https://example.com/L000042", snapshot.linkAt(snapshot.indexOf("L000042")).getOriginalUrl());
+        assertFalse(snapshot.contains("MISSING"));
+
+        try (MappedShortLinkRepository repository = new MappedShortLinkRepository(new AppConfig())) {
+            assertEquals(100, repository.countByOwner(owner));
+        }
+    }
+
+    private static List<String> codes(List<ShortLink> links) {
+        return links.stream().map(ShortLink::getCode).toList();
+    }
+
+    private static ShortLink link(String code, UUID owner) {
+        Instant now = Instant.now();
+        return new ShortLink(code, owner, "https://example.com/" + code, 5, 0, now, now.plusSeconds(3600));
+    }
+}
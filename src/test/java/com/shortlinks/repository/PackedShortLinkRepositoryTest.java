@@ -0,0 +1,206 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.model.ShortLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedShortLinkRepositoryTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-packed-test");
+        System.setProperty("app.storage-file", tempDir.resolve("store.json").toString());
+        System.setProperty("app.storage.packed-dir", tempDir.resolve("packed").toString());
+        System.setProperty("app.storage.fsync", "os");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.storage.packed-dir");
+        System.clearProperty("app.storage.fsync");
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void indexShouldMatchHashMapUnderRandomInsertsAndDeletes() {
+        PackedLinkTable table = new PackedLinkTable();
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < 20_000; i++) {
+            String code = "C" + random.nextInt(5_000);
+            int record = table.find(code);
+            if (random.nextInt(3) == 0) {
+                if (record >= 0) {
+                    table.remove(record);
+                }
+                expected.remove(code);
+            } else if (record < 0) {
+                table.insert(link(code, owner, 3600));
+                expected.put(code, "https://example.com/" + code);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected.size(), table.countByOwner(owner));
+        for (int i = 0; i < 5_000; i++) {
+            String code = "C" + i;
+            int record = table.find(code);
+            assertEquals(expected.containsKey(code), record >= 0, code);
+            if (record >= 0) {
+                assertEquals(expected.get(code), table.view(record).getOriginalUrl());
+            }
+        }
+
+        List<String> sorted = expected.keySet().stream().sorted().toList();
+        List<String> ordered = Arrays.stream(table.recordsInCodeOrder(null))
+                .mapToObj(record -> table.view(record).getCode())
+                .toList();
+        assertEquals(sorted, ordered);
+        List<String> tail = Arrays.stream(table.recordsInCodeOrder("C25"))
+                .mapToObj(record -> table.view(record).getCode())
+                .toList();
+        assertEquals(sorted.stream().filter(code -> code.compareTo("C25") > 0).toList(), tail);
+    }
+
+    @Test
+    void ownerPagesShouldStayInCodeOrderThroughLoadAndChanges() {
+        PackedLinkTable table = new PackedLinkTable();
+        UUID[] owners = {UUID.randomUUID(), UUID.randomUUID()};
+        Map<UUID, TreeSet<String>> expected = Map.of(owners[0], new TreeSet<>(), owners[1], new TreeSet<>());
+        Random random = new Random(7);
+        table.deferOwnerOrder();
+        for (int step = 0; step < 8_000; step++) {
+            if (step == 4_000) {
+                table.restoreOwnerOrder();
+            }
+            String code = "D" + random.nextInt(3_000);
+            UUID owner = owners[random.nextInt(2)];
+            int record = table.find(code);
+            if (record >= 0 && random.nextInt(3) == 0) {
+                expected.get(table.view(record).getOwnerId()).remove(code);
+                table.remove(record);
+            } else if (record >= 0) {
+                expected.get(table.view(record).getOwnerId()).remove(code);
+                table.update(record, link(code, owner, 3600));
+                expected.get(owner).add(code);
+            } else {
+                table.insert(link(code, owner, 3600));
+                expected.get(owner).add(code);
+            }
+        }
+
+        for (UUID owner : owners) {
+            List<String> codes = List.copyOf(expected.get(owner));
+            assertEquals(codes, codesOf(table, table.ownerRecords(owner, null, 0, Integer.MAX_VALUE)));
+            assertEquals(codes.subList(10, 35), codesOf(table, table.ownerRecords(owner, null, 10, 25)));
+            String middle = codes.get(codes.size() / 2);
+            assertEquals(List.copyOf(expected.get(owner).tailSet(middle, false)).subList(0, 20),
+                    codesOf(table, table.ownerRecords(owner, middle, 0, 20)));
+            assertEquals(List.copyOf(expected.get(owner).tailSet("D15", false)).subList(5, 15),
+                    codesOf(table, table.ownerRecords(owner, "D15", 5, 10)));
+        }
+    }
+
+    private static List<String> codesOf(PackedLinkTable table, int[] records) {
+        return Arrays.stream(records).mapToObj(record -> table.view(record).getCode()).toList();
+    }
+
+    @Test
+    void repackShouldReclaimArenaBytesOfRemovedAndReplacedStrings() {
+        PackedLinkTable table = new PackedLinkTable();
+        UUID owner = UUID.randomUUID();
+        for (int i = 0; i < 2_000; i++) {
+            table.insert(link("not-base62-" + i, owner, 3600));
+        }
+        for (int i = 0; i < 2_000; i += 2) {
+            table.remove(table.find("not-base62-" + i));
+        }
+        ShortLink replaced = table.view(table.find("not-base62-1"));
+        replaced.setOriginalUrl("https://example.org/replaced");
+        table.update(table.find("not-base62-1"), replaced);
+        long before = table.arenaBytes();
+        assertTrue(table.deadArenaBytes() * 2 > before);
+
+        table.repackArena();
+
+        assertEquals(0, table.deadArenaBytes());
+        assertTrue(table.arenaBytes() < before * 0.6);
+        assertEquals(-1, table.find("not-base62-0"));
+        assertEquals("https://example.org/replaced", table.view(table.find("not-base62-1")).getOriginalUrl());
+        for (int i = 3; i < 2_000; i += 2) {
+            ShortLink link = table.view(table.find("not-base62-" + i));
+            assertEquals("not-base62-" + i, link.getCode());
+            assertEquals("https://example.com/not-base62-" + i, link.getOriginalUrl());
+        }
+    }
+
+    @Test
+    void shouldPageOwnerLinksAndRestoreAfterRestart() {
+        UUID owner = UUID.randomUUID();
+        try (PackedShortLinkRepository repository = new PackedShortLinkRepository(new AppConfig())) {
+            for (String code : List.of("DDD4444", "AAA1111", "CCC3333", "BBB2222")) {
+                repository.save(link(code, owner, 3600));
+            }
+            repository.compact();
+            repository.tryConsumeVisit("CCC3333", Instant.now());
+            repository.delete("DDD4444");
+
+            List<ShortLink> page = repository.findByOwnerAfter(owner, "AAA1111", 2);
+            assertEquals(List.of("BBB2222", "CCC3333"), page.stream().map(ShortLink::getCode).toList());
+        }
+
+        try (PackedShortLinkRepository reopened = new PackedShortLinkRepository(new AppConfig())) {
+            assertEquals(3, reopened.countByOwner(owner));
+            assertEquals(1, reopened.findByCode("CCC3333").orElseThrow().getVisitCount());
+            assertTrue(reopened.findByCode("DDD4444").isEmpty());
+        }
+    }
+
+    @Test
+    void shouldSkipStaleExpiryEntriesAfterTtlRefresh() {
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        try (PackedShortLinkRepository repository = new PackedShortLinkRepository(new AppConfig())) {
+            repository.save(link("OLD1111", owner, 10));
+            repository.save(link("KEEP222", owner, 10));
+            ShortLink refreshed = repository.findByCode("KEEP222").orElseThrow();
+            refreshed.setExpiresAt(now.plusSeconds(3600));
+            repository.save(refreshed);
+
+            List<ShortLink> removed = repository.deleteExpired(now.plusSeconds(60));
+
+            assertEquals(List.of("OLD1111"), removed.stream().map(ShortLink::getCode).toList());
+            assertTrue(repository.findByCode("KEEP222").isPresent());
+        }
+    }
+
+    private static ShortLink link(String code, UUID owner, long ttlSeconds) {
+        Instant now = Instant.now();
+        return new ShortLink(code, owner, "https://example.com/" + code, 5, 0, now, now.plusSeconds(ttlSeconds));
+    }
+}
@@ -0,0 +1,146 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedShortLinkRepositoryTest {
+    private Path tempDir;
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-sharded-test");
+        directory = tempDir.resolve("sharded");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void shouldPageOwnerLinksAcrossShardsInCodeOrder() {
+        UUID owner = UUID.randomUUID();
+        List<String> codes = new ArrayList<>();
+        try (ShardedShortLinkRepository repository = new ShardedShortLinkRepository(directory, 4, null)) {
+            repository.saveUser(new UserAccount(owner, Instant.now()));
+            for (int i = 0; i < 50; i++) {
+                String code = String.format("code%02d", i);
+                codes.add(code);
+                repository.save(link(code, owner, Instant.now().plus(Duration.ofHours(1))));
+            }
+
+            assertEquals(50, repository.countByOwner(owner));
+            assertEquals(codes.subList(10, 20), codesOf(repository.findByOwner(owner, 10, 10)));
+            assertEquals(codes.subList(21, 26), codesOf(repository.findByOwnerAfter(owner, "code20", 5)));
+            assertTrue(repository.findUser(owner).isPresent());
+        }
+    }
+
+    @Test
+    void shouldDeleteExpiredWithinLimitAcrossShards() {
+        UUID owner = UUID.randomUUID();
+        Instant past = Instant.now().minusSeconds(60);
+        try (ShardedShortLinkRepository repository = new ShardedShortLinkRepository(directory, 8, null)) {
+            for (int i = 0; i < 30; i++) {
+                repository.save(link("old" + i, owner, past));
+            }
+            repository.save(link("fresh", owner, Instant.now().plus(Duration.ofHours(1))));
+
+            assertEquals(7, repository.deleteExpired(Instant.now(), 7).size());
+            assertEquals(23, repository.deleteExpired(Instant.now(), 100).size());
+            assertEquals(List.of("fresh"), codesOf(repository.findAll()));
+        }
+    }
+
+    @Test
+    void shouldRebalanceWhenShardCountChanges() {
+        UUID owner = UUID.randomUUID();
+        try (ShardedShortLinkRepository repository = new ShardedShortLinkRepository(directory, 8, null)) {
+            for (int i = 0; i < 40; i++) {
+                repository.save(link("link" + i, owner, Instant.now().plus(Duration.ofHours(1))));
+            }
+            assertEquals(VisitAttempt.Outcome.CONSUMED, repository.tryConsumeVisit("link7", Instant.now()).getOutcome());
+        }
+
+        try (ShardedShortLinkRepository reopened = new ShardedShortLinkRepository(directory, 3, null)) {
+            assertEquals(40, reopened.findAll().size());
+            assertEquals(1, reopened.findByCode("link7").orElseThrow().getVisitCount());
+            for (int i = 0; i < 40; i++) {
+                assertTrue(reopened.findByCode("link" + i).isPresent(), "link" + i);
+            }
+            for (int i = 0; i < 20; i++) {
+                assertTrue(reopened.delete("link" + i));
+            }
+        }
+        assertFalse(Files.exists(directory.resolve("shard-05.json")));
+        assertFalse(Files.exists(directory.resolve("shard-05.json.1")));
+
+        try (ShardedShortLinkRepository grown = new ShardedShortLinkRepository(directory, 8, null)) {
+            assertEquals(20, grown.findAll().size());
+            assertTrue(grown.findByCode("link3").isEmpty());
+        }
+    }
+
+    @Test
+    void rebalanceShouldRewriteEachShardAtMostTwice() {
+        UUID owner = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(1));
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            links.add(link(String.format("r%06d", i), owner, expiresAt));
+        }
+        try (ShardedShortLinkRepository repository = new ShardedShortLinkRepository(directory, 4, null)) {
+            repository.saveAll(links);
+        }
+        long[] before = new long[7];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = rewrites(i);
+        }
+
+        try (ShardedShortLinkRepository reopened = new ShardedShortLinkRepository(directory, 7, null)) {
+            // новый шард: создание файла и приём ссылок; старый: приём и одно пакетное удаление
+            for (int i = 0; i < before.length; i++) {
+                assertTrue(rewrites(i) - before[i] <= 2, "shard " + i + ": " + (rewrites(i) - before[i]));
+            }
+            assertEquals(20_000, reopened.findAll().size());
+            assertEquals(codesOf(links.subList(0, 100)), codesOf(reopened.findByOwner(owner, 0, 100)));
+        }
+    }
+
+    private long rewrites(int shard) {
+        Path file = directory.resolve(String.format("shard-%02d.json", shard));
+        return MetricsRegistry.global().histogram("shortlinks_persist_seconds", "file", file.toString())
+                .snapshot().getCount();
+    }
+
+    private static ShortLink link(String code, UUID owner, Instant expiresAt) {
+        return new ShortLink(code, owner, "https://example.com/" + code, 10, 0,
+                expiresAt.minus(Duration.ofHours(2)), expiresAt);
+    }
+
+    private static List<String> codesOf(List<ShortLink> links) {
+        return links.stream().map(ShortLink::getCode).toList();
+    }
+}
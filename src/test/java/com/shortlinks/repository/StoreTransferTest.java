@@ -0,0 +1,214 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.App;
+import com.shortlinks.config.AppConfig;
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import com.shortlinks.model.UserAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StoreTransferTest {
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("shortlinks-transfer-test");
+        System.setProperty("app.storage-file", tempDir.resolve("store.json").toString());
+        System.setProperty("app.storage.packed-dir", tempDir.resolve("packed").toString());
+        System.setProperty("app.storage.fsync", "os");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        System.clearProperty("app.storage-file");
+        System.clearProperty("app.storage.packed-dir");
+        System.clearProperty("app.storage.fsync");
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void shouldMoveStoreBetweenEnginesPageByPage() throws IOException {
+        FileShortLinkRepository source = new FileShortLinkRepository(tempDir.resolve("source.json"));
+        List<ShortLink> links = fill(source, 2_345);
+        Path export = tempDir.resolve("export.ndjson");
+
+        StoreTransfer.Progress exported = new StoreTransfer(100)
+                .export(source, export, null, new StoreTransfer.Progress());
+
+        assertEquals(2, exported.getUsers());
+        assertEquals(2_345, exported.getLinks());
+        try (PackedShortLinkRepository target = new PackedShortLinkRepository(new AppConfig())) {
+            StoreTransfer.Progress imported = new StoreTransfer(100)
+                    .importFrom(target, export, null, new StoreTransfer.Progress());
+
+            assertEquals(2_345, imported.getLinks());
+            assertFalse(imported.isTruncated());
+            assertEquals(2, target.findAllUsers().size());
+            assertEquals(describe(links), describe(target.findAll()));
+            assertEquals(describe(links.subList(0, 50)), describe(target.findAfter(null, 50)));
+            assertEquals(describe(links.subList(1_001, 1_011)),
+                    describe(target.findAfter(links.get(1_000).getCode(), 10)));
+        }
+    }
+
+    @Test
+    void shouldResumeAfterInterruptedExportAndImport() throws IOException {
+        FileShortLinkRepository source = new FileShortLinkRepository(tempDir.resolve("source.json"));
+        fill(source, 500);
+        Path complete = tempDir.resolve("complete.ndjson");
+        new StoreTransfer(64).export(source, complete, null, new StoreTransfer.Progress());
+        byte[] bytes = Files.readAllBytes(complete);
+        Path partial = tempDir.resolve("partial.ndjson");
+        Files.write(partial, Arrays.copyOf(bytes, bytes.length / 2));
+
+        FileShortLinkRepository target = new FileShortLinkRepository(tempDir.resolve("target.json"));
+        StoreTransfer.Progress firstRun = new StoreTransfer(64)
+                .importFrom(target, partial, null, new StoreTransfer.Progress());
+        assertTrue(firstRun.isTruncated());
+        String resumeFrom = firstRun.getLastCode();
+
+        new StoreTransfer(64).export(source, partial, "zzzzzzz", new StoreTransfer.Progress());
+        assertArrayEquals(bytes, Files.readAllBytes(partial));
+
+        StoreTransfer.Progress secondRun = new StoreTransfer(64)
+                .importFrom(target, partial, resumeFrom, new StoreTransfer.Progress());
+        assertEquals(500, firstRun.getLinks() + secondRun.getLinks());
+        assertEquals(describe(source.findAll()), describe(target.findAll()));
+    }
+
+    @Test
+    void fileEngineImportShouldRewriteStoreOncePerCheckpoint() throws IOException {
+        FileShortLinkRepository source = new FileShortLinkRepository(tempDir.resolve("source.json"));
+        fill(source, 1_000);
+        Path export = tempDir.resolve("export.ndjson");
+        new StoreTransfer(100).export(source, export, null, new StoreTransfer.Progress());
+        Path targetFile = tempDir.resolve("target.json");
+        FileShortLinkRepository target = new FileShortLinkRepository(targetFile);
+        LatencyHistogram rewrites = MetricsRegistry.global()
+                .histogram("shortlinks_persist_seconds", "file", targetFile.toString());
+        long rewritesBefore = rewrites.snapshot().getCount();
+
+        StoreTransfer.Progress imported = new StoreTransfer(100, Files.size(export) / 2 + 1)
+                .importFrom(target, export, null, new StoreTransfer.Progress());
+
+        // две контрольные точки вместо записи на каждого пользователя и каждую из 10 страниц
+        assertEquals(2, rewrites.snapshot().getCount() - rewritesBefore);
+        assertEquals(1_000, imported.getLinks());
+        assertEquals(describe(source.findAll()), describe(new FileShortLinkRepository(targetFile).findAll()));
+    }
+
+    @Test
+    void failedExportShouldReportOnlyFlushedCodes() throws IOException {
+        FileShortLinkRepository source = new FileShortLinkRepository(tempDir.resolve("failing.json"));
+        fill(source, 300);
+        ByteArrayOutputStream flushed = new ByteArrayOutputStream();
+        OutputStream failing = new OutputStream() {
+            private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+            @Override
+            public void write(int b) {
+                pending.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                if (flushed.size() + pending.size() > 20_000) {
+                    throw new IOException("disk full");
+                }
+                pending.write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() {
+                flushed.writeBytes(pending.toByteArray());
+                pending.reset();
+            }
+        };
+
+        StoreTransfer.Progress progress = new StoreTransfer.Progress();
+        assertThrows(IOException.class, () -> new StoreTransfer(64).export(source, failing, null, progress));
+        String lastCode = progress.getLastCode();
+        assertNotNull(lastCode);
+        assertTrue(flushed.toString(StandardCharsets.UTF_8).contains("\"" + lastCode + "\""), lastCode);
+        assertEquals(64 * (progress.getLinks() / 64), progress.getLinks());
+    }
+
+    @Test
+    void decoratedPackedEngineShouldIterateThroughItsOwnCursor() {
+        List<String> keys = List.of("app.storage.engine", "app.metrics.enabled", "app.filter.enabled",
+                "app.filter.file", "app.cache.enabled");
+        System.setProperty("app.storage.engine", "packed");
+        System.setProperty("app.metrics.enabled", "true");
+        System.setProperty("app.filter.enabled", "true");
+        System.setProperty("app.filter.file", tempDir.resolve("codes.filter").toString());
+        System.setProperty("app.cache.enabled", "true");
+        try (ShortLinkRepository repository = App.createRepository(new AppConfig())) {
+            assertInstanceOf(WriteBehindShortLinkRepository.class, repository);
+            fill(repository, 10);
+            List<String> seen = new ArrayList<>();
+            repository.forEachLink(null, 1, link -> {
+                seen.add(link.getCode());
+                if (seen.size() == 1) {
+                    Instant now = Instant.now();
+                    repository.save(new ShortLink("zzzzzzz", UUID.randomUUID(), "https://example.com/late", 1, 0,
+                            now, now.plusSeconds(3600)));
+                }
+            });
+
+            // порядок packed снимается один раз в начале обхода; постраничный findAfter увидел бы новый код
+            assertEquals(10, seen.size());
+            assertFalse(seen.contains("zzzzzzz"));
+        } finally {
+            keys.forEach(System::clearProperty);
+        }
+    }
+
+    private static List<ShortLink> fill(ShortLinkRepository repository, int count) {
+        UserAccount first = repository.saveUser(new UserAccount(UUID.randomUUID(), Instant.now()));
+        UserAccount second = repository.saveUser(new UserAccount(UUID.randomUUID(), Instant.now()));
+        Instant now = Instant.now();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID owner = i % 3 == 0 ? first.getId() : second.getId();
+            links.add(new ShortLink(String.format("c%06d", i * 7919 % 1_000_003), owner,
+                    "https://example.com/" + i, 10, i % 10, now, now.plus(Duration.ofHours(1 + i % 5))));
+        }
+        repository.saveAll(links);
+        links.sort(Comparator.comparing(ShortLink::getCode));
+        return links;
+    }
+
+    private static List<String> describe(List<ShortLink> links) {
+        return links.stream()
+                .sorted(Comparator.comparing(ShortLink::getCode))
+                .map(link -> link.getCode() + " " + link.getOwnerId() + " " + link.getOriginalUrl() + " "
+                        + link.getVisitCount() + "/" + link.getMaxVisits() + " "
+                        + link.getExpiresAt().toEpochMilli())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,112 @@
+package com.shortlinks.repository;
+
+import com.shortlinks.metrics.MetricsRegistry;
+import com.shortlinks.model.ShortLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindShortLinkRepositoryTest {
+    private Path tempFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFile = Files.createTempFile("shortlinks-write-behind", ".json");
+        Files.deleteIfExists(tempFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        StoreFile.deleteAll(tempFile);
+    }
+
+    @Test
+    void shouldCoalescePendingVisitsUntilFlush() {
+        try (WriteBehindShortLinkRepository repository = new WriteBehindShortLinkRepository(
+                new FileShortLinkRepository(tempFile), Duration.ofHours(1), 100, 1_000, new MetricsRegistry())) {
+            repository.save(link("AAA1111"));
+            for (int i = 0; i < 5; i++) {
+                repository.tryConsumeVisit("AAA1111", Instant.now());
+            }
+
+            assertEquals(5, repository.getUnflushedVisits());
+            assertEquals(0, new FileShortLinkRepository(tempFile).findByCode("AAA1111").orElseThrow().getVisitCount());
+
+            repository.flushVisits();
+
+            assertEquals(0, repository.getUnflushedVisits());
+            assertEquals(1, repository.getFlushCount());
+            assertEquals(5, new FileShortLinkRepository(tempFile).findByCode("AAA1111").orElseThrow().getVisitCount());
+        }
+    }
+
+    @Test
+    void shouldKeepPendingVisitsWithinBound() {
+        try (WriteBehindShortLinkRepository repository = new WriteBehindShortLinkRepository(
+                new FileShortLinkRepository(tempFile), Duration.ofHours(1), 2, 3, new MetricsRegistry())) {
+            repository.save(link("AAA1111"));
+            for (int i = 0; i < 10; i++) {
+                repository.tryConsumeVisit("AAA1111", Instant.now());
+                assertTrue(repository.getUnflushedVisits() <= 3);
+            }
+        }
+
+        assertEquals(10, new FileShortLinkRepository(tempFile).findByCode("AAA1111").orElseThrow().getVisitCount());
+    }
+
+    @Test
+    void concurrentFlushesShouldNotLoseOrStrandVisits() throws Exception {
+        int threads = 4;
+        int perThread = 500;
+        try (WriteBehindShortLinkRepository repository = new WriteBehindShortLinkRepository(
+                new FileShortLinkRepository(tempFile), Duration.ofMillis(1), 50, 200, new MetricsRegistry())) {
+            repository.save(link("AAA1111", threads * perThread));
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            assertEquals(VisitAttempt.Outcome.CONSUMED,
+                                    repository.tryConsumeVisit("AAA1111", Instant.now()).getOutcome());
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            repository.flushVisits();
+
+            assertEquals(0, repository.getUnflushedVisits());
+            assertEquals(threads * perThread,
+                    new FileShortLinkRepository(tempFile).findByCode("AAA1111").orElseThrow().getVisitCount());
+        }
+    }
+
+    private static ShortLink link(String code) {
+        return link(code, 10);
+    }
+
+    private static ShortLink link(String code, int maxVisits) {
+        Instant now = Instant.now();
+        return new ShortLink(code, UUID.randomUUID(), "https://example.com/" + code, maxVisits, 0, now,
+                now.plusSeconds(3600));
+    }
+}
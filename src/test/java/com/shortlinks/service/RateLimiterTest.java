@@ -0,0 +1,61 @@
+package com.shortlinks.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    @Test
+    void bucketShouldAllowBurstAndRefillAtRate() {
+        AtomicLong clock = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+        RateLimiter<String> limiter = new RateLimiter<>(10, 5, 1_000, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("alice"));
+        }
+        assertFalse(limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("bob"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(limiter.tryAcquire("alice"));
+        assertFalse(limiter.tryAcquire("alice"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("alice"));
+        }
+        assertFalse(limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void batchShouldTakeOnlyTheTokensLeft() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter<String> limiter = new RateLimiter<>(10, 5, 1_000, clock::get);
+
+        assertEquals(3, limiter.tryAcquire("alice", 3));
+        assertEquals(2, limiter.tryAcquire("alice", 10));
+        assertEquals(0, limiter.tryAcquire("alice", 10));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals(2, limiter.tryAcquire("alice", 10));
+        assertFalse(limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    void idleKeysShouldBeEvicted() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter<Integer> limiter = new RateLimiter<>(100, 10, 50, clock::get);
+        for (int key = 0; key < 50; key++) {
+            assertTrue(limiter.tryAcquire(key));
+        }
+        assertEquals(50, limiter.size());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire(1_000));
+        assertEquals(1, limiter.size());
+    }
+}
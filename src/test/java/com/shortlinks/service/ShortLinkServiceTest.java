@@ -1,21 +1,31 @@
 package com.shortlinks.service;
 
 import com.shortlinks.config.AppConfig;
+import com.shortlinks.metrics.LatencyHistogram;
+import com.shortlinks.metrics.MetricsRegistry;
 import com.shortlinks.model.ShortLink;
 import com.shortlinks.model.UserAccount;
 import com.shortlinks.notification.NotificationService;
 import com.shortlinks.repository.FileShortLinkRepository;
 import com.shortlinks.repository.ShortLinkRepository;
+import com.shortlinks.util.ShortCode;
 import com.shortlinks.util.ShortLinkGenerator;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,7 +51,7 @@ class ShortLinkServiceTest {
 
     @AfterEach
     void tearDown() throws IOException {
-        Files.deleteIfExists(tempFile);
+        FileShortLinkRepository.deleteFiles(tempFile);
         System.clearProperty("app.storage-file");
         System.clearProperty("app.open-browser");
         System.clearProperty("app.default-ttl-hours");
@@ -95,6 +105,61 @@ class ShortLinkServiceTest {
         assertTrue(repository.findAll().isEmpty());
     }
 
+    @Test
+    void cleanupShouldRemoveExpiredLinksInBoundedSlices() {
+        UserAccount user = userService.registerNewUser();
+        for (int i = 0; i < 5; i++) {
+            ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/" + i, 3);
+            link.setExpiresAt(Instant.now().minusSeconds(5 + i));
+            repository.save(link);
+        }
+        shortLinkService.createShortLink(user.getId(), "https://example.com/active", 3);
+
+        assertEquals(2, shortLinkService.removeExpired(2).size());
+        assertEquals(2, shortLinkService.removeExpired(2).size());
+        assertEquals(1, shortLinkService.removeExpired(2).size());
+        assertTrue(shortLinkService.removeExpired(2).isEmpty());
+        assertEquals(1, repository.findAll().size());
+    }
+
+    @Test
+    void cleanerShouldRewriteFileStoreOncePerRun() {
+        UserAccount user = userService.registerNewUser();
+        List<ShortLink> expired = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/" + i, 3);
+            link.setExpiresAt(Instant.now().minusSeconds(5 + i));
+            expired.add(link);
+        }
+        repository.saveAll(expired);
+        shortLinkService.createShortLink(user.getId(), "https://example.com/active", 3);
+        LatencyHistogram rewrites = MetricsRegistry.global()
+                .histogram("shortlinks_persist_seconds", "file", tempFile.toString());
+        long rewritesBefore = rewrites.snapshot().getCount();
+
+        try (ShortLinkCleaner cleaner = new ShortLinkCleaner(shortLinkService, new SilentNotification(),
+                Duration.ofMinutes(1), 2, Duration.ofMinutes(1))) {
+            cleaner.cleanup();
+        }
+
+        // четыре порции по две ссылки, но одна запись файла
+        assertEquals(1, rewrites.snapshot().getCount() - rewritesBefore);
+        assertEquals(1, new FileShortLinkRepository(tempFile).findAll().size());
+    }
+
+    @Test
+    void refreshedTtlShouldKeepLinkOutOfCleanup() {
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/resource", 3);
+        link.setExpiresAt(Instant.now().minusSeconds(5));
+        repository.save(link);
+
+        shortLinkService.updateShortLink(user.getId(), link.getCode(), null, true);
+
+        assertTrue(shortLinkService.removeExpired().isEmpty());
+        assertTrue(repository.findByCode(link.getCode()).isPresent());
+    }
+
     @Test
     void updateShouldChangeLimitAndRefreshTtl() {
         UserAccount user = userService.registerNewUser();
@@ -171,6 +236,38 @@ class ShortLinkServiceTest {
         assertEquals(firstLink.getCode(), firstLinks.get(0).getCode());
     }
 
+    @Test
+    void listLinksShouldPageByCursor() {
+        UserAccount user = userService.registerNewUser();
+        for (int i = 0; i < 5; i++) {
+            shortLinkService.createShortLink(user.getId(), "https://example.com/" + i, 3);
+        }
+
+        List<ShortLink> firstPage = shortLinkService.listLinks(user.getId(), null, 3);
+        List<ShortLink> secondPage = shortLinkService.listLinks(user.getId(), firstPage.get(2).getCode(), 3);
+
+        assertEquals(3, firstPage.size());
+        assertEquals(2, secondPage.size());
+        assertTrue(firstPage.get(2).getCode().compareTo(secondPage.get(0).getCode()) < 0);
+        assertEquals(5, shortLinkService.countLinks(user.getId()));
+        assertEquals(secondPage.get(0).getCode(), userService.getUserLinks(user.getId(), 3, 1).get(0).getCode());
+    }
+
+    @Test
+    void ownerIndexShouldDropDeletedAndExpiredLinks() {
+        UserAccount user = userService.registerNewUser();
+        ShortLink deleted = shortLinkService.createShortLink(user.getId(), "https://example.com/a", 3);
+        ShortLink expired = shortLinkService.createShortLink(user.getId(), "https://example.com/b", 3);
+        shortLinkService.createShortLink(user.getId(), "https://example.com/c", 3);
+        shortLinkService.deleteShortLink(user.getId(), deleted.getCode());
+        expired.setExpiresAt(Instant.now().minusSeconds(5));
+        repository.save(expired);
+        shortLinkService.removeExpired();
+
+        assertEquals(1, shortLinkService.listLinks(user.getId()).size());
+        assertEquals(1, new FileShortLinkRepository(tempFile).findByOwner(user.getId()).size());
+    }
+
     @Test
     void updateShouldRequireAtLeastOneChange() {
         UserAccount user = userService.registerNewUser();
@@ -200,6 +297,120 @@ class ShortLinkServiceTest {
         assertTrue(repository.findByCode(link.getCode()).isPresent());
     }
 
+    @Test
+    void concurrentVisitsShouldNotExceedLimit() throws InterruptedException {
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/resource", 100);
+        AtomicInteger successes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            executor.submit(() -> {
+                if (shortLinkService.visit(link.getCode()).getStatus() == ShortLinkService.VisitStatus.SUCCESS) {
+                    successes.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, successes.get());
+        assertEquals(100, repository.findByCode(link.getCode()).orElseThrow().getVisitCount());
+    }
+
+    @Test
+    void visitCountsShouldSurviveRestartAfterFlush() {
+        UserAccount user = userService.registerNewUser();
+        ShortLink link = shortLinkService.createShortLink(user.getId(), "https://example.com/resource", 3);
+        shortLinkService.visit(link.getCode());
+        repository.close();
+
+        ShortLinkRepository reopened = new FileShortLinkRepository(tempFile);
+        assertEquals(1, reopened.findByCode(link.getCode()).orElseThrow().getVisitCount());
+    }
+
+    @Test
+    void bulkCreateShouldReportEachItemAndPersistValidOnes() {
+        UserAccount user = userService.registerNewUser();
+        List<ShortLinkService.BulkRequest> requests = List.of(
+                new ShortLinkService.BulkRequest("https://example.com/1", 3),
+                new ShortLinkService.BulkRequest("not a url", 3),
+                new ShortLinkService.BulkRequest("https://example.com/2", 0),
+                new ShortLinkService.BulkRequest("https://example.com/3", 1));
+
+        List<ShortLinkService.BulkResult> results = shortLinkService.createShortLinks(user.getId(), requests);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError().isPresent());
+        assertEquals("Лимит переходов должен быть положительным", results.get(2).getError().orElseThrow());
+        assertTrue(results.get(3).isSuccess());
+        ShortLinkRepository reopened = new FileShortLinkRepository(tempFile);
+        assertEquals(2, reopened.countByOwner(user.getId()));
+        assertEquals("https://example.com/3", reopened.findByCode(results.get(3).getShortLink().orElseThrow().getCode())
+                .orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    void bulkCreateShouldIssueDistinctCodes() {
+        UserAccount user = userService.registerNewUser();
+        List<ShortLinkService.BulkRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            requests.add(new ShortLinkService.BulkRequest("https://example.com/" + i, 1));
+        }
+
+        List<ShortLinkService.BulkResult> results = shortLinkService.createShortLinks(user.getId(), requests);
+
+        assertEquals(2_000, results.stream()
+                .map(result -> result.getShortLink().orElseThrow().getCode())
+                .distinct()
+                .count());
+        assertEquals(2_000, repository.countByOwner(user.getId()));
+    }
+
+    @Test
+    void rateLimitShouldRejectBeforeTouchingRepository() throws Exception {
+        System.setProperty("app.ratelimit.enabled", "true");
+        System.setProperty("app.ratelimit.create-per-minute", "1");
+        System.setProperty("app.ratelimit.create-burst", "2");
+        System.setProperty("app.ratelimit.visit-per-second", "1");
+        System.setProperty("app.ratelimit.visit-burst", "3");
+        try {
+            ShortLinkService limited = new ShortLinkService(new AppConfig(), repository, new ShortLinkGenerator(),
+                    new SilentNotification());
+            UserAccount user = userService.registerNewUser();
+            UserAccount other = userService.registerNewUser();
+            ShortLink link = limited.createShortLink(user.getId(), "https://example.com/a", 100);
+            limited.createShortLinks(user.getId(), List.of(new ShortLinkService.BulkRequest("https://example.com/b", 1)));
+            assertThrows(RateLimitExceededException.class,
+                    () -> limited.createShortLink(user.getId(), "https://example.com/c", 1));
+            assertNotNull(limited.createShortLink(other.getId(), "https://example.com/c", 1));
+            List<ShortLinkService.BulkResult> bulk = limited.createShortLinks(other.getId(), List.of(
+                    new ShortLinkService.BulkRequest("not a url", 1),
+                    new ShortLinkService.BulkRequest("https://example.com/d", 1),
+                    new ShortLinkService.BulkRequest("https://example.com/e", 1)));
+            assertFalse(bulk.get(0).isSuccess());
+            assertTrue(bulk.get(1).isSuccess());
+            assertEquals("Превышен лимит создания ссылок, повторите позже", bulk.get(2).getError().orElseThrow());
+            assertThrows(RateLimitExceededException.class, () -> limited.createShortLinks(other.getId(),
+                    List.of(new ShortLinkService.BulkRequest("https://example.com/f", 1))));
+
+            InetAddress client = InetAddress.getByName("192.0.2.1");
+            for (int i = 0; i < 3; i++) {
+                assertEquals(ShortLinkService.VisitStatus.SUCCESS, limited.resolve(link.getCode(), client).getStatus());
+            }
+            assertEquals(ShortLinkService.VisitStatus.RATE_LIMITED, limited.resolve(link.getCode(), client).getStatus());
+            assertEquals(ShortLinkService.VisitStatus.RATE_LIMITED, limited.resolve(ShortCode.pack(link.getCode()), client));
+            assertEquals(ShortLinkService.VisitStatus.SUCCESS, limited.resolve(link.getCode()).getStatus());
+            assertEquals(4, repository.findByCode(link.getCode()).orElseThrow().getVisitCount());
+        } finally {
+            System.clearProperty("app.ratelimit.enabled");
+            System.clearProperty("app.ratelimit.create-per-minute");
+            System.clearProperty("app.ratelimit.create-burst");
+            System.clearProperty("app.ratelimit.visit-per-second");
+            System.clearProperty("app.ratelimit.visit-burst");
+        }
+    }
+
     @Test
     void userRegistrationShouldPersistAccount() {
         UserAccount user = userService.registerNewUser();
@@ -0,0 +1,77 @@
+package com.shortlinks.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooFilterTest {
+
+    @Test
+    void shouldHaveNoFalseNegativesAndBoundedFalsePositives() {
+        CuckooFilter filter = new CuckooFilter(100_000, 0.001);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.add(code(i)));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(code(i)));
+            assertTrue(filter.mightContain(ShortCode.pack(code(i))));
+        }
+        int falsePositives = 0;
+        for (int i = 100_000; i < 300_000; i++) {
+            if (filter.mightContain(code(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertEquals(13, filter.getFingerprintBits());
+        assertTrue(falsePositives < 200_000 * 0.002, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void removalShouldKeepOtherCodesAndSurviveSerialization() throws IOException {
+        CuckooFilter filter = new CuckooFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(code(i));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            assertTrue(filter.remove(code(i)));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        CuckooFilter restored = CuckooFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(5_000, restored.size());
+        int stillPresent = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 2 == 1) {
+                assertTrue(restored.mightContain(code(i)), code(i));
+            } else if (restored.mightContain(code(i))) {
+                stillPresent++;
+            }
+        }
+        assertTrue(stillPresent < 100, "removed codes still reported: " + stillPresent);
+    }
+
+    @Test
+    void fullFilterShouldRefuseInsertions() {
+        CuckooFilter filter = new CuckooFilter(100, 0.01);
+        int added = 0;
+        while (filter.add(code(added))) {
+            added++;
+        }
+        assertTrue(added >= filter.capacity() * 0.8, added + " of " + filter.capacity());
+        for (int i = 0; i < added; i++) {
+            assertTrue(filter.mightContain(code(i)));
+        }
+    }
+
+    private static String code(int i) {
+        return String.format("%07d", i).replace('0', 'a');
+    }
+}
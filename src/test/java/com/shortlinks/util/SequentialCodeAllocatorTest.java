@@ -0,0 +1,114 @@
+package com.shortlinks.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequentialCodeAllocatorTest {
+    private Path stateFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stateFile = Files.createTempFile("shortlinks-codes", ".state");
+        Files.deleteIfExists(stateFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(stateFile);
+    }
+
+    @Test
+    void shouldIssueUniqueCodesAcrossThreadsAndRestarts() throws InterruptedException {
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        SequentialCodeAllocator allocator = new SequentialCodeAllocator(stateFile, 7, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    assertTrue(codes.add(allocator.allocate()));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(40_000, codes.size());
+
+        SequentialCodeAllocator restarted = new SequentialCodeAllocator(stateFile, 7, 100);
+        for (int i = 0; i < 1_000; i++) {
+            String code = restarted.allocate();
+            assertEquals(7, code.length());
+            assertTrue(codes.add(code), code);
+        }
+    }
+
+    @Test
+    void codesAlreadyInStoreShouldBeSkippedAfterStateRollback() throws IOException {
+        new SequentialCodeAllocator(stateFile, 7, 10);
+        byte[] initialState = Files.readAllBytes(stateFile);
+        SequentialCodeAllocator first = new SequentialCodeAllocator(stateFile, 7, 10);
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < 15; i++) {
+            stored.add(first.allocate());
+        }
+        stored.addAll(first.allocate(20));
+        // файл состояния откатился, например восстановлен из старой копии
+        Files.write(stateFile, initialState);
+
+        SequentialCodeAllocator restored = new SequentialCodeAllocator(stateFile, 7, 10, stored::contains);
+        for (int i = 0; i < 15; i++) {
+            String code = restored.allocate();
+            assertTrue(stored.add(code), code);
+        }
+        for (String code : restored.allocate(20)) {
+            assertTrue(stored.add(code), code);
+        }
+    }
+
+    @Test
+    void shouldCoverWholeSpaceBeforeExhaustion() {
+        SequentialCodeAllocator allocator = new SequentialCodeAllocator(stateFile, 2, 1_000);
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 62 * 62; i++) {
+            codes.add(allocator.allocate());
+        }
+
+        assertEquals(62 * 62, codes.size());
+        assertThrows(IllegalStateException.class, allocator::allocate);
+    }
+
+    @Test
+    void batchShouldReserveOneRangeWithoutOverlappingSingleCodes() {
+        SequentialCodeAllocator allocator = new SequentialCodeAllocator(stateFile, 7, 100);
+        Set<String> codes = new HashSet<>();
+        codes.add(allocator.allocate());
+        codes.addAll(allocator.allocate(1_000));
+        codes.add(allocator.allocate());
+
+        assertEquals(1_002, codes.size());
+        SequentialCodeAllocator restarted = new SequentialCodeAllocator(stateFile, 7, 100);
+        codes.addAll(restarted.allocate(500));
+        assertEquals(1_502, codes.size());
+    }
+
+    @Test
+    void neighbouringIndexesShouldNotMapToNeighbouringCodes() {
+        SequentialCodeAllocator allocator = new SequentialCodeAllocator(stateFile, 7, 10);
+        long first = allocator.permute(0);
+        long second = allocator.permute(1);
+
+        assertTrue(Math.abs(first - second) > 62, first + " vs " + second);
+    }
+}
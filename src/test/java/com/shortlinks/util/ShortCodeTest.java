@@ -0,0 +1,50 @@
+package com.shortlinks.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortCodeTest {
+
+    @Test
+    void shouldRoundTripGeneratedCodes() {
+        ShortLinkGenerator generator = new ShortLinkGenerator();
+        Set<String> codes = new HashSet<>();
+        Set<Long> packed = new HashSet<>();
+        for (int length = 1; length <= ShortCode.MAX_LENGTH; length++) {
+            for (int i = 0; i < 200; i++) {
+                String code = generator.generate(length);
+                long value = ShortCode.pack(code);
+                assertTrue(value > 0, code);
+                assertEquals(code, ShortCode.unpack(value));
+                assertEquals(length, ShortCode.fromLong(value).length());
+                codes.add(code);
+                packed.add(value);
+            }
+        }
+        assertEquals(codes.size(), packed.size());
+        assertEquals(ShortCode.of("zzzzzzzzzz").toLong(), ShortCode.pack("zzzzzzzzzz"));
+        assertTrue(ShortCode.pack("zzzzzzzzzz") > 0);
+    }
+
+    @Test
+    void shouldKeepLeadingZerosDistinct() {
+        assertNotEquals(ShortCode.pack("0"), ShortCode.pack("00"));
+        assertEquals("00", ShortCode.unpack(ShortCode.pack("00")));
+        assertEquals(ShortCode.of("abc"), ShortCode.fromLong(ShortCode.pack("abc")));
+    }
+
+    @Test
+    void shouldPackRangeAndRejectInvalidInput() {
+        String url = "https://lehjke.ru/AbC1234?utm=1";
+        assertEquals(ShortCode.pack("AbC1234"), ShortCode.pack(url, 18, 25));
+        assertEquals(ShortCode.INVALID, ShortCode.pack(""));
+        assertEquals(ShortCode.INVALID, ShortCode.pack("abc-def"));
+        assertEquals(ShortCode.INVALID, ShortCode.pack("кириллица"));
+        assertEquals(ShortCode.INVALID, ShortCode.pack("ABCDEFGHIJK"));
+        assertThrows(IllegalArgumentException.class, () -> ShortCode.of("a/b"));
+    }
+}